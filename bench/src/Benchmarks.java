@@ -0,0 +1,721 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.lang.management.*;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import javax.swing.*;
+
+// Headless benchmarks of the load, persist, cart and checkout paths against
+// generated catalogs. The Swing handlers are measured through the non-Swing
+// code they call: CartPanel.addToCart and buyBooks through StoreService's
+// addToCart and checkout, and returning a book through removeFromCart.
+//
+// Each benchmark is warmed up and then run for a fixed time. Reported are the
+// throughput, the latency of each invocation, the allocation rate, the bytes
+// allocated per operation across every thread, and the collections during the
+// run. This is a small harness of its own, not JMH: it runs in one JVM with no
+// forks, and its numbers are for comparing runs of this program with each other.
+//
+//   Benchmarks [--rows 1000,10000] [--warmup s] [--time s] [--only prefix] [--dir path]
+public class Benchmarks {
+
+    // Catalog sizes run unless --rows is given, 10^7 rows is left to be asked for
+    private static final int[] DEFAULT_ROWS = {1000, 10000, 100000, 1000000};
+
+    // Books added, returned or bought per invocation of the cart benchmarks
+    private static final int CART_BATCH = 1000;
+
+    // Lines in each checked out cart
+    private static final int CHECKOUT_LINES = 10;
+
+    // Quantities changed per persistence batch
+    private static final int PERSIST_BATCH = 100;
+
+    // Lines in the cart cleared by the cart clearing benchmarks
+    private static final int CLEAR_LINES = 10000;
+
+    // Adds and removes of a price per invocation of the cart total benchmarks
+    private static final int MONEY_MUTATIONS = 1000000;
+
+    // Catalog prices the cart total benchmarks cycle through
+    private static final int MONEY_PRICES = 10000;
+
+    // Lines in the cart of the event thread benchmarks
+    private static final int EDT_LINES = 50000;
+
+    // Sessions, hot books and operations per session of the stock stress test
+    private static final int STRESS_THREADS = 400;
+    private static final int STRESS_BOOKS = 4;
+    private static final int STRESS_OPS = 10000;
+
+    // Copies of each hot book at the start of a stress run, enough to sell out partway
+    private static final int STRESS_STOCK = 100000;
+
+    // Something measured against a catalog
+    private static abstract class Benchmark{
+
+        // Reported name
+        final String name;
+
+        // Operations each invocation of run performs
+        final int batch;
+
+        Benchmark(String name, int batch){
+            this.name = name;
+            this.batch = batch;
+        }//end Benchmark
+
+        // Loads what the benchmark needs, not measured
+        void setUp(File catalog) throws Exception{
+        }//end setUp
+
+        // Gets ready for one invocation, not measured
+        void prepare() throws Exception{
+        }//end prepare
+
+        // The measured invocation
+        abstract void run() throws Exception;
+
+        // Releases what setUp loaded
+        void tearDown() throws Exception{
+        }//end tearDown
+
+    }//end inner class Benchmark
+
+    // Keeps results alive so the work isn't optimized away
+    private static Object sink;
+
+    public static void main(String[] args) throws Exception{
+
+        int[] rows = DEFAULT_ROWS;
+        double warmup = 1;
+        double time = 3;
+        String only = "";
+        File dir = new File(System.getProperty("java.io.tmpdir"), "bookstore-bench");
+
+        // Read the command line
+        for(int i = 0; i + 1 < args.length; i += 2){
+            switch(args[i]){
+                case "--rows":
+                    String[] sizes = args[i + 1].split(",");
+                    rows = new int[sizes.length];
+                    for(int s = 0; s < sizes.length; s++)
+                        rows[s] = (int) Double.parseDouble(sizes[s]);
+                    break;
+                case "--warmup": warmup = Double.parseDouble(args[i + 1]); break;
+                case "--time": time = Double.parseDouble(args[i + 1]); break;
+                case "--only": only = args[i + 1]; break;
+                case "--dir": dir = new File(args[i + 1]); break;
+                default:
+                    System.out.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+
+        System.out.printf("%-20s %9s %12s %10s %10s %10s %12s %8s %8s%n",
+                "Benchmark", "Rows", "ops/s", "p50 us", "p99 us", "MB/s", "B/op", "gc", "gc ms");
+
+        for(int size : rows){
+            File catalog = CatalogGenerator.ensure(dir, size);
+            for(Benchmark b : benchmarks())
+                if(b.name.startsWith(only))
+                    measure(b, catalog, size, warmup, time);
+        }
+    }//end main
+
+    // Helper - Every benchmark, in the order they are reported
+    private static List<Benchmark> benchmarks(){
+
+        List<Benchmark> list = new ArrayList<>();
+
+        // Parsing the text file into Swing's list model, as the window first did
+        list.add(new Benchmark("load.getData", 1){
+            DataManager dm;
+            void setUp(File catalog){ dm = new DataManager(catalog); }
+            void run() throws IOException{ sink = dm.getData(); }
+        });
+
+        // Parsing the text file into the off-heap store
+        list.add(new Benchmark("load.text", 1){
+            DataManager dm;
+            void setUp(File catalog){ dm = new DataManager(catalog); }
+            void run() throws IOException{ sink = dm.loadStore(); }
+        });
+
+        // Mapping the snapshot into an inventory
+        list.add(new Benchmark("load.snapshot", 1){
+            DataManager dm;
+            void setUp(File catalog) throws IOException{
+                dm = new DataManager(catalog);
+                dm.writeSnapshot(dm.loadStore());
+            }
+            void run() throws IOException{ sink = new Inventory(dm.openSnapshot()); }
+        });
+
+        // Rewriting the output file from the list model
+        list.add(new Benchmark("persist.updateFile", 1){
+            DataManager dm;
+            DefaultListModel<Book> model;
+            void setUp(File catalog) throws IOException{
+                dm = new DataManager(catalog);
+                model = dm.getData();
+            }
+            void run(){ dm.updateFile(model); }
+            void tearDown(){ dm.getOutputFile().delete(); }
+        });
+
+        // A batch of quantity changes written through the text sink
+        list.add(new PersistBenchmark("persist.text", DataManager.StorageMode.TEXT));
+
+        // A batch of quantity changes written to the mapped quantity column
+        list.add(new PersistBenchmark("persist.mapped", DataManager.StorageMode.MAPPED));
+
+        // A batch of quantity changes written as a delta, with the periodic snapshots
+        list.add(new PersistBenchmark("persist.delta", DataManager.StorageMode.DELTA));
+
+        // Reserving books into a cart
+        list.add(new CartBenchmark("cart.add", CART_BATCH){
+            void prepare(){
+                store.clearCart(cart);
+                nextBooks();
+            }
+            void run(){
+                for(Book b : books)
+                    store.addToCart(cart, b, 1);
+            }
+        });
+
+        // Taking books back out of a cart
+        list.add(new CartBenchmark("cart.return", CART_BATCH){
+            void prepare(){
+                store.clearCart(cart);
+                nextBooks();
+                for(Book b : books)
+                    store.addToCart(cart, b, 1);
+            }
+            void run(){
+                for(Book b : books)
+                    store.removeFromCart(cart, b, 1);
+            }
+        });
+
+        // Checking out a filled cart
+        list.add(new CartBenchmark("cart.checkout", 1){
+            void prepare(){
+                nextBooks();
+                for(int i = 0; i < CHECKOUT_LINES; i++)
+                    store.addToCart(cart, books[i], 1);
+            }
+            void run(){ sink = store.checkout(cart); }
+        });
+
+        // Clearing a cart of distinct books, each line's copies going back to the inventory
+        list.add(new CartBenchmark("cart.clear", 1){
+            void prepare(){
+                nextDistinctBooks(CLEAR_LINES);
+                for(Book b : books)
+                    store.addToCart(cart, b, 1);
+            }
+            void run(){ store.clearCart(cart); }
+        });
+
+        // Clearing the same cart as the window first did: removeElement on the
+        // cart and indexOf on the store's list model for every book
+        list.add(new Benchmark("cart.clear.listModel", 1){
+            DefaultListModel<Book> stock;
+            DefaultListModel<Book> cartModel = new DefaultListModel<>();
+            Random random = new Random(1);
+            void setUp(File catalog) throws IOException{ stock = new DataManager(catalog).getData(); }
+            void prepare(){
+                int lines = Math.min(CLEAR_LINES, stock.getSize());
+                int first = random.nextInt(stock.getSize() - lines + 1);
+                for(int i = 0; i < lines; i++)
+                    cartModel.addElement(stock.elementAt(first + i));
+            }
+            void run(){
+                for(int i = cartModel.getSize() - 1; i >= 0; i--){
+                    Book b = cartModel.elementAt(i);
+                    cartModel.removeElement(b);
+                    Book entry = stock.elementAt(stock.indexOf(b));
+                    entry.setQuantity(b.getQuantity() + 1);
+                }
+            }
+        });
+
+        // Adding and removing catalog prices to a cart total held in cents
+        list.add(new MoneyBenchmark("money.cents"){
+            long total;
+            void run(){
+                for(int i = 0; i < MONEY_MUTATIONS; i += 2){
+                    long price = cents[i % cents.length];
+                    total += price;
+                    total -= price >> 1;
+                }
+                sink = total;
+            }
+        });
+
+        // The same mutations as the cart panel first did them, a BigDecimal made
+        // from the price String on every add and remove
+        list.add(new MoneyBenchmark("money.bigDecimal"){
+            BigDecimal total = new BigDecimal("0.0");
+            void run(){
+                for(int i = 0; i < MONEY_MUTATIONS; i += 2){
+                    String price = prices[i % prices.length];
+                    total = total.add(new BigDecimal(price));
+                    total = total.subtract(new BigDecimal(halves[i % halves.length]));
+                }
+                sink = total;
+            }
+        });
+
+        // Event thread time to clear a cart shown in a list, with its total label
+        list.add(new EdtBenchmark("edt.cart.clear"){
+            void prepare() throws Exception{ onEdt(() -> store.addAllToCart(cart, lineCounts())); }
+            void run() throws Exception{ onEdt(() -> store.clearCart(cart)); }
+        });
+
+        // Event thread time to fill the cart one book at a time
+        list.add(new EdtBenchmark("edt.cart.add"){
+            void prepare() throws Exception{ onEdt(() -> store.clearCart(cart)); }
+            void run() throws Exception{
+                onEdt(() -> {
+                    for(Book b : books)
+                        store.addToCart(cart, b, 1);
+                });
+            }
+        });
+
+        // Event thread time to fill the cart as one batch
+        list.add(new EdtBenchmark("edt.cart.addAll"){
+            void prepare() throws Exception{ onEdt(() -> store.clearCart(cart)); }
+            void run() throws Exception{ onEdt(() -> store.addAllToCart(cart, lineCounts())); }
+        });
+
+        // Hundreds of sessions reserving a few hot books at once
+        list.add(new StockStressBenchmark("stock.stress"));
+
+        // Totaling a ledger of one order line per catalog row in parallel
+        list.add(new Benchmark("analytics.scan", 1){
+            File dir;
+            OrderLedger ledger;
+            void setUp(File catalog) throws IOException{
+                dir = new DataManager(catalog).getLedgerDirectory();
+                deleteAll(dir);
+
+                // Write the orders, then open the ledger again once they are all on disk
+                int rows = new DataManager(catalog).loadStore().size();
+                Random random = new Random(1);
+                ledger = OrderLedger.open(dir);
+                for(int i = 0; i < rows; i += CHECKOUT_LINES){
+                    OrderLedger.Line[] lines = new OrderLedger.Line[Math.min(CHECKOUT_LINES, rows - i)];
+                    for(int l = 0; l < lines.length; l++){
+                        int id = random.nextInt(rows);
+                        lines[l] = new OrderLedger.Line(id, "Book " + id, 1 + random.nextInt(3), 1999);
+                    }
+                    ledger.submit(new OrderLedger.Order(0, 0, lines));
+                }
+                ledger.close();
+                ledger = OrderLedger.open(dir);
+            }
+            void run() throws IOException{
+                sink = SalesReport.merge(ledger.scan(Long.MIN_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, SalesReport::new));
+            }
+            void tearDown(){
+                ledger.close();
+                deleteAll(dir);
+            }
+        });
+
+        return list;
+    }//end benchmarks
+
+    // Helper - Warms a benchmark up, runs it and prints a line of results
+    private static void measure(Benchmark b, File catalog, int rows, double warmup, double time){
+
+        try {
+            b.setUp(catalog);
+            try {
+                // Warm up
+                long end = System.nanoTime() + (long) (warmup * 1e9);
+                do {
+                    b.prepare();
+                    b.run();
+                } while(System.nanoTime() < end);
+
+                // Measure
+                long[] latencies = new long[1024];
+                int invocations = 0;
+                long allocated = 0;
+                long elapsed = 0;
+                long gcCount = -gcCount();
+                long gcTime = -gcTime();
+
+                end = System.nanoTime() + (long) (time * 1e9);
+                do {
+                    b.prepare();
+
+                    long bytes = allocatedBytes();
+                    long start = System.nanoTime();
+                    b.run();
+                    long took = System.nanoTime() - start;
+                    allocated += allocatedBytes() - bytes;
+
+                    elapsed += took;
+                    if(invocations == latencies.length)
+                        latencies = Arrays.copyOf(latencies, invocations * 2);
+                    latencies[invocations++] = took;
+                } while(System.nanoTime() < end);
+
+                gcCount += gcCount();
+                gcTime += gcTime();
+
+                // Report per operation
+                long ops = (long) invocations * b.batch;
+                Arrays.sort(latencies, 0, invocations);
+                System.out.printf("%-20s %9d %12.1f %10.3f %10.3f %10.1f %12.1f %8d %8d%n",
+                        b.name, rows,
+                        ops / (elapsed / 1e9),
+                        latencies[invocations / 2] / 1e3 / b.batch,
+                        latencies[Math.min(invocations - 1, (int) (invocations * 0.99))] / 1e3 / b.batch,
+                        allocated / (elapsed / 1e9) / (1 << 20),
+                        (double) allocated / ops,
+                        gcCount, gcTime);
+
+            } finally {
+                b.tearDown();
+            }
+        } catch(OutOfMemoryError ex){
+            System.out.printf("%-20s %9d skipped, out of memory%n", b.name, rows);
+        } catch(Exception ex){
+            System.out.printf("%-20s %9d failed: %s%n", b.name, rows, ex);
+        }
+
+    }//end measure
+
+    // Helper - Bytes allocated so far by every live thread
+    private static long allocatedBytes(){
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(!(threads instanceof com.sun.management.ThreadMXBean))
+            return 0;
+
+        long total = 0;
+        for(long bytes : ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threads.getAllThreadIds()))
+            if(bytes > 0)
+                total += bytes;
+        return total;
+    }//end allocatedBytes
+
+    // Helper - Collections so far
+    private static long gcCount(){
+        long count = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            count += Math.max(0, gc.getCollectionCount());
+        return count;
+    }//end gcCount
+
+    // Helper - Milliseconds spent collecting so far
+    private static long gcTime(){
+        long millis = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            millis += Math.max(0, gc.getCollectionTime());
+        return millis;
+    }//end gcTime
+
+    // Helper - Deletes a directory and the files in it
+    private static void deleteAll(File dir){
+        File[] files = dir.listFiles();
+        if(files != null)
+            for(File f : files)
+                f.delete();
+        dir.delete();
+    }//end deleteAll
+
+    // Quantity changes written to a persistence sink in batches
+    private static class PersistBenchmark extends Benchmark{
+
+        private final DataManager.StorageMode mode;
+        private final Random random = new Random(1);
+        private DataManager dm;
+        private PersistenceWriter.Sink persistSink;
+        private final int[] ids = new int[PERSIST_BATCH];
+        private final int[] quantities = new int[PERSIST_BATCH];
+        private int rows;
+
+        PersistBenchmark(String name, DataManager.StorageMode mode){
+            super(name, 1);
+            this.mode = mode;
+        }//end PersistBenchmark
+
+        @Override
+        void setUp(File catalog) throws IOException{
+            dm = new DataManager(catalog);
+            Inventory inventory = new Inventory(dm.loadStore());
+            rows = inventory.getRowCount();
+            switch(mode){
+                case MAPPED: persistSink = dm.openQuantityStore(inventory); break;
+                case DELTA: persistSink = dm.openDeltaLog(inventory); break;
+                default: persistSink = dm.openTextSink(inventory);
+            }
+        }//end setUp
+
+        @Override
+        void prepare(){
+            for(int i = 0; i < PERSIST_BATCH; i++){
+                ids[i] = random.nextInt(rows);
+                quantities[i] = random.nextInt(51);
+            }
+        }//end prepare
+
+        @Override
+        void run() throws IOException{
+            persistSink.write(ids, quantities, PERSIST_BATCH);
+        }//end run
+
+        @Override
+        void tearDown() throws IOException{
+            if(persistSink instanceof Closeable)
+                ((Closeable) persistSink).close();
+            dm.getOutputFile().delete();
+            dm.getQuantityFile().delete();
+            deleteAll(dm.getDeltaDirectory());
+        }//end tearDown
+
+    }//end inner class PersistBenchmark
+
+    // A store with one session's cart and plenty of every book
+    private static abstract class CartBenchmark extends Benchmark{
+
+        private final Random random = new Random(1);
+        StoreService store;
+        Inventory inventory;
+        Cart cart;
+
+        // The books used by the next invocation, looked up before it is timed
+        // just as the window hands the cart a book already shown in the list
+        Book[] books;
+
+        CartBenchmark(String name, int batch){
+            super(name, batch);
+            books = new Book[Math.max(batch, CHECKOUT_LINES)];
+        }//end CartBenchmark
+
+        @Override
+        void setUp(File catalog) throws IOException{
+            store = StoreService.open(catalog);
+            inventory = store.getInventory();
+            cart = store.getCart("bench");
+
+            // Never run out of stock
+            for(int id = 0; id < inventory.getRowCount(); id++)
+                inventory.setOnHand(id, 1000000);
+        }//end setUp
+
+        // Picks the books for the next invocation
+        void nextBooks(){
+            for(int i = 0; i < books.length; i++)
+                books[i] = inventory.get(random.nextInt(inventory.getRowCount()));
+        }//end nextBooks
+
+        // Picks a run of different books for the next invocation, no more than the catalog holds
+        void nextDistinctBooks(int count){
+            int lines = Math.min(count, inventory.getRowCount());
+            int first = random.nextInt(inventory.getRowCount() - lines + 1);
+            books = new Book[lines];
+            for(int i = 0; i < lines; i++)
+                books[i] = inventory.get(first + i);
+        }//end nextDistinctBooks
+
+        @Override
+        void tearDown(){
+            DataManager dm = new DataManager(store.getDatabase());
+            store.closeSession("bench");
+            store.close();
+            dm.getOutputFile().delete();
+            dm.getQuantityFile().delete();
+            deleteAll(dm.getDeltaDirectory());
+            deleteAll(dm.getLedgerDirectory());
+        }//end tearDown
+
+    }//end inner class CartBenchmark
+
+    // A cart shown in a list with a total label, as the cart panel shows it. The
+    // change to the cart, laying the list out and painting it and the label all
+    // run on the event thread and are measured together.
+    private static abstract class EdtBenchmark extends CartBenchmark{
+
+        private JScrollPane scrollPane;
+        private JLabel totalLabel;
+        private BufferedImage screen;
+
+        EdtBenchmark(String name){
+            super(name, 1);
+        }//end EdtBenchmark
+
+        @Override
+        void setUp(File catalog) throws IOException{
+            super.setUp(catalog);
+            nextDistinctBooks(EDT_LINES);
+
+            try {
+                SwingUtilities.invokeAndWait(() -> {
+                    JList<CartLine> list = new JList<>(cart);
+                    new BookCellRenderer(new Book("The Curious Incident of the Dog in the Nighttime", "000.00", 0), 9999).install(list);
+                    scrollPane = new JScrollPane(list);
+                    scrollPane.setSize(600, 400);
+                    totalLabel = new JLabel();
+                    totalLabel.setSize(200, 40);
+                    cart.addChangeListener(e -> totalLabel.setText("$" + Money.format(cart.getTotalCents())));
+                    screen = new BufferedImage(600, 440, BufferedImage.TYPE_INT_RGB);
+                });
+            } catch(Exception ex){
+                throw new IOException(ex);
+            }
+        }//end setUp
+
+        // One copy of each chosen book
+        Map<Book, Integer> lineCounts(){
+            Map<Book, Integer> counts = new LinkedHashMap<>();
+            for(Book b : books)
+                counts.put(b, 1);
+            return counts;
+        }//end lineCounts
+
+        // Runs a change to the cart on the event thread, then lays out and paints
+        void onEdt(Runnable change) throws Exception{
+            SwingUtilities.invokeAndWait(() -> {
+                change.run();
+                scrollPane.validate();
+                Graphics g = screen.getGraphics();
+                scrollPane.paint(g);
+                g.translate(0, 400);
+                totalLabel.paint(g);
+                g.dispose();
+            });
+        }//end onEdt
+
+    }//end inner class EdtBenchmark
+
+    // Sessions on their own threads all reserving the same few books, each
+    // releasing most reservations and selling the rest, as carts are filled,
+    // emptied and checked out. Once every thread is done the engine's counters
+    // are checked: none negative, nothing left reserved, every reservation
+    // released or sold, and the copies on hand plus the copies sold equal to
+    // the stock at the start. A run that breaks one fails the benchmark.
+    private static class StockStressBenchmark extends Benchmark{
+
+        private StockEngine engine;
+
+        StockStressBenchmark(String name){
+            super(name, STRESS_THREADS * STRESS_OPS);
+        }//end StockStressBenchmark
+
+        @Override
+        void setUp(File catalog){
+            engine = new StockEngine(STRESS_BOOKS);
+        }//end setUp
+
+        @Override
+        void prepare(){
+            for(int id = 0; id < STRESS_BOOKS; id++)
+                engine.setOnHand(id, STRESS_STOCK);
+        }//end prepare
+
+        @Override
+        void run() throws InterruptedException{
+
+            // The counters before this run
+            long reservations = engine.getReservations();
+            long rejections = engine.getRejections();
+            long finished = engine.getReleases() + engine.getCommits();
+            LongAdder sold = new LongAdder();
+
+            // Start every session at once
+            CountDownLatch start = new CountDownLatch(1);
+            Thread[] threads = new Thread[STRESS_THREADS];
+            for(int t = 0; t < threads.length; t++){
+                threads[t] = new Thread(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    try {
+                        start.await();
+                    } catch(InterruptedException ex){
+                        return;
+                    }
+                    for(int i = 0; i < STRESS_OPS; i++){
+                        int id = random.nextInt(STRESS_BOOKS);
+                        int count = 1 + random.nextInt(3);
+                        if(!engine.reserve(id, count))
+                            continue;
+                        if(random.nextInt(10) == 0){
+                            engine.commit(id, count);
+                            sold.add(count);
+                        }
+                        else
+                            engine.release(id, count);
+                    }
+                });
+                threads[t].start();
+            }
+            start.countDown();
+            for(Thread t : threads)
+                t.join();
+
+            // Check the counters against each other now that the sessions have stopped
+            long onHand = 0;
+            for(int id = 0; id < STRESS_BOOKS; id++){
+                if(engine.getReserved(id) != 0)
+                    throw new IllegalStateException(engine.getReserved(id) + " copies of book " + id + " left reserved");
+                onHand += engine.getOnHand(id);
+            }
+            if(!engine.checkInvariants())
+                throw new IllegalStateException("A stock counter went negative");
+            long reserved = engine.getReservations() - reservations;
+            if(reserved + engine.getRejections() - rejections != (long) STRESS_THREADS * STRESS_OPS)
+                throw new IllegalStateException("Reservations were lost");
+            if(reserved != engine.getReleases() + engine.getCommits() - finished)
+                throw new IllegalStateException("Reservations neither released nor sold");
+            if(onHand + sold.sum() != (long) STRESS_BOOKS * STRESS_STOCK)
+                throw new IllegalStateException("Copies on hand and sold don't add up to the stock");
+        }//end run
+
+    }//end inner class StockStressBenchmark
+
+    // Adds and removes of prices read from the catalog
+    private static abstract class MoneyBenchmark extends Benchmark{
+
+        // The prices as the catalog writes them, half of each, and the prices in cents
+        String[] prices;
+        String[] halves;
+        long[] cents;
+
+        MoneyBenchmark(String name){
+            super(name, MONEY_MUTATIONS);
+        }//end MoneyBenchmark
+
+        @Override
+        void setUp(File catalog) throws IOException{
+            CatalogStore store = new DataManager(catalog).loadStore();
+            int count = Math.min(MONEY_PRICES, store.size());
+            prices = new String[count];
+            halves = new String[count];
+            cents = new long[count];
+            for(int i = 0; i < count; i++){
+                prices[i] = store.getPrice(i);
+                cents[i] = Money.parseCents(prices[i]);
+                halves[i] = Money.format(cents[i] >> 1);
+            }
+        }//end setUp
+
+    }//end inner class MoneyBenchmark
+
+}//end class Benchmarks
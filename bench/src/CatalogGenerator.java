@@ -0,0 +1,101 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// Writes synthetic book databases for the benchmarks. The same row count and
+// seed always give the same file. Titles are made of a few words from a fixed
+// vocabulary, some start with "The" and about one in fifty holds a comma so
+// the quoted form of a row is exercised too.
+public class CatalogGenerator {
+
+    // The seed used unless another is given
+    public static final long DEFAULT_SEED = 42;
+
+    // Word pieces titles are built from
+    private static final String[] SYLLABLES = {
+        "an", "bel", "cor", "dra", "el", "fen", "gar", "hol", "ith", "jor", "kel", "lum",
+        "mar", "nor", "os", "pel", "quin", "ros", "sil", "tor", "ul", "vor", "wyn", "zen"
+    };
+
+    // Writes <rows> rows to <file>
+    public static void main(String[] args) throws IOException{
+
+        if(args.length < 2){
+            System.out.println("Usage: CatalogGenerator rows file [seed]");
+            return;
+        }
+
+        int rows = Integer.parseInt(args[0]);
+        File file = new File(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+
+        generate(file, rows, seed);
+        System.out.println("Wrote " + rows + " books to " + file + " (" + file.length() + " bytes)");
+    }//end main
+
+    // Returns catalog-<rows>.txt in the directory, writing it first if it isn't there
+    public static File ensure(File dir, int rows) throws IOException{
+
+        File file = new File(dir, "catalog-" + rows + ".txt");
+        if(!file.isFile()){
+            dir.mkdirs();
+            generate(file, rows, DEFAULT_SEED);
+        }
+
+        return file;
+    }//end ensure
+
+    // Writes a database of the given number of rows
+    public static void generate(File file, int rows, long seed) throws IOException{
+
+        Random random = new Random(seed);
+
+        // A vocabulary of a few thousand words so titles repeat their beginnings
+        // about as often as a real catalog's do
+        String[] words = new String[4096];
+        for(int i = 0; i < words.length; i++){
+            StringBuilder word = new StringBuilder();
+            int syllables = 1 + random.nextInt(3);
+            for(int s = 0; s < syllables; s++)
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+            words[i] = word.toString();
+        }
+
+        // Write to a temporary file then move it in so a half written catalog is never reused
+        File temp = new File(file.getPath() + ".tmp");
+        try(Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8), 1 << 16)){
+
+            StringBuilder title = new StringBuilder();
+            for(int row = 0; row < rows; row++){
+
+                // A title of one to five words
+                title.setLength(0);
+                if(random.nextInt(5) == 0)
+                    title.append("The ");
+                int count = 1 + random.nextInt(5);
+                for(int w = 0; w < count; w++){
+                    if(w > 0)
+                        title.append(random.nextInt(50) == 0 ? ", " : " ");
+                    title.append(words[random.nextInt(words.length)]);
+                }
+
+                String price = Money.format(100 + random.nextInt(9900));
+                int quantity = random.nextInt(51);
+
+                out.write(DataManager.formatRow(title.toString(), price, quantity));
+                out.write('\n');
+            }//end row loop
+        }
+
+        java.nio.file.Files.move(temp.toPath(), file.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+
+    }//end generate
+
+}//end class CatalogGenerator
@@ -0,0 +1,178 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Load test of the HTTP API with many shopping sessions open at once. Every
+// session first adds a book to its cart, so all of them hold a cart at the same
+// time, then each looks at its cart and checks out. Requests are sent by a pool
+// of client threads over kept-alive connections, and the throughput, the p50
+// and p99 latency and the failures of each kind of request are reported.
+//
+// Without --url the store is served in this process on a generated catalog
+// with plenty of every book, and the sessions left open are reported too.
+//
+//   LoadDriver [--sessions 20000] [--clients 64] [--rows 100000] [--dir path] [--url http://host:port]
+public class LoadDriver {
+
+    // How long a client waits for the server, in milliseconds
+    private static final int TIMEOUT_MILLIS = 30000;
+
+    public static void main(String[] args) throws Exception{
+
+        int sessions = 20000;
+        int clients = 64;
+        int rows = 100000;
+        File dir = new File(System.getProperty("java.io.tmpdir"), "bookstore-bench");
+        String url = null;
+
+        // Read the command line
+        for(int i = 0; i + 1 < args.length; i += 2){
+            switch(args[i]){
+                case "--sessions": sessions = Integer.parseInt(args[i + 1]); break;
+                case "--clients": clients = Integer.parseInt(args[i + 1]); break;
+                case "--rows": rows = Integer.parseInt(args[i + 1]); break;
+                case "--dir": dir = new File(args[i + 1]); break;
+                case "--url": url = args[i + 1]; break;
+                default:
+                    System.out.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+
+        // Serve a generated catalog here unless a server was given
+        StoreService store = null;
+        StoreServer server = null;
+        if(url == null){
+            store = StoreService.open(CatalogGenerator.ensure(dir, rows));
+            Inventory inventory = store.getInventory();
+            for(int id = 0; id < inventory.getRowCount(); id++)
+                inventory.setOnHand(id, 1000000);
+            rows = inventory.getRowCount();
+
+            server = new StoreServer(store, 0);
+            server.start();
+            url = "http://localhost:" + server.getPort();
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try {
+            System.out.printf("%d sessions, %d clients, %s%n", sessions, clients, url);
+            System.out.printf("%-10s %9s %10s %10s %10s %9s%n", "Request", "Count", "req/s", "p50 ms", "p99 ms", "Failed");
+
+            Random random = new Random(1);
+            int[] books = new int[sessions];
+            for(int s = 0; s < sessions; s++)
+                books[s] = random.nextInt(rows);
+
+            String base = url;
+            run(pool, "add", sessions, s -> post(base + "/cart/add?session=load" + s + "&id=" + books[s] + "&count=1"));
+            if(store != null)
+                System.out.printf("%d sessions open%n", store.getSessionCount());
+            run(pool, "cart", sessions, s -> get(base + "/cart?session=load" + s));
+            run(pool, "checkout", sessions, s -> post(base + "/cart/checkout?session=load" + s));
+            if(store != null)
+                System.out.printf("%d sessions left open%n", store.getSessionCount());
+
+        } finally {
+            pool.shutdownNow();
+            if(server != null)
+                server.close();
+            if(store != null){
+                DataManager dm = new DataManager(store.getDatabase());
+                store.close();
+                dm.getOutputFile().delete();
+                dm.getQuantityFile().delete();
+                deleteAll(dm.getDeltaDirectory());
+                deleteAll(dm.getLedgerDirectory());
+            }
+        }
+    }//end main
+
+    // A request sent for one session, returning the HTTP status
+    private interface Request{
+        int send(int session) throws IOException;
+    }//end interface Request
+
+    // Helper - Sends one request for every session from the client pool and
+    // prints how they went
+    private static void run(ExecutorService pool, String name, int sessions, Request request) throws InterruptedException{
+
+        long[] latencies = new long[sessions];
+        AtomicInteger failed = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(sessions);
+
+        long start = System.nanoTime();
+        for(int s = 0; s < sessions; s++){
+            int session = s;
+            pool.execute(() -> {
+                long sent = System.nanoTime();
+                try {
+                    if(request.send(session) / 100 != 2)
+                        failed.incrementAndGet();
+                } catch(IOException ex){
+                    failed.incrementAndGet();
+                }
+                latencies[session] = System.nanoTime() - sent;
+                done.countDown();
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        System.out.printf("%-10s %9d %10.1f %10.2f %10.2f %9d%n", name, sessions,
+                sessions / (elapsed / 1e9),
+                latencies[sessions / 2] / 1e6,
+                latencies[Math.min(sessions - 1, (int) (sessions * 0.99))] / 1e6,
+                failed.get());
+    }//end run
+
+    // Helper - Sends a GET and reads the answer
+    private static int get(String url) throws IOException{
+        return send(url, "GET");
+    }//end get
+
+    // Helper - Sends a POST without a body and reads the answer
+    private static int post(String url) throws IOException{
+        return send(url, "POST");
+    }//end post
+
+    // Helper - Sends a request, reading the whole answer so the connection is kept alive
+    private static int send(String url, String method) throws IOException{
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if(in != null){
+            try(InputStream body = in){
+                byte[] buffer = new byte[4096];
+                while(body.read(buffer) >= 0){
+                }
+            }
+        }
+
+        return status;
+    }//end send
+
+    // Helper - Deletes a directory and the files in it
+    private static void deleteAll(File dir){
+        File[] files = dir.listFiles();
+        if(files != null)
+            for(File f : files)
+                f.delete();
+        dir.delete();
+    }//end deleteAll
+
+}//end class LoadDriver
@@ -0,0 +1,138 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import javax.swing.*;
+import javax.swing.event.*;
+
+// A list model whose changes can be made in a batch. Between beginBatch and
+// commitBatch the list events a model fires are only recorded; the commit fires
+// one event for the rows added or removed at the end of the list and one for
+// the rows changed before it, whatever was done in between. Change listeners,
+// such as a label showing a total, hear once per batch or once per change made
+// outside one.
+//
+// The models in this store only add and remove rows at the end of the list, so
+// rows added or removed anywhere else are taken to change every row after them.
+public abstract class BatchListModel<E> extends AbstractListModel<E> {
+
+    // Batches begun and not yet committed, they may nest
+    private int depth;
+
+    // The size of the list when the outermost batch began
+    private int sizeBefore;
+
+    // The rows changed in the batch, from > to when none have
+    private int changedFrom, changedTo;
+
+    // Whether anything has been fired in the batch
+    private boolean dirty;
+
+    // Starts a batch, the events of every change until it is committed are coalesced
+    public void beginBatch(){
+        if(depth++ == 0){
+            sizeBefore = getSize();
+            changedFrom = Integer.MAX_VALUE;
+            changedTo = -1;
+            dirty = false;
+        }
+    }//end beginBatch
+
+    // Ends a batch, firing the coalesced events when the outermost batch ends
+    public void commitBatch(){
+
+        if(depth == 0)
+            throw new IllegalStateException("No batch to commit");
+        if(--depth > 0 || !dirty)
+            return;
+
+        int size = getSize();
+        int common = Math.min(size, sizeBefore);
+
+        // Rows added or removed at the end of the list
+        if(size > sizeBefore)
+            super.fireIntervalAdded(this, sizeBefore, size - 1);
+        else if(size < sizeBefore)
+            super.fireIntervalRemoved(this, size, sizeBefore - 1);
+
+        // Rows before them that were changed
+        if(changedFrom < common)
+            super.fireContentsChanged(this, changedFrom, Math.min(changedTo, common - 1));
+
+        fireStateChanged();
+    }//end commitBatch
+
+    // Whether a batch has begun and not been committed
+    public boolean isBatching(){
+        return depth > 0;
+    }//end isBatching
+
+    // Adds a listener told once per batch, or once per change outside one
+    public void addChangeListener(ChangeListener l){
+        listenerList.add(ChangeListener.class, l);
+    }//end addChangeListener
+
+    public void removeChangeListener(ChangeListener l){
+        listenerList.remove(ChangeListener.class, l);
+    }//end removeChangeListener
+
+    @Override
+    protected void fireContentsChanged(Object source, int index0, int index1){
+        if(depth > 0)
+            record(Math.min(index0, index1), Math.max(index0, index1));
+        else{
+            super.fireContentsChanged(source, index0, index1);
+            fireStateChanged();
+        }
+    }//end fireContentsChanged
+
+    @Override
+    protected void fireIntervalAdded(Object source, int index0, int index1){
+        if(depth > 0)
+            recordInterval(Math.min(index0, index1), Math.max(index0, index1), Math.max(index0, index1) == getSize() - 1);
+        else{
+            super.fireIntervalAdded(source, index0, index1);
+            fireStateChanged();
+        }
+    }//end fireIntervalAdded
+
+    @Override
+    protected void fireIntervalRemoved(Object source, int index0, int index1){
+        if(depth > 0)
+            recordInterval(Math.min(index0, index1), Math.max(index0, index1), Math.min(index0, index1) == getSize());
+        else{
+            super.fireIntervalRemoved(source, index0, index1);
+            fireStateChanged();
+        }
+    }//end fireIntervalRemoved
+
+    // Helper - Records rows added or removed, which also change the rows after
+    // them unless they were at the end of the list. The model's size has
+    // already changed when the event is fired.
+    private void recordInterval(int from, int to, boolean atEnd){
+        if(atEnd)
+            record(from, to);
+        else
+            record(from, Integer.MAX_VALUE);
+    }//end recordInterval
+
+    // Helper - Widens the rows changed in the batch
+    private void record(int from, int to){
+        changedFrom = Math.min(changedFrom, from);
+        changedTo = Math.max(changedTo, to);
+        dirty = true;
+    }//end record
+
+    // Helper - Tells the change listeners the model changed
+    private void fireStateChanged(){
+        ChangeEvent e = null;
+        for(ChangeListener l : listenerList.getListeners(ChangeListener.class)){
+            if(e == null)
+                e = new ChangeEvent(this);
+            l.stateChanged(e);
+        }
+    }//end fireStateChanged
+
+}//end class BatchListModel
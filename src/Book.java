@@ -5,39 +5,104 @@
  */
 public class Book{
 
-    // Name of the book
+    // Name of the book, decoded from the inventory when first asked for
     private String name;
 
-    // Price of the book
+    // Price of the book, formatted when first asked for
     private String price;
 
+    // Price of the book in cents, parsed once when the book is created
+    private long priceCents;
+
     // Quantity of this book on-hand
     private int quantity;
 
+    // Row of this book in its catalog, -1 if it isn't from one
+    private int id = -1;
+
+    // The inventory holding this book's quantity, null for a standalone book
+    private Inventory owner;
+
+    // The rows of the inventory the title is decoded from
+    private Inventory.RowSource rows;
+
     public Book(String name, String price, int quantity){
         this.name = name;
         this.price = price;
+        this.priceCents = Money.parseCents(price);
         this.quantity = quantity;
     }//end Book
 
+    // Creates a view of an inventory row. The quantity lives in the inventory so
+    // every view of the same row sees the same on-hand quantity, and the title is
+    // only decoded from the inventory's rows once it is shown.
+    Book(Inventory owner, int id, Inventory.RowSource rows){
+        this.owner = owner;
+        this.id = id;
+        this.rows = rows;
+        this.priceCents = rows.getPriceCents(id);
+    }//end Book
+
+    public int getId(){
+        return id;
+    }//end getId
+
+    // Only set by the loader once the row's position in the catalog is known
+    void setId(int id){
+        this.id = id;
+    }//end setId
+
+    // The version of the inventory the book is from, what was kept about its
+    // title and price still holds while it stays the same. Standalone books never change.
+    long getVersion(){
+        return owner != null ? owner.getVersion() : 0;
+    }//end getVersion
+
     public String getName(){
+        if(name == null)
+            name = rows.getName(id);
         return name;
     }//end getName
 
     public int getQuantity(){
-        return quantity;
+        return owner != null ? owner.getQuantity(id) : quantity;
     }//end getQuantity
 
     public void setQuantity(int quantity){
-        this.quantity = quantity;
+        if(owner != null)
+            owner.setQuantity(id, quantity);
+        else
+            this.quantity = quantity;
     }//end setQuantity
 
     public String getPrice(){
+        if(price == null)
+            price = Money.format(priceCents);
         return price;
     }//end getPrice
 
+    public long getPriceCents(){
+        return priceCents;
+    }//end getPriceCents
+
     public String toString(){
-        return name  + " $" + price;
+        return getName() + " $" + getPrice();
     }//end toString
 
+    // Views of the same inventory row are the same book
+    @Override
+    public boolean equals(Object o){
+        if(this == o)
+            return true;
+        if(!(o instanceof Book))
+            return false;
+        Book other = (Book) o;
+        return owner != null && owner == other.owner && id == other.id;
+    }//end equals
+
+    @Override
+    public int hashCode(){
+        return owner != null ? id : System.identityHashCode(this);
+    }//end hashCode
+
 }//end class Book
@@ -0,0 +1,254 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import javax.swing.*;
+import javax.swing.border.Border;
+import java.awt.*;
+import java.util.*;
+
+// Paints books and cart lines in three columns: the title, the price and a count,
+// the copies available for a book or the copies in the cart for a cart line. The
+// title cut to fit its column and the price text are measured once per book and
+// kept in a small least recently used cache, so painting a row that was painted
+// before only draws text. A cached book is checked against its inventory's
+// version and its price rather than its title, so no title is decoded either.
+// The count is drawn from a reused char buffer. Every cell is the same size,
+// worked out once from the font, so the list never asks a row for its size.
+public class BookCellRenderer extends JComponent implements ListCellRenderer<Object> {
+
+    // Books whose text is kept, several screens of rows
+    private static final int MAX_CACHED = 1024;
+
+    // Pixels around the text of a cell and between its columns
+    private static final int INSET = 2;
+    private static final int GAP = 12;
+
+    // What is shown after the title cut short
+    private static final String ELLIPSIS = "...";
+
+    // The text as wide as a cell, and the widest price and count a column is sized for
+    private final String prototypeText;
+    private final String prototypePrice;
+    private final String prototypeCount;
+
+    // Measured text of each book, keyed by the book, which is its catalog row
+    private final LinkedHashMap<Book, Text> cache = new LinkedHashMap<Book, Text>(MAX_CACHED * 2, 0.75f, true){
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Book, Text> eldest){
+            return size() > MAX_CACHED;
+        }//end removeEldestEntry
+    };
+
+    // The font the cache and columns were measured with
+    private Font measuredFont;
+    private int titleWidth, priceWidth, countWidth;
+
+    // What the next paint draws
+    private Text text;
+    private final char[] count = new char[12];
+    private int countStart;
+    private Border focusBorder;
+
+    // The measured text of one book
+    private static class Text{
+
+        // What it was measured from, to notice a changed row
+        final long version;
+        final long priceCents;
+
+        // The title cut to its column, and the price and its width
+        final String title;
+        final String price;
+        final int priceWidth;
+
+        Text(long version, long priceCents, String title, String price, int priceWidth){
+            this.version = version;
+            this.priceCents = priceCents;
+            this.title = title;
+            this.price = price;
+            this.priceWidth = priceWidth;
+        }//end Text
+
+    }//end inner class Text
+
+    // Sizes the cells as wide as a prototype book's title, and the columns for
+    // its price and the largest count shown
+    public BookCellRenderer(Book prototype, int maxCount){
+        this.prototypeText = prototype.getName();
+        this.prototypePrice = "$" + prototype.getPrice();
+        this.prototypeCount = "x" + maxCount;
+        setOpaque(true);
+    }//end BookCellRenderer
+
+    // Renders a list's cells and fixes their size for the list's font
+    public void install(JList<?> list){
+        measure(list.getFont());
+        list.setCellRenderer(this);
+        list.setFixedCellWidth(getCellWidth());
+        list.setFixedCellHeight(getCellHeight());
+    }//end install
+
+    // The width of every cell
+    public int getCellWidth(){
+        return INSET + titleWidth + GAP + priceWidth + GAP + countWidth + INSET;
+    }//end getCellWidth
+
+    // The height of every cell
+    public int getCellHeight(){
+        return getFontMetrics(measuredFont).getHeight() + 2 * INSET;
+    }//end getCellHeight
+
+    @Override
+    public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus){
+
+        // Remeasure if the list's font changed
+        if(!list.getFont().equals(measuredFont))
+            measure(list.getFont());
+
+        // Copies in the cart for a cart line, copies available for a book
+        Book book;
+        if(value instanceof CartLine){
+            book = ((CartLine) value).getBook();
+            countStart = format(((CartLine) value).getQuantity(), true);
+        }
+        else{
+            book = (Book) value;
+            countStart = format(book == null ? 0 : book.getQuantity(), false);
+        }
+
+        text = book == null ? null : text(book);
+        focusBorder = cellHasFocus ? UIManager.getBorder("List.focusCellHighlightBorder") : null;
+
+        setFont(measuredFont);
+        setBackground(isSelected ? list.getSelectionBackground() : list.getBackground());
+        setForeground(isSelected ? list.getSelectionForeground() : list.getForeground());
+        setComponentOrientation(list.getComponentOrientation());
+        return this;
+    }//end getListCellRendererComponent
+
+    @Override
+    protected void paintComponent(Graphics g){
+
+        g.setColor(getBackground());
+        g.fillRect(0, 0, getWidth(), getHeight());
+        if(text == null)
+            return;
+
+        g.setFont(measuredFont);
+        g.setColor(getForeground());
+        FontMetrics metrics = g.getFontMetrics();
+        int baseline = INSET + metrics.getAscent();
+
+        // Title on the left, price and count right aligned in their columns
+        int x = INSET;
+        g.drawString(text.title, x, baseline);
+        x += titleWidth + GAP;
+        g.drawString(text.price, x + priceWidth - text.priceWidth, baseline);
+        x += priceWidth + GAP;
+        int length = count.length - countStart;
+        g.drawChars(count, countStart, length, x + countWidth - metrics.charsWidth(count, countStart, length), baseline);
+
+        if(focusBorder != null)
+            focusBorder.paintBorder(this, g, 0, 0, getWidth(), getHeight());
+    }//end paintComponent
+
+    @Override
+    public Dimension getPreferredSize(){
+        return new Dimension(getCellWidth(), getCellHeight());
+    }//end getPreferredSize
+
+    // Only painted by the list's cell renderer pane, so none of these need to do anything
+    @Override
+    public void invalidate(){
+    }//end invalidate
+
+    @Override
+    public void validate(){
+    }//end validate
+
+    @Override
+    public void revalidate(){
+    }//end revalidate
+
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height){
+    }//end repaint
+
+    @Override
+    public void repaint(Rectangle r){
+    }//end repaint
+
+    @Override
+    protected void firePropertyChange(String propertyName, Object oldValue, Object newValue){
+    }//end firePropertyChange
+
+    // Helper - The measured text of a book, measuring it if it isn't cached or its
+    // inventory has been reloaded or its price changed since it was
+    private Text text(Book book){
+
+        long version = book.getVersion();
+        Text cached = cache.get(book);
+        if(cached != null && cached.version == version && cached.priceCents == book.getPriceCents())
+            return cached;
+
+        FontMetrics metrics = getFontMetrics(measuredFont);
+        String price = "$" + book.getPrice();
+        Text measured = new Text(version, book.getPriceCents(), fit(book.getName(), metrics),
+                price, metrics.stringWidth(price));
+        cache.put(book, measured);
+        return measured;
+    }//end text
+
+    // Helper - A title cut short with an ellipsis to fit the title column
+    private String fit(String title, FontMetrics metrics){
+
+        if(metrics.stringWidth(title) <= titleWidth)
+            return title;
+
+        // The longest start of the title that fits along with the ellipsis
+        int room = titleWidth - metrics.stringWidth(ELLIPSIS);
+        int lo = 0, hi = title.length();
+        while(lo < hi){
+            int mid = (lo + hi + 1) >>> 1;
+            if(metrics.stringWidth(title.substring(0, mid)) <= room)
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+
+        return title.substring(0, lo) + ELLIPSIS;
+    }//end fit
+
+    // Helper - Writes a count, after an x for a cart line, into the end of the
+    // count buffer and returns where it starts
+    private int format(int n, boolean times){
+
+        int at = count.length;
+        long value = Math.abs((long) n);
+        do {
+            count[--at] = (char) ('0' + value % 10);
+            value /= 10;
+        } while(value > 0);
+
+        if(n < 0)
+            count[--at] = '-';
+        if(times)
+            count[--at] = 'x';
+        return at;
+    }//end format
+
+    // Helper - Sizes the columns for a font and forgets text measured with another
+    private void measure(Font font){
+
+        FontMetrics metrics = getFontMetrics(font);
+        measuredFont = font;
+        priceWidth = metrics.stringWidth(prototypePrice);
+        countWidth = metrics.stringWidth(prototypeCount);
+        titleWidth = Math.max(metrics.stringWidth(prototypeText) - GAP - priceWidth - GAP - countWidth, priceWidth);
+        cache.clear();
+    }//end measure
+
+}//end class BookCellRenderer
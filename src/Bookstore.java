@@ -9,13 +9,34 @@ import javax.swing.event.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
-import java.math.BigDecimal;
+import java.util.*;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 public class Bookstore {
 
-    // Represents the book database text file
-    private File databaseFile = new File("Books.txt");
+    // Represents the book database text files, several files or a directory are
+    // merged into one sharded catalog
+    private java.util.List<File> databaseFiles = Collections.singletonList(new File("Books.txt"));
+
+    // The store behind the window, its catalog, stock and checkout
+    private StoreService store;
+
+    // Loads the database in the background, null once it is done
+    private CatalogLoader loader;
+
+    // Reloads the database file when it changes, null for a sharded catalog
+    private CatalogWatcher watcher;
+
+    // Opens and closes the stores one at a time off the event dispatch thread, so
+    // a store never opens over files the previous one is still saving
+    private final ExecutorService storeThread = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "Bookstore store opener");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     // The font for lists text
     private Font listFont = new Font("Monospaced", Font.ITALIC, 18);
@@ -29,6 +50,9 @@ public class Bookstore {
     // The list text color
     private Color listTextColor = new Color(255,110,40);
 
+    // Sizes every list cell so the lists never measure each row
+    private Book listPrototype = new Book("The Curious Incident of the Dog in the Nighttime", "000.00", 0);
+
     // The top level container for all components
     private JFrame frame;
 
@@ -76,6 +100,9 @@ public class Bookstore {
         // Load in the database from the database file
         loadDatabase();
 
+        // Flush any unsaved checkouts when the program exits
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
+
     }//end Bookstore
 
     private void setupFrame(){
@@ -142,22 +169,231 @@ public class Bookstore {
         // The menu has now been setup
     }//end setupMenu
 
+    // Starts loading the database file in the background. The store list fills in
+    // a chunk at a time and the store opens for checkout once every book is in.
     private void loadDatabase(){
 
-        DataManager dm = new DataManager(databaseFile);
-        DefaultListModel<Book> data = null;
+        // Stop loading the previous file if it is still going. A load that has
+        // already opened its store but not shown it yet gives the store up.
+        if(loader != null && !loader.cancel(true)){
+            StoreService opened = loader.opened.getAndSet(null);
+            if(opened != null)
+                storeThread.execute(opened::close);
+        }
+
+        // Finish saving the previous database in the background
+        closeStore();
 
-        try {
-            data = dm.getData();
+        // Show an empty inventory that grows as the chunks arrive
+        storePanel.bookData = new Inventory();
+        storePanel.storeList.setModel(storePanel.bookData);
+        storePanel.setLoading(true);
 
-            for(int i = 0; i < data.size(); i++)
-                storePanel.bookData.addElement(data.getElementAt(i));
+        // Load the file off the event dispatch thread
+        loader = new CatalogLoader(databaseFiles, storePanel.bookData);
+        loader.execute();
 
-        } catch (IOException ex) {
+    }//end loadDatabase
+
+    // Helper - Stops watching the current store and flushes and closes it on the
+    // store thread
+    private synchronized void closeStore(){
+        if(watcher != null){
+            watcher.close();
+            watcher = null;
+        }
+        if(store != null){
+            storeThread.execute(store::close);
+            store = null;
+        }
+    }//end closeStore
+
+    // Helper - Closes the current store when the program exits and waits for
+    // every store still closing
+    private void shutdown(){
+        closeStore();
+        storeThread.shutdown();
+        try {
+            storeThread.awaitTermination(1, TimeUnit.MINUTES);
+        } catch(InterruptedException ex){
             System.out.println(ex);
         }
+    }//end shutdown
 
-    }//end loadDatabase
+    // Helper - Applies the changes made to the database file. The file is parsed
+    // and compared on the watcher's thread; only applying the difference happens
+    // on the event dispatch thread, so the list hears only the rows that changed.
+    private void reloadDatabase(StoreService reloaded){
+        try {
+            CatalogDiff diff = reloaded.diffDatabase();
+            if(diff.isEmpty())
+                return;
+
+            SwingUtilities.invokeAndWait(() -> {
+                // Another database may have been opened meanwhile
+                if(store != reloaded)
+                    return;
+                reloaded.apply(diff);
+                storePanel.updateQuantitySelector();
+            });
+
+            // Search the new titles once they are indexed
+            TitleIndex index = TitleIndex.build(reloaded.getInventory());
+            SwingUtilities.invokeLater(() -> {
+                if(store == reloaded)
+                    storePanel.setTitleIndex(index);
+            });
+        } catch(InvocationTargetException ex){
+            System.out.println(ex.getCause());
+        } catch(IOException | InterruptedException ex){
+            System.out.println(ex);
+        }
+    }//end reloadDatabase
+
+    // Loads a database file on a background thread. Each chunk of rows is published
+    // as it is parsed and the chunks that arrive together are added to the store
+    // list with a single event. The title index is built once every chunk is in.
+    // A sharded catalog is loaded in parallel and published once it is merged.
+    // The store is opened in the background too, once the previous one is closed.
+    private class CatalogLoader extends SwingWorker<TitleIndex, Inventory.RowSource>{
+
+        // The files being loaded
+        private final java.util.List<File> databases;
+
+        // The inventory shown in the store list that the rows are added to
+        private final Inventory inventory;
+
+        // The merged catalog when loading shards
+        private ShardedCatalog catalog;
+
+        // Every chunk parsed so far
+        private final java.util.List<Inventory.RowSource> loaded = Collections.synchronizedList(new ArrayList<>());
+
+        // How many of the chunks the inventory holds, only used on the event dispatch thread
+        private int appended;
+
+        // The store opened for the books until it is shown, or closed when the load is cancelled
+        private final AtomicReference<StoreService> opened = new AtomicReference<>();
+
+        CatalogLoader(java.util.List<File> databases, Inventory inventory){
+            this.databases = databases;
+            this.inventory = inventory;
+        }//end CatalogLoader
+
+        // Whether the files are shards to be merged
+        private boolean isSharded(){
+            return databases.size() > 1 || databases.get(0).isDirectory();
+        }//end isSharded
+
+        // Parses the file, publishing each chunk and the share of the file read,
+        // then indexes the titles and opens the store
+        @Override
+        protected TitleIndex doInBackground() throws Exception{
+
+            TitleIndex index;
+            if(isSharded()){
+                // Merge the shards and show them all at once
+                catalog = ShardedCatalog.load(databases.size() > 1 ? databases : ShardedCatalog.listShards(databases.get(0)));
+                loaded.add(catalog.getRows());
+                publish(catalog.getRows());
+                setProgress(100);
+                index = TitleIndex.build(catalog.getRows());
+            } else {
+                new DataManager(databases.get(0)).loadChunks((chunk, read, total) -> {
+                    loaded.add(chunk);
+                    publish(chunk);
+                    setProgress((int) (100 * read / Math.max(1, total)));
+                });
+
+                // The chunks hold the same rows in the same order as the inventory
+                synchronized(loaded){
+                    index = TitleIndex.build(new CatalogParts(new ArrayList<>(loaded)));
+                }
+            }
+
+            // The store opens over the whole inventory
+            SwingUtilities.invokeAndWait(this::appendLoaded);
+
+            // Open it after the previous store has closed
+            try {
+                storeThread.submit(this::openStore).get();
+            } catch(ExecutionException ex){
+                if(ex.getCause() instanceof IOException)
+                    throw (IOException) ex.getCause();
+                throw ex;
+            }
+
+            return index;
+        }//end doInBackground
+
+        // Helper - Opens the store on the store thread, closing it again straight
+        // away when the load was cancelled meanwhile
+        private Void openStore() throws IOException{
+            StoreService store = catalog != null ? StoreService.open(catalog, inventory) : StoreService.open(databases.get(0), inventory);
+            opened.set(store);
+            if(isCancelled() && opened.compareAndSet(store, null))
+                store.close();
+            return null;
+        }//end openStore
+
+        // Adds the chunks that have arrived to the store list
+        @Override
+        protected void process(java.util.List<Inventory.RowSource> chunks){
+            appendLoaded();
+        }//end process
+
+        // Helper - Adds the chunks the inventory doesn't hold yet with a single event
+        private void appendLoaded(){
+            if(isCancelled())
+                return;
+
+            java.util.List<Inventory.RowSource> chunks;
+            synchronized(loaded){
+                chunks = new ArrayList<>(loaded.subList(appended, loaded.size()));
+            }
+            if(chunks.isEmpty())
+                return;
+
+            appended += chunks.size();
+            inventory.append(chunks);
+            storePanel.showLoadProgress(getProgress(), inventory.getSize());
+        }//end appendLoaded
+
+        // Shows the store opened for the loaded books
+        @Override
+        protected void done(){
+            StoreService opened = this.opened.getAndSet(null);
+
+            // A newer load has taken over
+            if(isCancelled()){
+                if(opened != null)
+                    storeThread.execute(opened::close);
+                return;
+            }
+
+            loader = null;
+
+            try {
+                // Rethrows anything the load failed with
+                TitleIndex index = get();
+
+                store = opened;
+                storePanel.setTitleIndex(index);
+
+                // Pick up edits to a single database file while the store is open
+                if(catalog == null)
+                    watcher = CatalogWatcher.watch(databases.get(0), () -> reloadDatabase(opened));
+
+            } catch(ExecutionException ex){
+                System.out.println(ex.getCause());
+            } catch(InterruptedException | IOException ex){
+                System.out.println(ex);
+            }
+
+            storePanel.setLoading(false);
+        }//end done
+
+    }//end inner class CatalogLoader
 
     private void outputMessage(String msg, String title){
         JOptionPane.showMessageDialog(null, msg, title, JOptionPane.INFORMATION_MESSAGE);
@@ -166,10 +402,10 @@ public class Bookstore {
     private class CartPanel extends JPanel{
 
         // Store books in the shopping cart here
-        private JList<Book> shoppingCart;
+        private JList<CartLine> shoppingCart;
 
-        // Stores the book data in this default list model
-        private DefaultListModel<Book> bookData;
+        // Stores a line per book in the cart
+        private Cart bookData;
 
         // Scroll pane for the shopping cart
         private JScrollPane scrollPane;
@@ -191,9 +427,6 @@ public class Bookstore {
         // The panel containing the cart control panel
         private JPanel cartControlPanel;
 
-        // The total value of books in the cart
-        private BigDecimal totalCost = new BigDecimal("0.0");
-
         // The listener for all events on this panel
         private CartPanelListener listener = new CartPanelListener();
 
@@ -223,102 +456,46 @@ public class Bookstore {
 
         }//end CartPanel
 
-        // Add the book to the cart
-        public void addToCart(Book b){
-            // Add the book to the model
-            bookData.addElement(b);
-
-            // Add the total to the price
-            addTotal(b.getPrice());
+        // Reserves copies of the book and adds them to the cart, returns false if
+        // there aren't enough in stock
+        public boolean addToCart(Book b, int count){
+            // Reserve the copies and add them to the book's line, the cart's
+            // change listener shows the new total
+            return store.addToCart(bookData, b, count);
         }//end addToCart
 
         // Checks out by buying all the books in the cart
         public void buyBooks(){
 
-            BigDecimal salesTax, // The sales tax which is 7% of the subtotal
-                       total,    // The total cost
-                       subtotal; // The subtotal which is a copy of totalCost
-
-            // Copy total cost into subtotal
-            subtotal = new BigDecimal(totalCost.toString());
-
-            // If the cart isn't empty
-            if(!bookData.isEmpty()) {
-
-                // The number of books in the cart
-                int cartSize = bookData.getSize();
+            // Sell the reserved copies, which also saves the new on-hand quantities
+            StoreService.Receipt receipt = store.checkout(bookData);
 
-                // Clear the list from back to front
-                for (int i = cartSize-1; i >= 0; i--) {
-
-                    // Get the current book
-                    Book b = bookData.elementAt(i);
-
-                    // Remove the book from the cart
-                    bookData.removeElement(b);
-
-                    // Subtract the book from the cart total
-                    subtractTotal(b.getPrice());
-
-                }//end clear cart loop
-
-                // Compute the sales tax
-                salesTax = subtotal.multiply(new BigDecimal(0.07));
-
-                // Compute tht total
-                total = salesTax.add(subtotal);
-
-                // Update the file to reflect the on-hand quantity
-                new DataManager(databaseFile).updateFile(storePanel.bookData);
+            // If the cart wasn't empty
+            if(receipt != null) {
 
                 // Output a message for the checkout details
-                String s = "Subtotal: $" + subtotal.setScale(2, BigDecimal.ROUND_CEILING).doubleValue() +
-                           "\nSales Tax: $" + salesTax.setScale(2, BigDecimal.ROUND_CEILING).doubleValue() +
-                           "\nTotal: $" + total.setScale(2, BigDecimal.ROUND_CEILING).doubleValue() + "\nThanks for shopping Tim's bookstore!";
-
-                outputMessage(s, "Checkout Receipt");
+                outputMessage(receipt + "\nThanks for shopping Tim's bookstore!", "Checkout Receipt");
 
             }//end if not empty
 
         }//end buyBooks
 
-        // Adds the provided string to the total cart value
-        public void addTotal(String addMe){
-            totalCost = totalCost.add(new BigDecimal(addMe));
-            totalLabel.setText("$" + totalCost.setScale(2, BigDecimal.ROUND_CEILING).doubleValue());
-        }//end addTotal
-
-        // Subtracts the provided string from the total cart value
-        public void subtractTotal(String subtractMe){
-            totalCost = totalCost.subtract(new BigDecimal(subtractMe));
-            totalLabel.setText("$" + totalCost.setScale(2, BigDecimal.ROUND_CEILING).doubleValue());
-        }//end subtractTotal
+        // Shows the total cart value, called once for each change or batch of changes to the cart
+        public void updateTotal(){
+            totalLabel.setText("$" + Money.format(bookData.getTotalCents()));
+        }//end updateTotal
 
         public void clearCart(){
             // If the cart isn't empty
             if(!bookData.isEmpty()) {
-                // Store book references here
-                Book b = null;
 
-                // The number of books in the cart
-                int cartSize = bookData.getSize();
+                // Return each line's copies to the store's stock and empty the cart
+                // as one batch, so the list and the total are updated once
+                store.clearCart(bookData);
 
-                // Clear the list from back to front
-                for (int i = cartSize-1; i >= 0; i--) {
+                // Update the quantity shown for the selected book
+                storePanel.updateQuantitySelector();
 
-                    // Get the current book
-                    b = bookData.elementAt(i);
-
-                    // Remove the book from the cart
-                    bookData.removeElement(b);
-
-                    // Return the book to the store's stock
-                    storePanel.returnItem(b);
-
-                    // Subtract the book's price
-                    subtractTotal(b.getPrice());
-
-                }//end clear cart loop
             }//end if !empty
         }//end clearCart
 
@@ -328,8 +505,11 @@ public class Bookstore {
             // Setup border layout for the list panel
             cartListPanel.setLayout(new BorderLayout());
 
-            // Create the list model that will store the book data
-            bookData = new DefaultListModel<>();
+            // Create the cart that will store the book data
+            bookData = new Cart();
+
+            // Show the new total whenever the cart changes
+            bookData.addChangeListener(e -> updateTotal());
 
             // Create the shopping cart as the JList
             shoppingCart = new JList<>(bookData);
@@ -346,6 +526,9 @@ public class Bookstore {
             // Set the listFont for the list
             shoppingCart.setFont(listFont);
 
+            // Paint the lines with cached text in cells of one fixed size
+            new BookCellRenderer(listPrototype, 9999).install(shoppingCart);
+
             shoppingCart.setForeground(listTextColor);
 
             // Set the the background color for the list
@@ -376,7 +559,7 @@ public class Bookstore {
             // Total label
             totalLabel = new JLabel();
 
-            totalLabel.setText("$" + totalCost.toString());
+            totalLabel.setText("$" + Money.format(bookData.getTotalCents()));
 
             // Set font for buttons
             clearAllBtn.setFont(componentFont);
@@ -444,16 +627,13 @@ public class Bookstore {
                 // If a book is selected
                 if(shoppingCart.getSelectedValue() != null) {
                     // Get the selected book
-                    Book b = shoppingCart.getSelectedValue();
-
-                    // Remove the book from the shopping cart
-                    bookData.removeElement(b);
+                    Book b = shoppingCart.getSelectedValue().getBook();
 
-                    // Return the book to the store's stock
-                    storePanel.returnItem(b);
+                    // Remove one copy of the book from the shopping cart and return it to the stock
+                    store.removeFromCart(bookData, b, 1);
 
-                    // Subtract the total from the price
-                    subtractTotal(b.getPrice());
+                    // Update the quantity shown for the selected book
+                    storePanel.updateQuantitySelector();
                 }//end if selected value is not null
             }//end removeItemButtonHandler
 
@@ -472,16 +652,19 @@ public class Bookstore {
         // The list of the books the store carries
         private JList<Book> storeList;
 
-        // The list model that stores the data for the book stock list
-        private DefaultListModel<Book> bookData;
+        // The indexed inventory that stores the data for the book stock list
+        private Inventory bookData;
 
         // The "Add to Cart" button
         private JButton addToCartBtn;
 
-        // The drop down list for the quantity of books to buy
-        private JComboBox<String> quantityBox;
+        // The selector for the quantity of books to buy, bounded by the copies on hand
+        private JSpinner quantitySpinner;
 
-        // The quantity label for the quantity combo box
+        // The range of quantities the selector allows
+        private SpinnerNumberModel quantityModel;
+
+        // The quantity label for the quantity selector
         private JLabel quantityLabel;
 
         // The listener for all events on this panel
@@ -496,6 +679,18 @@ public class Bookstore {
         // The Panel holding the Store's controls
         private JPanel storeControlPanel;
 
+        // Shows how much of the database has loaded
+        private JProgressBar loadProgress;
+
+        // Type-ahead search of the store list by title
+        private JTextField searchField;
+
+        // The index searched, null until the database has loaded
+        private TitleIndex titleIndex;
+
+        // The results being shown, null when not searching
+        private SearchResults searchResults;
+
         // The panel holding the quantity label and the quantity combobox
         private JPanel storeQuantityPanel;
 
@@ -519,29 +714,17 @@ public class Bookstore {
             // Set all the list properties
             setupStoreListPanel();
 
-            // Set all the button and combo box properties
+            // Set all the button and quantity selector properties
             setupStoreControlPanel();
 
             // Add the store list panel to the center
-            add(storeListScrollPane, BorderLayout.CENTER);
+            add(storeListPanel, BorderLayout.CENTER);
 
             // Add the store control panel to the bottom
             add(storeControlPanel, BorderLayout.SOUTH);
 
         }//end StorePanel
 
-        // Returns an item to the store's stock
-        public void returnItem(Book b){
-            // Get a reference to the stock book
-            Book stock = bookData.elementAt(bookData.indexOf(b));
-
-            // "Return" the item by incrementing the quantity
-            stock.setQuantity(b.getQuantity() + 1);
-
-            // Update the quantity combo box
-            updateQuantityComboBox();
-        }//end returnItem
-
         // Helper - Set the panel properties
         private void setupStorePanel(){
             // Set the layout of the store panel to border layout
@@ -556,14 +739,14 @@ public class Bookstore {
 
         // Helper - Setup the store list panel
         private void setupStoreListPanel(){
-            // Create the data model that will hold the book data
-            bookData = new DefaultListModel<>();
+            // Create the inventory that will hold the book data
+            bookData = new Inventory();
 
             // Create the JList to hold the books
             storeList = new JList<>(bookData);
 
-            // Add the store list panel to the scroll pane
-            storeListScrollPane = new JScrollPane(storeListPanel);
+            // Add the store list to the scroll pane so only the viewport is painted
+            storeListScrollPane = new JScrollPane(storeList);
 
             // Setup single selection mode
             storeList.setSelectionMode(ListSelectionModel.SINGLE_INTERVAL_SELECTION);
@@ -574,6 +757,9 @@ public class Bookstore {
             // Setup the listFont for this panel
             storeList.setFont(listFont);
 
+            // Paint the books with cached text in cells of one fixed size
+            new BookCellRenderer(listPrototype, 9999).install(storeList);
+
             // Set the the background color for the list
             storeList.setBackground(listColor);
 
@@ -583,8 +769,22 @@ public class Bookstore {
             // Add action listener for list selection event
             storeList.addListSelectionListener(listener);
 
-            // Add the store list to the store list panel
-            storeListPanel.add(storeList);
+            // Add the scroll pane to the store list panel
+            storeListPanel.add(storeListScrollPane, BorderLayout.CENTER);
+
+            // Create the search field above the list, each keystroke narrows the results
+            searchField = new JTextField();
+            searchField.setFont(componentFont);
+            searchField.setBorder(BorderFactory.createTitledBorder("Search Titles"));
+            searchField.getDocument().addDocumentListener(listener);
+            storeListPanel.add(searchField, BorderLayout.NORTH);
+
+            // Create the load progress bar under the list, shown while loading
+            loadProgress = new JProgressBar(0, 100);
+            loadProgress.setStringPainted(true);
+            loadProgress.setFont(componentFont);
+            loadProgress.setVisible(false);
+            storeListPanel.add(loadProgress, BorderLayout.SOUTH);
 
             // Set scroll bar policies
             storeListScrollPane.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS);
@@ -601,31 +801,31 @@ public class Bookstore {
             // Create the add to cart button
             addToCartBtn = new JButton("Add to Cart");
 
-            // Create the label for the combo box
+            // Create the label for the quantity selector
             quantityLabel = new JLabel("Quantity");
 
-            // Create the drop down list for the book quantity
-            quantityBox = new JComboBox<>();
+            // Create the selector for the book quantity, the model only holds its
+            // bounds so any number of copies on hand costs the same
+            quantityModel = new SpinnerNumberModel(0, 0, 0, 1);
+            quantitySpinner = new JSpinner(quantityModel);
+            ((JSpinner.DefaultEditor) quantitySpinner.getEditor()).getTextField().setColumns(6);
 
             // Add action listener to the button
             addToCartBtn.addActionListener(listener);
 
-            // Add action listener to the combo box
-            quantityBox.addActionListener(listener);
-
-            // Setup the quantity combo box by setting the selected
+            // Setup the quantity selector by bounding it by the selected
             // valued books on hand
             if(storeList.getSelectedValue() != null)
-                updateQuantityComboBox();
+                updateQuantitySelector();
 
             // Set the font for all the components
             addToCartBtn.setFont(componentFont);
             quantityLabel.setFont(componentFont);
-            quantityBox.setFont(componentFont);
+            quantitySpinner.setFont(componentFont);
 
             // Add the components to the quantity panel
             storeQuantityPanel.add(quantityLabel);
-            storeQuantityPanel.add(quantityBox);
+            storeQuantityPanel.add(quantitySpinner);
 
             // Add the buttons to the store control panel
             storeControlPanel.add(addToCartBtn);
@@ -637,43 +837,83 @@ public class Bookstore {
             storeControlPanel.setPreferredSize(CONTROL_PANEL_SIZE);
         }//end setupStoreControlPanel
 
-        // Helper - Updates the combo box to reflect the on-hand quantity
+        // Helper - Updates the quantity selector to reflect the on-hand quantity
         // of the currently selected book
-        private void updateQuantityComboBox(){
+        private void updateQuantitySelector(){
 
             // If the currently selected value in the stock list is not null
             if(storeList.getSelectedValue() != null){
-                // Then update the quantity held by the combo box
+                // Then update the range of the quantity selector
 
                 // Get the quantity of books for the selected value
                 int quantity = storeList.getSelectedValue().getQuantity();
 
-                // Setup a model to store the each valid number from [1,quantity]
-                DefaultComboBoxModel<String> dcm = new DefaultComboBoxModel<>();
-
-                // If the quantity is not zero
-                if(quantity != 0)
-                    // Add each element to the combo box
-                    for(Integer i = 1; i <= quantity; i++)
-                        dcm.addElement(i.toString());
-                // Else just add zero to the list
-                else
-                    dcm.addElement(new Integer(0).toString());
-
-                // Set the data model for the combo box
-                quantityBox.setModel(dcm);
+                // Allow every number from [1,quantity], or just zero when none are on hand
+                int least = Math.min(1, quantity);
+                quantityModel.setMinimum(least);
+                quantityModel.setMaximum(quantity);
+                quantityModel.setValue(least);
             }//end if
-        }//end updateQuantityComboBox
+        }//end updateQuantitySelector
+
+        // Shows or hides the load progress and only allows adding to the cart once
+        // the store is open
+        private void setLoading(boolean loading){
+            if(loading){
+                showLoadProgress(0, 0);
+
+                // Searching waits for the new index
+                titleIndex = null;
+                searchField.setText("");
+                searchField.setEnabled(false);
+            }
+
+            loadProgress.setVisible(loading);
+            addToCartBtn.setEnabled(!loading);
+        }//end setLoading
+
+        // Shows how much of the database has loaded and how many books are in
+        private void showLoadProgress(int percent, int books){
+            loadProgress.setValue(percent);
+            loadProgress.setString("Loading " + percent + "% (" + books + " books)");
+        }//end showLoadProgress
+
+        // Starts searching with the index of the loaded database
+        private void setTitleIndex(TitleIndex index){
+            titleIndex = index;
+            searchField.setEnabled(true);
+
+            // Search again, earlier results belong to the old index
+            searchResults = null;
+            searchTitles();
+        }//end setTitleIndex
+
+        // Helper - Shows the books whose titles start with the search text, or
+        // every book when there is no search
+        private void searchTitles(){
+
+            String text = searchField.getText();
+
+            if(titleIndex == null || TitleIndex.normalizeQuery(text).isEmpty()){
+                searchResults = null;
+                if(storeList.getModel() != bookData)
+                    storeList.setModel(bookData);
+                return;
+            }
+
+            // Narrow the previous results when the text was only added to
+            TitleIndex.Matches previous = searchResults == null ? null : searchResults.getMatches();
+            searchResults = new SearchResults(bookData, titleIndex, titleIndex.narrow(previous, text));
+            storeList.setModel(searchResults);
+        }//end searchTitles
 
         // Helper - Clears the book store stock list
         private void clearStock(){
-            for(int i = bookData.size() - 1; i >= 0; i--)
-                bookData.removeElement(bookData.elementAt(i));
-
+            bookData.clear();
         }//end clearStock
 
         // Inner class for StorePanel events
-        private class StorePanelListener implements ActionListener, ListSelectionListener {
+        private class StorePanelListener implements ActionListener, ListSelectionListener, DocumentListener {
 
             // If a standard event was fired
             @Override
@@ -694,38 +934,54 @@ public class Bookstore {
                     listChangedHandler();
             }//end valueChanged
 
+            // If the search text changed
+            @Override
+            public void insertUpdate(DocumentEvent e){
+                searchTitles();
+            }//end insertUpdate
+
+            @Override
+            public void removeUpdate(DocumentEvent e){
+                searchTitles();
+            }//end removeUpdate
+
+            @Override
+            public void changedUpdate(DocumentEvent e){
+            }//end changedUpdate
+
             // Helper - A list item was selected
             private void listChangedHandler(){
-                // Update the on-hand book quantity for the combo box
-                updateQuantityComboBox();
+                // Update the on-hand book quantity for the quantity selector
+                updateQuantitySelector();
             }//end listChangedHandler
 
             // Helper - Add the selected item to the cart
             private void addToCartButtonHandler() {
+                // Wait for the store to open
+                if (store == null)
+                    outputMessage("The store is still loading.", "Loading");
+
                 // If an item is selected
-                if (storeList.getSelectedValue() != null) {
+                else if (storeList.getSelectedValue() != null) {
+
+                    // Take a typed quantity if it is in range, otherwise the last valid one is kept
+                    try {
+                        quantitySpinner.commitEdit();
+                    } catch(java.text.ParseException ex){
+                        ((JSpinner.DefaultEditor) quantitySpinner.getEditor()).getTextField().setValue(quantitySpinner.getValue());
+                    }
 
                     // Get the selected quantity for the current book
-                    int selectedQuantity = Integer.parseInt((String) quantityBox.getSelectedItem());
+                    int selectedQuantity = (Integer) quantitySpinner.getValue();
 
                     Book b = storeList.getSelectedValue();
 
-                    // If the quantity is not zero
-                    if (selectedQuantity != 0) {
-                        // Then add it to the cart
-
-                        // Get a reference for the current book
+                    // If the quantity is not zero and the copies can be reserved
+                    if (selectedQuantity != 0 && cartPanel.addToCart(b, selectedQuantity)) {
+                        // Then that number of books was added to the cart
 
-
-                        // Add that number of books to the cart
-                        for (int i = 0; i < selectedQuantity; i++)
-                            cartPanel.addToCart(b);
-
-                        // Update the quantity of the book
-                        b.setQuantity(b.getQuantity() - selectedQuantity);
-
-                        // Update the quantity shown in the combo box
-                        updateQuantityComboBox();
+                        // Update the quantity the selector allows
+                        updateQuantitySelector();
                     }//end if selected quantity is not zero
                     else
                         outputMessage("\"" + b.getName() + "\" is not in stock.", "Out of Stock");
@@ -745,13 +1001,18 @@ public class Bookstore {
                 // Set the working directory
                 chooser.setCurrentDirectory(workingDirectory);
 
+                // Several files or a directory of them open as one sharded catalog
+                chooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+                chooser.setMultiSelectionEnabled(true);
+
                 // Save the user return value
                 int returnVal = chooser.showOpenDialog(null);
 
                 // If the user approved
                 if(returnVal == JFileChooser.APPROVE_OPTION){
-                    // Then get the selected file
-                    databaseFile = chooser.getSelectedFile();
+                    // Then get the selected files
+                    File[] files = chooser.getSelectedFiles();
+                    databaseFiles = files.length > 0 ? Arrays.asList(files) : Collections.singletonList(chooser.getSelectedFile());
 
                     cartPanel.clearCart();
 
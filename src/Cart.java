@@ -0,0 +1,163 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.util.*;
+
+// A shopping cart made of line items, one per distinct book. Adding copies,
+// changing a line's quantity and removing a line are all constant time, so the
+// cost of clearing or checking out follows the number of titles rather than
+// the number of copies. Each change fires its list events as one batch, after
+// the totals are updated, and many changes can be batched together.
+public class Cart extends BatchListModel<CartLine> {
+
+    // The lines in list order
+    private final List<CartLine> lines = new ArrayList<>();
+
+    // The position of each book's line
+    private final Map<Book, Integer> positions = new HashMap<>();
+
+    // Total copies across all lines
+    private int copies;
+
+    // Total price of all lines in cents
+    private long totalCents;
+
+    @Override
+    public int getSize(){
+        return lines.size();
+    }//end getSize
+
+    @Override
+    public CartLine getElementAt(int index){
+        return lines.get(index);
+    }//end getElementAt
+
+    public boolean isEmpty(){
+        return lines.isEmpty();
+    }//end isEmpty
+
+    // Total copies across all lines
+    public int getCopies(){
+        return copies;
+    }//end getCopies
+
+    // Total price of all lines in cents
+    public long getTotalCents(){
+        return totalCents;
+    }//end getTotalCents
+
+    // Returns the lines in list order
+    public List<CartLine> getLines(){
+        return Collections.unmodifiableList(lines);
+    }//end getLines
+
+    // Adds copies of a book, merging them into the book's line if it has one
+    public void add(Book b, int count){
+
+        if(count <= 0)
+            return;
+
+        beginBatch();
+        try {
+            addLine(b, count);
+        } finally {
+            commitBatch();
+        }
+    }//end add
+
+    // Helper - Adds copies of a book to its line or a new one
+    private void addLine(Book b, int count){
+
+        Integer pos = positions.get(b);
+        if(pos == null){
+            // Start a new line at the end
+            lines.add(new CartLine(b, count));
+            positions.put(b, lines.size() - 1);
+            fireIntervalAdded(this, lines.size() - 1, lines.size() - 1);
+        }
+        else{
+            // Grow the existing line
+            CartLine line = lines.get(pos);
+            line.setQuantity(line.getQuantity() + count);
+            fireContentsChanged(this, pos, pos);
+        }
+
+        copies += count;
+        totalCents += b.getPriceCents() * count;
+    }//end addLine
+
+    // Removes up to count copies of a book, dropping its line when none are left.
+    // Returns the number of copies removed.
+    public int remove(Book b, int count){
+
+        Integer pos = positions.get(b);
+        if(pos == null || count <= 0)
+            return 0;
+
+        beginBatch();
+        try {
+            return removeCopies(pos, count);
+        } finally {
+            commitBatch();
+        }
+    }//end remove
+
+    // Helper - Removes up to count copies from the line at pos
+    private int removeCopies(int pos, int count){
+
+        CartLine line = lines.get(pos);
+        Book b = line.getBook();
+        int removed = Math.min(count, line.getQuantity());
+
+        if(removed == line.getQuantity())
+            removeLine(pos);
+        else{
+            line.setQuantity(line.getQuantity() - removed);
+            fireContentsChanged(this, pos, pos);
+        }
+
+        copies -= removed;
+        totalCents -= b.getPriceCents() * removed;
+        return removed;
+    }//end removeCopies
+
+    // Removes every line, firing a single event
+    public void clear(){
+
+        int size = lines.size();
+        if(size == 0)
+            return;
+
+        lines.clear();
+        positions.clear();
+        copies = 0;
+        totalCents = 0;
+
+        fireIntervalRemoved(this, 0, size - 1);
+    }//end clear
+
+    // Helper - Removes the line at pos by moving the last line into its place
+    private void removeLine(int pos){
+
+        CartLine line = lines.get(pos);
+        positions.remove(line.getBook());
+
+        int last = lines.size() - 1;
+        if(pos != last){
+            // Fill the gap with the last line
+            CartLine moved = lines.get(last);
+            lines.set(pos, moved);
+            positions.put(moved.getBook(), pos);
+        }
+
+        lines.remove(last);
+        fireIntervalRemoved(this, last, last);
+
+        if(pos != last)
+            fireContentsChanged(this, pos, pos);
+    }//end removeLine
+
+}//end class Cart
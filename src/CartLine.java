@@ -0,0 +1,35 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+public class CartLine{
+
+    // The book in this line
+    private Book book;
+
+    // Copies of the book in the cart
+    private int quantity;
+
+    public CartLine(Book book, int quantity){
+        this.book = book;
+        this.quantity = quantity;
+    }//end CartLine
+
+    public Book getBook(){
+        return book;
+    }//end getBook
+
+    public int getQuantity(){
+        return quantity;
+    }//end getQuantity
+
+    public void setQuantity(int quantity){
+        this.quantity = quantity;
+    }//end setQuantity
+
+    public String toString(){
+        return book + " x" + quantity;
+    }//end toString
+
+}//end class CartLine
@@ -0,0 +1,289 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.util.*;
+
+// The difference between the catalog an inventory was loaded from and a newer
+// version of the database file, matched by title since the rows carry no other
+// key. Rows of the new file are first compared with the row at the same place,
+// which is all an edited file usually needs; only the rows that moved are looked
+// up by title. Books keep their ids: changed books get new prices, and their
+// stock moves by as much as the file's quantity did, so copies sold since the
+// load stay sold. New titles are added after the last id, and books no longer in the file are
+// marked removed rather than renumbering every book after them.
+public class CatalogDiff {
+
+    // The rows the diff was taken against
+    private final Inventory.RowSource base;
+
+    // The rows once the diff is applied
+    private final Inventory.RowSource rows;
+
+    // Books whose price or quantity changed, with the new file's values and how
+    // far each quantity moved from the one loaded, zero when only the price did
+    private final int[] changed;
+    private final int[] changedCents;
+    private final int[] changedQuantities;
+    private final int[] quantityChanges;
+
+    // Books no longer in the file, in id order
+    private final int[] removed;
+
+    // The new titles, added in file order
+    private final CatalogStore added;
+
+    private CatalogDiff(Inventory.RowSource base, Inventory.RowSource rows, int[] changed, int[] changedCents,
+                        int[] changedQuantities, int[] quantityChanges, int[] removed, CatalogStore added){
+        this.base = base;
+        this.rows = rows;
+        this.changed = changed;
+        this.changedCents = changedCents;
+        this.changedQuantities = changedQuantities;
+        this.quantityChanges = quantityChanges;
+        this.removed = removed;
+        this.added = added;
+    }//end CatalogDiff
+
+    // Compares the rows of an inventory with the rows of a newer file. Books the
+    // inventory has already removed are never matched, so a title that comes back
+    // is added as a new book.
+    public static CatalogDiff compute(Inventory inventory, Inventory.RowSource fresh){
+
+        Inventory.RowSource old = inventory.getSource();
+        BitSet gone = inventory.getRemoved();
+        int oldSize = old.size();
+
+        // Old books matched by a row of the new file, and new rows not yet matched
+        BitSet matched = new BitSet(oldSize);
+        List<Integer> unmatched = new ArrayList<>();
+
+        IntList changed = new IntList();
+        IntList changedCents = new IntList();
+        IntList changedQuantities = new IntList();
+        IntList quantityChanges = new IntList();
+
+        // Match rows that stayed in place
+        for(int row = 0; row < fresh.size(); row++){
+            if(row < oldSize && !gone.get(row) && sameTitle(old.getName(row), fresh.getName(row))){
+                matched.set(row);
+                compare(old, row, fresh, row, changed, changedCents, changedQuantities, quantityChanges);
+            }
+            else
+                unmatched.add(row);
+        }
+
+        // Look the rest up by title among the books left over
+        CatalogStore.Builder added = new CatalogStore.Builder();
+        if(!unmatched.isEmpty()){
+            Map<String, Integer> left = new HashMap<>();
+            for(int id = matched.nextClearBit(0); id < oldSize; id = matched.nextClearBit(id + 1))
+                if(!gone.get(id))
+                    left.putIfAbsent(Inventory.normalize(old.getName(id)), id);
+
+            for(int row : unmatched){
+                Integer id = left.remove(Inventory.normalize(fresh.getName(row)));
+                if(id != null){
+                    matched.set(id);
+                    compare(old, id, fresh, row, changed, changedCents, changedQuantities, quantityChanges);
+                }
+                else{
+                    byte[] title = fresh.getName(row).getBytes(java.nio.charset.StandardCharsets.UTF_8);
+                    added.add(title, 0, title.length, (int) fresh.getPriceCents(row), fresh.getQuantity(row));
+                }
+            }
+        }
+
+        // Books neither matched nor already removed are gone from the file
+        IntList removed = new IntList();
+        for(int id = matched.nextClearBit(0); id < oldSize; id = matched.nextClearBit(id + 1))
+            if(!gone.get(id))
+                removed.add(id);
+
+        CatalogStore addedRows = added.build();
+        Inventory.RowSource rows = Patched.of(old, changed, changedCents, changedQuantities, removed, addedRows);
+
+        return new CatalogDiff(old, rows, changed.toArray(), changedCents.toArray(), changedQuantities.toArray(),
+                quantityChanges.toArray(), removed.toArray(), addedRows);
+    }//end compute
+
+    // True if nothing changed
+    public boolean isEmpty(){
+        return changed.length == 0 && removed.length == 0 && added.size() == 0;
+    }//end isEmpty
+
+    // The rows the diff was taken against
+    public Inventory.RowSource getBase(){
+        return base;
+    }//end getBase
+
+    // The rows once the diff is applied: the old rows with the changes and removals
+    // patched in and the new titles after them
+    public Inventory.RowSource getRows(){
+        return rows;
+    }//end getRows
+
+    // The ids of the books whose price or quantity changed
+    public int[] getChanged(){
+        return changed;
+    }//end getChanged
+
+    // How far the new file moved a changed book's quantity from the one loaded,
+    // by position in getChanged. Zero when only the price changed.
+    public int getQuantityChange(int i){
+        return quantityChanges[i];
+    }//end getQuantityChange
+
+    // The ids of the books no longer in the file
+    public int[] getRemoved(){
+        return removed;
+    }//end getRemoved
+
+    // The new titles
+    public Inventory.RowSource getAdded(){
+        return added;
+    }//end getAdded
+
+    public String toString(){
+        return changed.length + " changed, " + added.size() + " added, " + removed.length + " removed";
+    }//end toString
+
+    // Helper - Titles are the same book if they match ignoring case and surrounding spaces
+    private static boolean sameTitle(String a, String b){
+        return a.equals(b) || Inventory.normalize(a).equals(Inventory.normalize(b));
+    }//end sameTitle
+
+    // Helper - Records a matched book if its price or quantity differs
+    private static void compare(Inventory.RowSource old, int id, Inventory.RowSource fresh, int row,
+                                IntList changed, IntList cents, IntList quantities, IntList quantityChanges){
+        int price = (int) fresh.getPriceCents(row);
+        int quantity = fresh.getQuantity(row);
+        int loaded = old.getQuantity(id);
+        if(price != old.getPriceCents(id) || quantity != loaded){
+            changed.add(id);
+            cents.add(price);
+            quantities.add(quantity);
+            quantityChanges.add(quantity - loaded);
+        }
+    }//end compare
+
+    // A growable list of ints
+    private static class IntList{
+
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value){
+            if(size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }//end add
+
+        int get(int i){
+            return values[i];
+        }//end get
+
+        int size(){
+            return size;
+        }//end size
+
+        int[] toArray(){
+            return Arrays.copyOf(values, size);
+        }//end toArray
+
+    }//end inner class IntList
+
+    // Rows with some prices and quantities replaced. Each reload replaces the
+    // previous patch with one holding both sets of changes, so lookups never go
+    // through more than one patch.
+    private static class Patched implements Inventory.RowSource{
+
+        // The rows as loaded, followed by the titles added since
+        private final Inventory.RowSource base;
+
+        // The replaced prices and quantities by id
+        private final Map<Integer, Integer> cents;
+        private final Map<Integer, Integer> quantities;
+
+        // Every book removed so far, saved with the snapshot so ids survive a restart
+        private final BitSet removed;
+
+        Patched(Inventory.RowSource base, Map<Integer, Integer> cents, Map<Integer, Integer> quantities, BitSet removed){
+            this.base = base;
+            this.cents = cents;
+            this.quantities = quantities;
+            this.removed = removed;
+        }//end Patched
+
+        // Patches a source with changes, removed books keep their row with no copies
+        static Inventory.RowSource of(Inventory.RowSource source, IntList changed, IntList changedCents,
+                                      IntList changedQuantities, IntList removed, CatalogStore added){
+
+            if(changed.size() == 0 && removed.size() == 0 && added.size() == 0)
+                return source;
+
+            // Start from the previous patch
+            Inventory.RowSource base = source;
+            Map<Integer, Integer> cents = new HashMap<>();
+            Map<Integer, Integer> quantities = new HashMap<>();
+            if(source instanceof Patched){
+                Patched previous = (Patched) source;
+                base = previous.base;
+                cents.putAll(previous.cents);
+                quantities.putAll(previous.quantities);
+            }
+
+            for(int i = 0; i < changed.size(); i++){
+                cents.put(changed.get(i), changedCents.get(i));
+                quantities.put(changed.get(i), changedQuantities.get(i));
+            }
+            BitSet gone = source.getRemoved();
+            for(int i = 0; i < removed.size(); i++){
+                quantities.put(removed.get(i), 0);
+                gone.set(removed.get(i));
+            }
+
+            if(added.size() > 0)
+                base = CatalogParts.append(base, Collections.singletonList(added));
+
+            return new Patched(base, cents, quantities, gone);
+        }//end of
+
+        @Override
+        public int size(){
+            return base.size();
+        }//end size
+
+        @Override
+        public String getName(int row){
+            return base.getName(row);
+        }//end getName
+
+        @Override
+        public String getPrice(int row){
+            Integer price = cents.get(row);
+            return price != null ? Money.format(price) : base.getPrice(row);
+        }//end getPrice
+
+        @Override
+        public long getPriceCents(int row){
+            Integer price = cents.get(row);
+            return price != null ? price : base.getPriceCents(row);
+        }//end getPriceCents
+
+        @Override
+        public int getQuantity(int row){
+            Integer quantity = quantities.get(row);
+            return quantity != null ? quantity : base.getQuantity(row);
+        }//end getQuantity
+
+        @Override
+        public BitSet getRemoved(){
+            return (BitSet) removed.clone();
+        }//end getRemoved
+
+    }//end inner class Patched
+
+}//end class CatalogDiff
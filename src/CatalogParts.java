@@ -0,0 +1,109 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.util.*;
+
+// A catalog made of row sources laid end to end, such as the chunks of a file
+// that is still loading. Row i of the catalog is found by a binary search over
+// the first row of each part. Instances never change; adding parts returns a
+// new catalog sharing the old parts.
+public class CatalogParts implements Inventory.RowSource {
+
+    // The parts in order
+    private final Inventory.RowSource[] parts;
+
+    // The first row of each part, followed by the total number of rows
+    private final int[] starts;
+
+    // Creates a catalog of the given parts in order
+    public CatalogParts(List<? extends Inventory.RowSource> parts){
+        this.parts = parts.toArray(new Inventory.RowSource[0]);
+
+        // Number the first row of each part
+        starts = new int[this.parts.length + 1];
+        for(int i = 0; i < this.parts.length; i++)
+            starts[i + 1] = Math.addExact(starts[i], this.parts[i].size());
+    }//end CatalogParts
+
+    // Returns a catalog with the given parts added after the rows of a source
+    public static CatalogParts append(Inventory.RowSource source, List<? extends Inventory.RowSource> more){
+
+        List<Inventory.RowSource> all = new ArrayList<>();
+
+        // Flatten an existing catalog so lookups stay a single search
+        if(source instanceof CatalogParts)
+            all.addAll(Arrays.asList(((CatalogParts) source).parts));
+        else if(source.size() > 0)
+            all.add(source);
+
+        all.addAll(more);
+        return new CatalogParts(all);
+    }//end append
+
+    // The number of parts
+    public int getPartCount(){
+        return parts.length;
+    }//end getPartCount
+
+    @Override
+    public int size(){
+        return starts[parts.length];
+    }//end size
+
+    @Override
+    public String getName(int row){
+        int part = partOf(row);
+        return parts[part].getName(row - starts[part]);
+    }//end getName
+
+    @Override
+    public String getPrice(int row){
+        int part = partOf(row);
+        return parts[part].getPrice(row - starts[part]);
+    }//end getPrice
+
+    @Override
+    public long getPriceCents(int row){
+        int part = partOf(row);
+        return parts[part].getPriceCents(row - starts[part]);
+    }//end getPriceCents
+
+    @Override
+    public int getQuantity(int row){
+        int part = partOf(row);
+        return parts[part].getQuantity(row - starts[part]);
+    }//end getQuantity
+
+    // The removed rows of every part, numbered in the whole catalog
+    @Override
+    public BitSet getRemoved(){
+        BitSet removed = new BitSet();
+        for(int part = 0; part < parts.length; part++){
+            BitSet gone = parts[part].getRemoved();
+            for(int row = gone.nextSetBit(0); row >= 0; row = gone.nextSetBit(row + 1))
+                removed.set(starts[part] + row);
+        }
+        return removed;
+    }//end getRemoved
+
+    // Helper - The part holding a row
+    private int partOf(int row){
+
+        if(row < 0 || row >= size())
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size());
+
+        // An exact hit is the first row of a part, otherwise take the part before the insertion point.
+        // Empty parts share their start with the next part, so step past them.
+        int i = Arrays.binarySearch(starts, 0, parts.length, row);
+        if(i < 0)
+            return -i - 2;
+
+        while(parts[i].size() == 0)
+            i++;
+        return i;
+    }//end partOf
+
+}//end class CatalogParts
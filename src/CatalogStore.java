@@ -0,0 +1,191 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.nio.*;
+import java.util.*;
+
+// A parsed catalog kept off the Java heap as columns: the id of each row's title
+// in a dictionary that stores every distinct title once, and the price in cents
+// and quantity as int columns. Rows cost a few bytes each instead of a Book and
+// two Strings, a title repeated across rows is stored once, and nothing here is
+// scanned by the garbage collector. Titles are only decoded into Strings when a
+// Book view is materialized for the UI.
+public class CatalogStore implements Inventory.RowSource {
+
+    // Titles are merged across builders when the builders hold at most nine
+    // distinct titles for every ten rows
+    private static final int MERGE_RATIO = 9;
+    private static final int MERGE_RATIO_DIVISOR = 10;
+
+    // The number of rows
+    private final int rows;
+
+    // The id of each row's title
+    private final IntBuffer titleIds;
+
+    // Every distinct title
+    private final TitleDictionary titles;
+
+    // The price of each row in cents
+    private final IntBuffer prices;
+
+    // The quantity of each row when it was loaded
+    private final IntBuffer quantities;
+
+    private CatalogStore(int rows, IntBuffer titleIds, TitleDictionary titles, IntBuffer prices, IntBuffer quantities){
+        this.rows = rows;
+        this.titleIds = titleIds;
+        this.titles = titles;
+        this.prices = prices;
+        this.quantities = quantities;
+    }//end CatalogStore
+
+    @Override
+    public int size(){
+        return rows;
+    }//end size
+
+    @Override
+    public String getName(int row){
+        return titles.get(titleIds.get(row));
+    }//end getName
+
+    // The id of a row's title in the dictionary, rows with the same title share it
+    public int getTitleId(int row){
+        return titleIds.get(row);
+    }//end getTitleId
+
+    // The distinct titles of the rows
+    public TitleDictionary getTitles(){
+        return titles;
+    }//end getTitles
+
+    @Override
+    public String getPrice(int row){
+        return Money.format(getPriceCents(row));
+    }//end getPrice
+
+    @Override
+    public long getPriceCents(int row){
+        return prices.get(row);
+    }//end getPriceCents
+
+    @Override
+    public int getQuantity(int row){
+        return quantities.get(row);
+    }//end getQuantity
+
+    // Bytes held off the heap
+    public long getOffHeapBytes(){
+        return titles.getOffHeapBytes() + 4L * (titleIds.capacity() + prices.capacity() + quantities.capacity());
+    }//end getOffHeapBytes
+
+    // Joins builders, in order, into one store. When titles repeat within the
+    // builders, the titles of the later ones are interned into the first one's
+    // so a title repeated across builders is still stored once; otherwise their
+    // titles are simply joined, as looking every title up again would only find
+    // a few repeats. The builders are used up.
+    public static CatalogStore concat(List<Builder> parts){
+
+        // Size the columns
+        int rows = 0;
+        long titleCount = 0;
+        for(Builder b : parts){
+            rows = Math.addExact(rows, b.rows);
+            titleCount += b.titles.size();
+        }
+
+        IntBuffer titleIds = allocateInts(rows);
+        IntBuffer prices = allocateInts(rows);
+        IntBuffer quantities = allocateInts(rows);
+
+        TitleDictionary titles;
+        if(parts.size() > 1 && titleCount * MERGE_RATIO_DIVISOR <= (long) rows * MERGE_RATIO){
+
+            // Renumber the titles of all but the first part into the first one's
+            TitleDictionary.Builder merged = parts.get(0).titles;
+            for(Builder b : parts){
+                if(b.titles == merged)
+                    titleIds.put(b.titleIds, 0, b.rows);
+                else{
+                    int[] renumbered = merged.internAll(b.titles);
+                    for(int i = 0; i < b.rows; i++)
+                        titleIds.put(renumbered[b.titleIds[i]]);
+                }
+            }
+            titles = merged.build();
+        }
+        else{
+            // Shift each part's title ids past the titles of the parts before it
+            List<TitleDictionary.Builder> dictionaries = new ArrayList<>();
+            int base = 0;
+            for(Builder b : parts){
+                for(int i = 0; i < b.rows; i++)
+                    titleIds.put(base + b.titleIds[i]);
+                dictionaries.add(b.titles);
+                base += b.titles.size();
+            }
+            titles = TitleDictionary.concat(dictionaries);
+        }
+
+        for(Builder b : parts){
+            prices.put(b.prices, 0, b.rows);
+            quantities.put(b.quantities, 0, b.rows);
+        }
+
+        titleIds.flip();
+        prices.flip();
+        quantities.flip();
+
+        return new CatalogStore(rows, titleIds, titles, prices, quantities);
+    }//end concat
+
+    // Allocates an off-heap int column
+    static IntBuffer allocateInts(int count){
+        return ByteBuffer.allocateDirect(4 * count).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }//end allocateInts
+
+    // Collects rows on the heap while a chunk of the catalog is parsed
+    public static class Builder{
+
+        private int rows;
+
+        // The distinct titles of the rows
+        private final TitleDictionary.Builder titles = new TitleDictionary.Builder();
+
+        private int[] titleIds = new int[1024];
+        private int[] prices = new int[1024];
+        private int[] quantities = new int[1024];
+
+        // Adds a row whose title is the UTF-8 bytes [start, start + length) of title
+        public void add(byte[] title, int start, int length, int cents, int quantity){
+
+            // Grow the columns
+            if(rows == prices.length){
+                int capacity = rows * 2;
+                titleIds = Arrays.copyOf(titleIds, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                quantities = Arrays.copyOf(quantities, capacity);
+            }
+
+            titleIds[rows] = titles.intern(title, start, length);
+            prices[rows] = cents;
+            quantities[rows] = quantity;
+            rows++;
+        }//end add
+
+        public int getRows(){
+            return rows;
+        }//end getRows
+
+        // Builds a store from just this builder
+        public CatalogStore build(){
+            return concat(Collections.singletonList(this));
+        }//end build
+
+    }//end inner class Builder
+
+}//end class CatalogStore
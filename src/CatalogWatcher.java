@@ -0,0 +1,116 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+
+// Watches a database file and calls back once it has been changed. Editors and
+// copies write a file in several steps, so the callback waits until the file
+// has been quiet for a moment and then runs once for the whole burst. The
+// directory is watched rather than the file so a file replaced by a rename is
+// still noticed. The callback runs on the watcher's own thread.
+public class CatalogWatcher implements Closeable {
+
+    // The file watched
+    private final Path file;
+
+    // Told when the file changes
+    private final Runnable onChange;
+
+    // Milliseconds the file must be quiet before the callback runs
+    private final long quietMillis;
+
+    // Events for the file's directory
+    private final WatchService watchService;
+
+    // The background watcher
+    private final Thread thread;
+
+    private CatalogWatcher(Path file, Runnable onChange, long quietMillis, WatchService watchService){
+        this.file = file;
+        this.onChange = onChange;
+        this.quietMillis = quietMillis;
+        this.watchService = watchService;
+
+        thread = new Thread(this::run, "Bookstore catalog watcher");
+        thread.setDaemon(true);
+    }//end CatalogWatcher
+
+    // Starts watching a file. The quiet period comes from the bookstore.reloadDelay
+    // system property, in milliseconds.
+    public static CatalogWatcher watch(File database, Runnable onChange) throws IOException{
+
+        Path file = database.getAbsoluteFile().toPath();
+        WatchService watchService = file.getFileSystem().newWatchService();
+        try {
+            file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch(IOException ex){
+            watchService.close();
+            throw ex;
+        }
+
+        CatalogWatcher watcher = new CatalogWatcher(file, onChange,
+                Math.max(0, Long.getLong("bookstore.reloadDelay", 500L)), watchService);
+        watcher.thread.start();
+        return watcher;
+    }//end watch
+
+    // Stops watching, a callback already running is left to finish
+    @Override
+    public void close(){
+        try {
+            watchService.close();
+        } catch(IOException ex){
+            System.out.println(ex);
+        }
+    }//end close
+
+    // Helper - The watcher loop
+    private void run(){
+        try {
+            while(true){
+
+                // Wait for the file to change
+                if(!changed(watchService.take()))
+                    continue;
+
+                // Then for it to stop changing. Only changes to the file itself push
+                // the deadline back, not the store writing its own files alongside.
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(quietMillis);
+                long left;
+                while((left = deadline - System.nanoTime()) > 0){
+                    WatchKey key = watchService.poll(left, TimeUnit.NANOSECONDS);
+                    if(key != null && changed(key))
+                        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(quietMillis);
+                }
+
+                try {
+                    onChange.run();
+                } catch(RuntimeException ex){
+                    System.out.println(ex);
+                }
+            }//end watcher loop
+        } catch(ClosedWatchServiceException | InterruptedException ex){
+            // Closed
+        }
+    }//end run
+
+    // Helper - Whether a key's events include the watched file, and resets the key
+    private boolean changed(WatchKey key){
+
+        boolean changed = false;
+        for(WatchEvent<?> event : key.pollEvents()){
+            if(event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context()))
+                changed = true;
+        }
+
+        key.reset();
+        return changed;
+    }//end changed
+
+}//end class CatalogWatcher
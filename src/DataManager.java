@@ -5,11 +5,64 @@
  */
 
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
 import javax.swing.*;
 
 public class DataManager {
 
+    // Identifies a binary catalog snapshot, "TBKS"
+    private static final int SNAPSHOT_MAGIC = 0x54424B53;
+
+    // Bumped whenever the snapshot layout changes
+    private static final int SNAPSHOT_VERSION = 3;
+
+    // Bytes in the snapshot header: magic, version, row count, title count, title
+    // table size, removed row count
+    private static final int SNAPSHOT_HEADER_SIZE = 24;
+
+    // Target size of each chunk of the file handed to a parse task, in bytes
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+    // Catalog loads, from the text file or the snapshot
+    private static final Histogram LOAD_NANOS = Metrics.histogram("catalog.load.nanos");
+    private static final LongAdder LOAD_BYTES = Metrics.counter("catalog.load.bytes");
+    private static final LongAdder LOAD_ROWS = Metrics.counter("catalog.load.rows");
+
+    // Output file and snapshot writes
+    private static final Histogram WRITE_NANOS = Metrics.histogram("catalog.write.nanos");
+    private static final LongAdder WRITE_BYTES = Metrics.counter("catalog.write.bytes");
+    private static final LongAdder WRITE_ROWS = Metrics.counter("catalog.write.rows");
+
+    // How on-hand quantities are saved after a checkout
+    public enum StorageMode{
+
+        // Rewrite the whole catalog to <name>Out.txt
+        TEXT,
+
+        // Update only the changed slots of the memory-mapped <name>.qty column
+        MAPPED,
+
+        // Write only the changed rows as numbered deltas under <name>Out, with a
+        // full snapshot every bookstore.snapshotEvery deltas
+        DELTA;
+
+        // Reads the mode from the bookstore.storage system property, TEXT by default
+        public static StorageMode fromProperty(){
+            String mode = System.getProperty("bookstore.storage", "text");
+            for(StorageMode m : values())
+                if(m.name().equalsIgnoreCase(mode))
+                    return m;
+            return TEXT;
+        }//end fromProperty
+
+    }//end enum StorageMode
+
     private File dataFile;
 
     // Creates a datamanger that will operate on the given database file
@@ -20,42 +73,329 @@ public class DataManager {
     // Loads the data in from a formatted book database file
     public DefaultListModel<Book> getData() throws IOException{
 
-        // Open the file
-        Scanner inFile = new Scanner(dataFile);
+        // Read the snapshot or parse the whole file
+        List<Book> books = loadCatalog();
 
         // Setup a model to store the file data
         DefaultListModel<Book> model = new DefaultListModel<>();
+        model.ensureCapacity(books.size());
 
-        // Store tokens here
-        String book, price, quantity;
+        // Add each book to the model in file order
+        for(Book b : books)
+            model.addElement(b);
 
-        // While there is still data to be read
-        while(inFile.hasNextLine()) {
+        // Return the database model
+        return model;
+    }//end getData
 
-            // Grab the input line
-            StringTokenizer input = new StringTokenizer(inFile.nextLine(), ",");
+    // Loads the books from the binary snapshot when it is newer than the database
+    // file, otherwise parses the database file and refreshes the snapshot
+    public List<Book> loadCatalog() throws IOException{
+
+        // Use the snapshot if the text hasn't changed since it was written
+        if(isSnapshotCurrent()){
+            try {
+                return readSnapshot();
+            } catch(IOException ex){
+                System.out.println(ex);
+            }
+        }
 
-            // Get the book token
-            book = input.nextToken().trim();
+        // Fall back to the text file
+        return toBooks(loadTextAndSnapshot());
+    }//end loadCatalog
+
+    // Loads the catalog as an inventory. When the snapshot is current its rows are
+    // read straight from the mapped file as the list needs them, so the titles and
+    // prices are never all held on the heap at once.
+    public Inventory loadInventory() throws IOException{
+        return new Inventory(loadRows());
+    }//end loadInventory
+
+    // Loads the rows of the catalog, mapped from the snapshot when it is current
+    // or parsed from the database file, which also refreshes the snapshot
+    public Inventory.RowSource loadRows() throws IOException{
+
+        // Use the snapshot if the text hasn't changed since it was written
+        if(isSnapshotCurrent()){
+            try {
+                return openSnapshot();
+            } catch(IOException ex){
+                System.out.println(ex);
+            }
+        }
 
-            // Get the price token
-            price = input.nextToken().trim();
+        // Fall back to the text file
+        return loadTextAndSnapshot();
+    }//end loadRows
 
-            // Get the quantity token
-            quantity = input.nextToken().trim();
+    // True if the snapshot was written after the database file last changed
+    public boolean isSnapshotCurrent(){
+        return getSnapshotFile().lastModified() > dataFile.lastModified();
+    }//end isSnapshotCurrent
 
-            // Create a new book with the tokens
-            Book newBook = new Book(book, price, Integer.parseInt(quantity));
+    // Helper - Parses the database file and refreshes the snapshot from it
+    private CatalogStore loadTextAndSnapshot() throws IOException{
 
-            // Add the book to the model
-            model.addElement(newBook);
-        }//end get data loop
+        CatalogStore store = loadStore();
 
-        // Return the database model
-        return model;
-    }//end getData
+        // Save a snapshot so the next load is fast
+        try {
+            writeSnapshot(store);
+        } catch(IOException | ArithmeticException ex){
+            System.out.println("Catalog snapshot not written: " + ex);
+        }
 
-    public void updateFile(DefaultListModel<Book> data){
+        return store;
+    }//end loadTextAndSnapshot
+
+    // Returns the binary snapshot file that sits next to the database file
+    public File getSnapshotFile(){
+        return new File(dataFile.getAbsoluteFile().getParentFile(), getBaseName() + ".snap");
+    }//end getSnapshotFile
+
+    // Returns the quantity column file that sits next to the database file
+    public File getQuantityFile(){
+        return new File(dataFile.getAbsoluteFile().getParentFile(), getBaseName() + ".qty");
+    }//end getQuantityFile
+
+    // Opens where the quantities of the loaded books are saved, as the
+    // bookstore.storage system property says
+    public PersistenceWriter.Sink openSink(Inventory books) throws IOException{
+        switch(StorageMode.fromProperty()){
+            case MAPPED: return openQuantityStore(books);
+            case DELTA: return openDeltaLog(books);
+            default: return openTextSink(books);
+        }
+    }//end openSink
+
+    // Opens where the quantities are saved, starting over from the books' current
+    // counts whatever was saved before. Used when the catalog changed under a
+    // running store and the saved quantities no longer line up with its ids.
+    public PersistenceWriter.Sink rebaseSink(Inventory books) throws IOException{
+        switch(StorageMode.fromProperty()){
+            case MAPPED: return openQuantityStore(books, false);
+            case DELTA: return DeltaLog.open(getDeltaDirectory(), books, false, Integer.getInteger("bookstore.snapshotEvery", 100));
+            default: return openTextSink(books);
+        }
+    }//end rebaseSink
+
+    // Returns the directory the change log is written to, <name>Out in the working directory
+    public File getDeltaDirectory(){
+        return new File(getBaseName() + "Out");
+    }//end getDeltaDirectory
+
+    // Returns the directory the order ledger is kept in, <name>Ledger in the working directory
+    public File getLedgerDirectory(){
+        return new File(getBaseName() + "Ledger");
+    }//end getLedgerDirectory
+
+    // Opens the change log for the loaded books. If the log was written after the
+    // database file was last changed its quantities replace the loaded ones,
+    // otherwise it starts over from a snapshot of the loaded quantities.
+    public DeltaLog openDeltaLog(Inventory books) throws IOException{
+        File dir = getDeltaDirectory();
+        boolean current = dir.lastModified() > dataFile.lastModified();
+        return DeltaLog.open(dir, books, current, Integer.getInteger("bookstore.snapshotEvery", 100));
+    }//end openDeltaLog
+
+    // Opens the memory-mapped quantity column for the loaded books. If the column
+    // was saved after the database file was last changed its quantities replace the
+    // loaded ones, otherwise the column is rewritten from the loaded quantities.
+    public QuantityStore openQuantityStore(Inventory books) throws IOException{
+        return openQuantityStore(books, getQuantityFile().lastModified() > dataFile.lastModified());
+    }//end openQuantityStore
+
+    // Helper - Opens the quantity column, taking its quantities if resume is true
+    // and it matches the books or otherwise rewriting it from theirs
+    private QuantityStore openQuantityStore(Inventory books, boolean resume) throws IOException{
+
+        QuantityStore store = QuantityStore.open(getQuantityFile(), books.getRowCount());
+
+        // Carry the saved quantities over if the column matches this catalog
+        if(resume && store.isInitialized()){
+            for(int id = 0; id < books.getRowCount(); id++)
+                books.setOnHand(id, store.get(id));
+        }
+        else{
+            for(int id = 0; id < books.getRowCount(); id++)
+                store.set(id, books.getOnHand(id));
+            store.force();
+        }
+
+        return store;
+    }//end openQuantityStore
+
+    // Writes the books to the binary snapshot file. The layout is a fixed header,
+    // the offsets and UTF-8 bytes of each distinct title, then the title id, price
+    // in cents and quantity columns and the ids of the removed rows. Throws
+    // ArithmeticException if a price is too large to be stored as an int number
+    // of cents.
+    public void writeSnapshot(List<Book> books) throws IOException{
+        writeSnapshot(new Inventory(books).getSource());
+    }//end writeSnapshot
+
+    // Writes the rows of a source to the binary snapshot file, along with the rows
+    // it has removed so a reloaded catalog reopens with the same ids
+    public void writeSnapshot(Inventory.RowSource books) throws IOException{
+
+        long start = System.nanoTime();
+        int rows = books.size();
+        BitSet removed = books.getRemoved();
+
+        // Collect the distinct titles and check the prices up front so a bad price writes nothing
+        TitleDictionary.Builder titles = new TitleDictionary.Builder();
+        int[] titleIds = new int[rows];
+        for(int i = 0; i < rows; i++){
+            byte[] title = books.getName(i).getBytes(StandardCharsets.UTF_8);
+            titleIds[i] = titles.intern(title, 0, title.length);
+            Math.toIntExact(books.getPriceCents(i));
+        }
+
+        // Write to a temporary file then move it over the old snapshot
+        File snapshot = getSnapshotFile();
+        File temp = new File(snapshot.getPath() + ".tmp");
+
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))){
+
+            // Header
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(rows);
+            out.writeInt(titles.size());
+            out.writeInt(titles.getBytes());
+            out.writeInt(removed.cardinality());
+
+            // Title offsets, one more than the number of titles, and the title table
+            titles.write(out);
+
+            // Title id column
+            for(int id : titleIds)
+                out.writeInt(id);
+
+            // Price column
+            for(int i = 0; i < rows; i++)
+                out.writeInt((int) books.getPriceCents(i));
+
+            // Quantity column
+            for(int i = 0; i < rows; i++)
+                out.writeInt(books.getQuantity(i));
+
+            // Removed ids
+            for(int id = removed.nextSetBit(0); id >= 0; id = removed.nextSetBit(id + 1))
+                out.writeInt(id);
+        }
+
+        java.nio.file.Files.move(temp.toPath(), snapshot.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        recordWrite(start, snapshot, rows);
+
+    }//end writeSnapshot
+
+    // Maps the binary snapshot file and checks its header. Rows are decoded from
+    // the mapping only when they are asked for.
+    public Inventory.RowSource openSnapshot() throws IOException{
+
+        long start = System.nanoTime();
+        try(FileChannel channel = FileChannel.open(getSnapshotFile().toPath(), StandardOpenOption.READ)){
+
+            long size = channel.size();
+            if(size < SNAPSHOT_HEADER_SIZE || size > Integer.MAX_VALUE)
+                throw new IOException("Bad catalog snapshot size: " + size);
+
+            // The mapping stays valid after the channel is closed
+            Inventory.RowSource rows = new SnapshotRows(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), getSnapshotFile());
+            recordLoad(start, size, rows.size());
+            return rows;
+        }
+
+    }//end openSnapshot
+
+    // Reads the books back from the binary snapshot file
+    public List<Book> readSnapshot() throws IOException{
+
+        long start = System.nanoTime();
+        try(FileChannel channel = FileChannel.open(getSnapshotFile().toPath(), StandardOpenOption.READ)){
+
+            long size = channel.size();
+            if(size < SNAPSHOT_HEADER_SIZE || size > Integer.MAX_VALUE)
+                throw new IOException("Bad catalog snapshot size: " + size);
+
+            ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int rows = checkSnapshotHeader(buf, getSnapshotFile());
+            int titleCount = buf.getInt();
+            int titleBytes = buf.getInt();
+            int removedCount = buf.getInt();
+
+            // Bulk read the offsets
+            int[] offsets = new int[titleCount + 1];
+            buf.asIntBuffer().get(offsets);
+            buf.position(buf.position() + 4 * offsets.length);
+
+            // Copy the title table out of the mapping
+            byte[] table = new byte[titleBytes];
+            buf.get(table);
+
+            // Bulk read the primitive columns
+            int[] titleIds = new int[rows];
+            int[] cents = new int[rows];
+            int[] quantities = new int[rows];
+            int[] removed = new int[removedCount];
+            IntBuffer columns = buf.asIntBuffer();
+            columns.get(titleIds);
+            columns.get(cents);
+            columns.get(quantities);
+            columns.get(removed);
+
+            // Decode each distinct title once, rows with the same title share the String
+            String[] titles = new String[titleCount];
+            for(int t = 0; t < titleCount; t++)
+                titles[t] = new String(table, offsets[t], offsets[t + 1] - offsets[t], StandardCharsets.UTF_8);
+
+            // Build the books, leaving out the removed ones
+            List<Book> books = new ArrayList<>(rows - removedCount);
+            int next = 0;
+            for(int i = 0; i < rows; i++){
+                if(next < removedCount && removed[next] == i){
+                    next++;
+                    continue;
+                }
+                Book b = new Book(titles[titleIds[i]], Money.format(cents[i]), quantities[i]);
+                b.setId(i);
+                books.add(b);
+            }
+
+            recordLoad(start, size, rows);
+            return books;
+        }
+
+    }//end readSnapshot
+
+    // Helper - Checks a mapped snapshot's header and layout, leaving the buffer
+    // positioned at the title count and returning the row count
+    private static int checkSnapshotHeader(ByteBuffer buf, File file) throws IOException{
+
+        // Check the header
+        if(buf.getInt() != SNAPSHOT_MAGIC)
+            throw new IOException("Not a catalog snapshot: " + file);
+        int version = buf.getInt();
+        if(version != SNAPSHOT_VERSION)
+            throw new IOException("Unsupported catalog snapshot version: " + version);
+
+        int rows = buf.getInt();
+        int titleCount = buf.getInt(buf.position());
+        int titleBytes = buf.getInt(buf.position() + 4);
+        int removed = buf.getInt(buf.position() + 8);
+
+        // Make sure every section is present before reading
+        long expected = SNAPSHOT_HEADER_SIZE + 4L * (titleCount + 1) + titleBytes + 12L * rows + 4L * removed;
+        if(rows < 0 || titleCount < 0 || titleBytes < 0 || removed < 0 || removed > rows || expected != buf.limit())
+            throw new IOException("Truncated catalog snapshot: " + file);
+
+        return rows;
+    }//end checkSnapshotHeader
+
+    // Helper - The database file name without its extension
+    private String getBaseName(){
 
         // Get the file name with extension
         String file = dataFile.getName();
@@ -64,16 +404,141 @@ public class DataManager {
         int index = file.indexOf('.');
 
         // Extract the file name with no extension
-        String fileName = file.substring(0, index);
+        return index < 0 ? file : file.substring(0, index);
+    }//end getBaseName
+
+    // Loads the books from the database file in file order, each book's id is its row
+    public List<Book> loadBooks() throws IOException{
+        return toBooks(loadStore());
+    }//end loadBooks
+
+    // Loads the database file into an off-heap catalog store by memory-mapping it,
+    // cutting it into chunks at line boundaries and parsing the chunks in parallel.
+    // The rows are in file order.
+    public CatalogStore loadStore() throws IOException{
+
+        long start = System.nanoTime();
+        try(FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)){
+
+            // Find where each chunk starts so that no line is split
+            long[] bounds = chunkBounds(channel);
+
+            // Parse every chunk on the fork-join pool and join them in order
+            try {
+                CatalogStore store = CatalogStore.concat(ForkJoinPool.commonPool().invoke(new ParseTask(channel, bounds, 0, bounds.length - 1)));
+                recordLoad(start, bounds[bounds.length - 1], store.size());
+                return store;
+            } catch(UncheckedIOException ex){
+                throw ex.getCause();
+            }
+        }
 
-        // Append the name addition and extension
-        fileName += "Out.txt";
+    }//end loadStore
+
+    // Receives a catalog a chunk at a time while it loads
+    public interface ChunkListener{
+
+        // Called with each chunk in file order, along with how many bytes of the
+        // file have been loaded out of the total
+        void chunkLoaded(Inventory.RowSource chunk, long loaded, long total);
+
+    }//end interface ChunkListener
+
+    // Loads the catalog a chunk at a time, handing each chunk to the listener in
+    // file order as soon as it and every chunk before it are parsed. A current
+    // snapshot is handed over whole. The chunks are parsed in parallel and the
+    // snapshot is refreshed once the whole file is in. Stops with an
+    // InterruptedException if the loading thread is interrupted.
+    public void loadChunks(ChunkListener listener) throws IOException, InterruptedException{
+
+        // Use the snapshot if the text hasn't changed since it was written
+        if(isSnapshotCurrent()){
+            try {
+                Inventory.RowSource rows = openSnapshot();
+                listener.chunkLoaded(rows, 1, 1);
+                return;
+            } catch(IOException ex){
+                System.out.println(ex);
+            }
+        }
 
-        // Output to this file
-        File outputFile = new File(fileName);
+        long start = System.nanoTime();
+        try(FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)){
+
+            // Start parsing every chunk on the fork-join pool
+            long[] bounds = chunkBounds(channel);
+            List<ParseTask> tasks = new ArrayList<>();
+            for(int i = 0; i + 1 < bounds.length; i++)
+                tasks.add((ParseTask) new ParseTask(channel, bounds, i, i + 1).fork());
+
+            // Hand the chunks over in order as they finish
+            List<CatalogStore> chunks = new ArrayList<>();
+            try {
+                for(int i = 0; i < tasks.size(); i++){
+
+                    if(Thread.interrupted())
+                        throw new InterruptedException("Catalog load cancelled");
+
+                    for(CatalogStore.Builder b : tasks.get(i).join()){
+                        CatalogStore chunk = b.build();
+                        chunks.add(chunk);
+                        listener.chunkLoaded(chunk, bounds[i + 1], bounds[bounds.length - 1]);
+                    }
+                }
+            } catch(UncheckedIOException ex){
+                throw ex.getCause();
+            } finally {
+                // Stop any chunks still waiting to be parsed
+                for(ParseTask task : tasks)
+                    task.cancel(false);
+            }
+
+            CatalogParts rows = new CatalogParts(chunks);
+            recordLoad(start, bounds[bounds.length - 1], rows.size());
+
+            // Save a snapshot so the next load is fast
+            try {
+                writeSnapshot(rows);
+            } catch(IOException | ArithmeticException ex){
+                System.out.println("Catalog snapshot not written: " + ex);
+            }
+        }
 
-        // Hold tokens here
-        String title, price, quantity;
+    }//end loadChunks
+
+    // Helper - Materializes every row of a source as a standalone book. Rows of
+    // a catalog store with the same title share one decoded String.
+    private static List<Book> toBooks(Inventory.RowSource rows){
+
+        CatalogStore store = rows instanceof CatalogStore ? (CatalogStore) rows : null;
+        String[] titles = store != null ? new String[store.getTitles().size()] : null;
+
+        List<Book> books = new ArrayList<>(rows.size());
+        for(int i = 0; i < rows.size(); i++){
+            String title;
+            if(store != null){
+                int titleId = store.getTitleId(i);
+                if(titles[titleId] == null)
+                    titles[titleId] = store.getTitles().get(titleId);
+                title = titles[titleId];
+            }
+            else
+                title = rows.getName(i);
+
+            Book b = new Book(title, rows.getPrice(i), rows.getQuantity(i));
+            b.setId(i);
+            books.add(b);
+        }
+
+        return books;
+    }//end toBooks
+
+    public void updateFile(DefaultListModel<Book> data){
+
+        long start = System.nanoTime();
+
+        // Output to this file
+        File outputFile = getOutputFile();
 
         // Try-with-resources to close up writer
         try(PrintWriter writer = new PrintWriter(outputFile)) {
@@ -81,16 +546,8 @@ public class DataManager {
             // Iterate over the model
             for(int i = 0; i < data.size(); i++){
 
-                // Pull a book from the model
-                Book b = data.elementAt(i);
-
-                // Get the three tokens from the book
-                title = b.getName();
-                price = b.getPrice();
-                quantity = Integer.toString(b.getQuantity());
-
-                // Output those tokens to the file
-                writer.println(title + ", " +  price + ", " + quantity);
+                // Pull a book from the model and output it to the file
+                writer.println(formatRow(data.elementAt(i)));
 
             }//end write data loop
 
@@ -98,6 +555,469 @@ public class DataManager {
             ex.printStackTrace();
         }
 
+        recordWrite(start, outputFile, data.size());
+
     }//end updateFile
 
+    // Returns the file updateFile writes to, <name>Out.txt in the working directory
+    public File getOutputFile(){
+        // Append the name addition and extension to the file name
+        return new File(getBaseName() + "Out.txt");
+    }//end getOutputFile
+
+    // Creates a persistence sink that rewrites the output file from its own copy
+    // of the books, so the writer thread never reads the Swing models
+    public PersistenceWriter.Sink openTextSink(Inventory books){
+        return new TextSink(books);
+    }//end openTextSink
+
+    // Formats a book as a database row, quoting the title if it holds a comma or quote
+    static String formatRow(Book b){
+        return formatRow(b.getName(), b.getPrice(), b.getQuantity());
+    }//end formatRow
+
+    // Formats the fields of a database row, quoting the title if it holds a comma or quote
+    static String formatRow(String title, String price, int quantity){
+
+        // Quote the title so the comma is not taken as a separator
+        if(title.indexOf(',') >= 0 || title.indexOf('"') >= 0)
+            title = "\"" + title.replace("\"", "\"\"") + "\"";
+
+        return title + ", " + price + ", " + quantity;
+    }//end formatRow
+
+    // Helper - Records a catalog load that started at the given System.nanoTime()
+    private static void recordLoad(long start, long bytes, int rows){
+        LOAD_NANOS.recordSince(start);
+        LOAD_BYTES.add(bytes);
+        LOAD_ROWS.add(rows);
+    }//end recordLoad
+
+    // Helper - Records a file write that started at the given System.nanoTime()
+    private static void recordWrite(long start, File file, int rows){
+        WRITE_NANOS.recordSince(start);
+        WRITE_BYTES.add(file.length());
+        WRITE_ROWS.add(rows);
+    }//end recordWrite
+
+    // Helper - Returns the chunk start offsets followed by the file size.
+    // Every start offset other than zero is the byte just after a newline.
+    private static long[] chunkBounds(FileChannel channel) throws IOException{
+
+        long size = channel.size();
+
+        // Store the offsets here
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+
+        // Small buffer used to look for the next newline
+        ByteBuffer probe = ByteBuffer.allocate(256);
+
+        long start = 0;
+        while(size - start > CHUNK_SIZE){
+
+            // Move to the nominal end of this chunk then forward to the next newline
+            long pos = start + CHUNK_SIZE;
+            long next = -1;
+
+            while(next < 0 && pos < size){
+                probe.clear();
+                int read = channel.read(probe, pos);
+                for(int i = 0; i < read; i++)
+                    if(probe.get(i) == '\n'){
+                        next = pos + i + 1;
+                        break;
+                    }
+                pos += read;
+            }//end newline search loop
+
+            // The rest of the file is one line
+            if(next < 0 || next >= size)
+                break;
+
+            bounds.add(next);
+            start = next;
+        }//end chunk loop
+
+        bounds.add(size);
+
+        // Unbox into the array
+        long[] result = new long[bounds.size()];
+        for(int i = 0; i < result.length; i++)
+            result[i] = bounds.get(i);
+
+        return result;
+    }//end chunkBounds
+
+    // Helper - Parses the rows in a mapped chunk of the database file
+    private static CatalogStore.Builder parseChunk(ByteBuffer chunk) throws IOException{
+
+        CatalogStore.Builder books = new CatalogStore.Builder();
+
+        // Reused for each line
+        byte[] line = new byte[256];
+
+        while(chunk.hasRemaining()){
+
+            // Find the end of the line
+            int start = chunk.position();
+            int end = start;
+            int limit = chunk.limit();
+            while(end < limit && chunk.get(end) != '\n')
+                end++;
+
+            // Copy the line out of the mapping
+            int length = end - start;
+            if(length > line.length)
+                line = new byte[Math.max(length, line.length * 2)];
+            chunk.get(line, 0, length);
+
+            // Step over the newline
+            if(end < limit)
+                chunk.get();
+
+            // Parse the line into the builder
+            parseRow(line, length, books);
+        }//end line loop
+
+        return books;
+    }//end parseChunk
+
+    // Helper - Parses a single "title, price, quantity" row into the builder. The
+    // title may be quoted with doubled quotes inside it, otherwise the last two
+    // commas separate the fields. Blank lines are skipped.
+    private static void parseRow(byte[] line, int length, CatalogStore.Builder books) throws IOException{
+
+        // Drop trailing whitespace and carriage returns
+        int end = length;
+        while(end > 0 && (line[end - 1] & 0xff) <= ' ')
+            end--;
+
+        // Skip leading whitespace
+        int pos = 0;
+        while(pos < end && (line[pos] & 0xff) <= ' ')
+            pos++;
+
+        // Blank line
+        if(pos == end)
+            return;
+
+        // The title's UTF-8 bytes
+        byte[] title;
+        int titleStart, titleLength;
+        int fieldStart;
+
+        if(line[pos] == '"'){
+            // Quoted title, collapse "" into " as it is read
+            ByteArrayOutputStream out = new ByteArrayOutputStream(end - pos);
+            pos++;
+            boolean closed = false;
+            while(pos < end){
+                if(line[pos] == '"'){
+                    if(pos + 1 < end && line[pos + 1] == '"'){
+                        out.write('"');
+                        pos += 2;
+                        continue;
+                    }
+                    closed = true;
+                    pos++;
+                    break;
+                }
+                out.write(line[pos++]);
+            }//end quoted title loop
+
+            // The closing quote must be followed by the separator
+            while(pos < end && (line[pos] & 0xff) <= ' ')
+                pos++;
+            if(!closed || pos >= end || line[pos] != ',')
+                throw malformed(line, length);
+
+            title = out.toByteArray();
+            titleStart = 0;
+            titleLength = title.length;
+            fieldStart = pos + 1;
+        }
+        else{
+            // Unquoted title runs up to the second to last comma
+            int last = lastComma(line, pos, end);
+            int separator = last < 0 ? -1 : lastComma(line, pos, last);
+            if(separator < 0)
+                throw malformed(line, length);
+
+            title = line;
+            titleStart = pos;
+            titleLength = trimEnd(line, pos, separator) - pos;
+            fieldStart = separator + 1;
+        }
+
+        // The price is between the next two commas
+        int priceEnd = indexOf(line, ',', fieldStart, end);
+        if(priceEnd < 0)
+            throw malformed(line, length);
+
+        int priceStart = trimStart(line, fieldStart, priceEnd);
+        String price = new String(line, priceStart, trimEnd(line, priceStart, priceEnd) - priceStart, StandardCharsets.ISO_8859_1);
+
+        // The quantity is everything after the last comma
+        int quantity = parseInt(line, trimStart(line, priceEnd + 1, end), end);
+        if(quantity == Integer.MIN_VALUE)
+            throw malformed(line, length);
+
+        // The price is parsed into cents here, once
+        int cents;
+        try {
+            cents = Math.toIntExact(Money.parseCents(price));
+        } catch(ArithmeticException | NumberFormatException ex){
+            throw malformed(line, length);
+        }
+
+        books.add(title, titleStart, titleLength, cents, quantity);
+    }//end parseRow
+
+    // Helper - Parses a decimal integer with an optional sign, as Integer.parseInt
+    // does, returning Integer.MIN_VALUE if it is not one or doesn't fit an int
+    private static int parseInt(byte[] line, int start, int end){
+
+        boolean negative = start < end && line[start] == '-';
+        if(negative || (start < end && line[start] == '+'))
+            start++;
+
+        // Ten digits hold every int, leading zeros aside
+        while(end - start > 10 && line[start] == '0')
+            start++;
+        if(start == end || end - start > 10)
+            return Integer.MIN_VALUE;
+
+        long value = 0;
+        for(int i = start; i < end; i++){
+            int digit = line[i] - '0';
+            if(digit < 0 || digit > 9)
+                return Integer.MIN_VALUE;
+            value = value * 10 + digit;
+        }
+
+        if(value > Integer.MAX_VALUE)
+            return Integer.MIN_VALUE;
+        return (int) (negative ? -value : value);
+    }//end parseInt
+
+    // Helper - Index of the last comma in [start, end) or -1
+    private static int lastComma(byte[] line, int start, int end){
+        for(int i = end - 1; i >= start; i--)
+            if(line[i] == ',')
+                return i;
+        return -1;
+    }//end lastComma
+
+    // Helper - Index of the first b in [start, end) or -1
+    private static int indexOf(byte[] line, char b, int start, int end){
+        for(int i = start; i < end; i++)
+            if(line[i] == b)
+                return i;
+        return -1;
+    }//end indexOf
+
+    // Helper - First index in [start, end) past the spaces, tabs and other
+    // control characters String.trim would strip
+    private static int trimStart(byte[] line, int start, int end){
+        while(start < end && (line[start] & 0xff) <= ' ')
+            start++;
+        return start;
+    }//end trimStart
+
+    // Helper - One past the last index in [start, end) before the spaces, tabs
+    // and other control characters String.trim would strip
+    private static int trimEnd(byte[] line, int start, int end){
+        while(end > start && (line[end - 1] & 0xff) <= ' ')
+            end--;
+        return end;
+    }//end trimEnd
+
+    // Helper - Builds the exception for a row that can't be parsed
+    private static IOException malformed(byte[] line, int length){
+        return new IOException("Malformed book row: " + new String(line, 0, length, StandardCharsets.UTF_8));
+    }//end malformed
+
+    // Rewrites the whole output file for each batch. Titles and prices never change
+    // so they are read from the inventory's row source, but the quantities are
+    // kept in a private array.
+    private class TextSink implements PersistenceWriter.Sink{
+
+        // The rows in catalog order
+        private final Inventory.RowSource rows;
+
+        // The quantity of each book as last written, indexed by id
+        private final int[] quantities;
+
+        // Books removed from the catalog, left out of the file
+        private final BitSet removed;
+
+        TextSink(Inventory inventory){
+            rows = inventory.getSource();
+            removed = inventory.getRemoved();
+            quantities = new int[inventory.getRowCount()];
+
+            for(int id = 0; id < quantities.length; id++)
+                quantities[id] = inventory.getOnHand(id);
+        }//end TextSink
+
+        @Override
+        public void write(int[] ids, int[] changed, int count) throws IOException{
+
+            // Apply the batch to the private copy
+            for(int i = 0; i < count; i++)
+                quantities[ids[i]] = changed[i];
+
+            // Rewrite the file once for the whole batch
+            long start = System.nanoTime();
+            try(PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(getOutputFile()), 1 << 16))){
+                for(int id = removed.nextClearBit(0); id < quantities.length; id = removed.nextClearBit(id + 1))
+                    writer.println(formatRow(rows.getName(id), rows.getPrice(id), quantities[id]));
+
+                if(writer.checkError())
+                    throw new IOException("Failed writing " + getOutputFile());
+            }
+            recordWrite(start, getOutputFile(), quantities.length);
+
+        }//end write
+
+        @Override
+        public void sync() throws IOException{
+            try(FileChannel channel = FileChannel.open(getOutputFile().toPath(), StandardOpenOption.WRITE)){
+                channel.force(true);
+            }
+        }//end sync
+
+    }//end inner class TextSink
+
+    // Rows decoded on demand from a mapped snapshot. Only absolute reads are used
+    // so it can be shared between the Swing and writer threads.
+    private static class SnapshotRows implements Inventory.RowSource{
+
+        // The mapped snapshot
+        private final ByteBuffer buf;
+
+        // The number of rows
+        private final int rows;
+
+        // Where each section starts
+        private final int offsetsStart, tableStart, titleIdsStart, pricesStart, quantitiesStart, removedStart;
+
+        // The number of removed rows
+        private final int removed;
+
+        SnapshotRows(ByteBuffer buf, File file) throws IOException{
+            this.buf = buf;
+            rows = checkSnapshotHeader(buf, file);
+
+            int titleCount = buf.getInt(buf.position());
+            int titleBytes = buf.getInt(buf.position() + 4);
+            removed = buf.getInt(buf.position() + 8);
+            offsetsStart = SNAPSHOT_HEADER_SIZE;
+            tableStart = offsetsStart + 4 * (titleCount + 1);
+            titleIdsStart = tableStart + titleBytes;
+            pricesStart = titleIdsStart + 4 * rows;
+            quantitiesStart = pricesStart + 4 * rows;
+            removedStart = quantitiesStart + 4 * rows;
+        }//end SnapshotRows
+
+        @Override
+        public int size(){
+            return rows;
+        }//end size
+
+        @Override
+        public String getName(int row){
+
+            int titleId = buf.getInt(titleIdsStart + 4 * row);
+            int start = buf.getInt(offsetsStart + 4 * titleId);
+            int end = buf.getInt(offsetsStart + 4 * titleId + 4);
+
+            // Copy the title bytes out of the mapping
+            byte[] title = new byte[end - start];
+            for(int i = 0; i < title.length; i++)
+                title[i] = buf.get(tableStart + start + i);
+
+            return new String(title, StandardCharsets.UTF_8);
+        }//end getName
+
+        @Override
+        public String getPrice(int row){
+            return Money.format(getPriceCents(row));
+        }//end getPrice
+
+        @Override
+        public long getPriceCents(int row){
+            return buf.getInt(pricesStart + 4 * row);
+        }//end getPriceCents
+
+        @Override
+        public int getQuantity(int row){
+            return buf.getInt(quantitiesStart + 4 * row);
+        }//end getQuantity
+
+        @Override
+        public BitSet getRemoved(){
+            BitSet gone = new BitSet(rows);
+            for(int i = 0; i < removed; i++){
+                int id = buf.getInt(removedStart + 4 * i);
+                if(id >= 0 && id < rows)
+                    gone.set(id);
+            }
+            return gone;
+        }//end getRemoved
+
+    }//end inner class SnapshotRows
+
+    // Parses a range of chunks, splitting the range in half until each task
+    // holds a single chunk, then joins the halves back together in file order
+    private static class ParseTask extends RecursiveTask<List<CatalogStore.Builder>>{
+
+        // The channel the chunks are mapped from
+        private final FileChannel channel;
+
+        // Chunk offsets, chunk i is [bounds[i], bounds[i + 1])
+        private final long[] bounds;
+
+        // The range of chunks [from, to) parsed by this task
+        private final int from, to;
+
+        ParseTask(FileChannel channel, long[] bounds, int from, int to){
+            this.channel = channel;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+        }//end ParseTask
+
+        @Override
+        protected List<CatalogStore.Builder> compute(){
+
+            // Parse the chunk directly once the range holds only one
+            if(to - from == 1){
+                List<CatalogStore.Builder> books = new ArrayList<>();
+                try {
+                    long start = bounds[from];
+                    long size = bounds[to] - start;
+                    if(size > 0)
+                        books.add(parseChunk(channel.map(FileChannel.MapMode.READ_ONLY, start, size)));
+                } catch(IOException ex){
+                    throw new UncheckedIOException(ex);
+                }
+                return books;
+            }
+
+            // Otherwise split the range in half
+            int mid = (from + to) >>> 1;
+            ParseTask left = new ParseTask(channel, bounds, from, mid);
+            ParseTask right = new ParseTask(channel, bounds, mid, to);
+            right.fork();
+
+            // Merge the halves in file order
+            List<CatalogStore.Builder> books = left.compute();
+            books.addAll(right.join());
+            return books;
+        }//end compute
+
+    }//end inner class ParseTask
+
 }//end class DataManager
@@ -0,0 +1,347 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// Saves quantity changes as a change log instead of rewriting the catalog. Each
+// batch becomes a sequence-numbered delta file holding only the rows it changed,
+// one "sku, old, new, time" line per row where the sku is the book id. Every so
+// many deltas a full snapshot is written in the database file format, numbered
+// after the last delta it includes. Readers take the newest snapshot and apply
+// the deltas after it in order, which is also how the store rebuilds its
+// quantities when it opens.
+//
+// Files appear under their final names only once they are complete, so a
+// reader never sees half of one. Once a new snapshot is synced, the files it
+// makes unneeded are deleted, keeping one earlier snapshot and the deltas
+// after it in case the newest is damaged.
+public class DeltaLog implements PersistenceWriter.Sink {
+
+    // File names, followed by a twelve digit sequence number
+    private static final String DELTA_PREFIX = "delta-";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SUFFIX = ".txt";
+
+    // Snapshots kept, the newest and the ones before it
+    private static final int KEEP_SNAPSHOTS = 2;
+
+    // The directory holding the files
+    private final File dir;
+
+    // Titles and prices for the snapshots
+    private final Inventory.RowSource rows;
+
+    // The quantity of each book as last written, indexed by id
+    private final int[] quantities;
+
+    // Deltas written between snapshots
+    private final int snapshotEvery;
+
+    // The sequence number of the last file written
+    private long sequence;
+
+    // Deltas written since the last snapshot
+    private int sinceSnapshot;
+
+    // Files written since the last sync
+    private final List<File> unsynced = new ArrayList<>();
+
+    // Set when a snapshot is written, older files are deleted once it is synced
+    private boolean snapshotUnsynced;
+
+    private DeltaLog(File dir, Inventory.RowSource rows, int[] quantities, int snapshotEvery, long sequence){
+        this.dir = dir;
+        this.rows = rows;
+        this.quantities = quantities;
+        this.snapshotEvery = Math.max(1, snapshotEvery);
+        this.sequence = sequence;
+    }//end DeltaLog
+
+    // Opens the log in a directory for the books. When resume is true and the
+    // log holds a state for this many books its quantities replace the books'.
+    // Otherwise the log starts over from a snapshot of the books' quantities,
+    // numbered after anything already in the directory.
+    public static DeltaLog open(File dir, Inventory books, boolean resume, int snapshotEvery) throws IOException{
+
+        if(!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Cannot create " + dir);
+
+        int[] quantities = new int[books.getRowCount()];
+        for(int id = 0; id < quantities.length; id++)
+            quantities[id] = books.getOnHand(id);
+
+        // Pick up where the log left off
+        if(resume){
+            State state = replay(dir);
+            if(state != null && state.quantities.length == quantities.length){
+                for(int id = 0; id < quantities.length; id++){
+                    quantities[id] = state.quantities[id];
+                    books.setOnHand(id, quantities[id]);
+                }
+                DeltaLog log = new DeltaLog(dir, books.getSource(), quantities, snapshotEvery, state.sequence);
+                log.sinceSnapshot = (int) Math.min(Integer.MAX_VALUE, state.sequence - state.snapshot);
+                prune(dir);
+                return log;
+            }
+        }
+
+        // Otherwise start over from the loaded quantities
+        DeltaLog log = new DeltaLog(dir, books.getSource(), quantities, snapshotEvery, lastSequence(dir));
+        log.sequence++;
+        log.writeSnapshot();
+        log.sync();
+        return log;
+    }//end open
+
+    // Writes the changed rows as the next delta, and a snapshot when one is due
+    @Override
+    public void write(int[] ids, int[] changed, int count) throws IOException{
+
+        long time = System.currentTimeMillis();
+        long next = sequence + 1;
+
+        File file = file(DELTA_PREFIX, next);
+        try(PrintWriter writer = open(file)){
+            writer.println("# delta " + next + " of " + quantities.length + " books");
+            for(int i = 0; i < count; i++){
+                int id = ids[i];
+                writer.println(id + ", " + quantities[id] + ", " + changed[i] + ", " + time);
+            }
+            if(writer.checkError())
+                throw new IOException("Failed writing " + file);
+        }
+        publish(file);
+
+        // Only count the changes once they are in the log
+        for(int i = 0; i < count; i++)
+            quantities[ids[i]] = changed[i];
+        sequence = next;
+
+        if(++sinceSnapshot >= snapshotEvery)
+            writeSnapshot();
+    }//end write
+
+    // Forces every file written since the last sync to disk, then deletes what a
+    // snapshot among them replaced
+    @Override
+    public void sync() throws IOException{
+        for(File file : unsynced){
+            try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)){
+                channel.force(true);
+            }
+        }
+        unsynced.clear();
+
+        if(snapshotUnsynced){
+            snapshotUnsynced = false;
+            prune(dir);
+        }
+    }//end sync
+
+    // The sequence number of the last file written
+    public long getSequence(){
+        return sequence;
+    }//end getSequence
+
+    // The quantities saved in a log directory: the newest snapshot with every
+    // delta after it applied in order. Returns null if there is no snapshot.
+    public static State replay(File dir) throws IOException{
+
+        long snapshot = -1;
+        TreeMap<Long, File> deltas = new TreeMap<>();
+
+        // Find the newest snapshot and every delta
+        File[] files = dir.listFiles();
+        if(files != null){
+            for(File f : files){
+                long seq = sequenceOf(f.getName(), SNAPSHOT_PREFIX);
+                if(seq > snapshot)
+                    snapshot = seq;
+                seq = sequenceOf(f.getName(), DELTA_PREFIX);
+                if(seq >= 0)
+                    deltas.put(seq, f);
+            }
+        }
+
+        if(snapshot < 0)
+            return null;
+
+        // The snapshot is a database file, only its quantities are needed
+        CatalogStore base = new DataManager(file(dir, SNAPSHOT_PREFIX, snapshot)).loadStore();
+        int[] quantities = new int[base.size()];
+        for(int id = 0; id < quantities.length; id++)
+            quantities[id] = base.getQuantity(id);
+
+        // Apply the deltas after it until one is missing
+        long sequence = snapshot;
+        for(Map.Entry<Long, File> delta : deltas.tailMap(snapshot, false).entrySet()){
+            if(delta.getKey() != sequence + 1){
+                System.out.println("Delta " + (sequence + 1) + " is missing from " + dir + ", stopped replaying");
+                break;
+            }
+            apply(delta.getValue(), quantities);
+            sequence = delta.getKey();
+        }
+
+        return new State(snapshot, sequence, quantities);
+    }//end replay
+
+    // Helper - Applies one delta file's changes
+    private static void apply(File delta, int[] quantities) throws IOException{
+
+        try(BufferedReader reader = Files.newBufferedReader(delta.toPath(), StandardCharsets.UTF_8)){
+            String line;
+            while((line = reader.readLine()) != null){
+
+                // Skip comments and blank lines
+                if(line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                String[] fields = line.split(",");
+                try {
+                    int id = Integer.parseInt(fields[0].trim());
+                    int old = Integer.parseInt(fields[1].trim());
+                    int quantity = Integer.parseInt(fields[2].trim());
+
+                    if(quantities[id] != old)
+                        System.out.println(delta.getName() + ": book " + id + " had " + quantities[id] + " not " + old);
+                    quantities[id] = quantity;
+                } catch(NumberFormatException | ArrayIndexOutOfBoundsException ex){
+                    throw new IOException("Malformed delta row in " + delta + ": " + line);
+                }
+            }
+        }
+    }//end apply
+
+    // Helper - Writes every quantity as a snapshot numbered with the current sequence
+    private void writeSnapshot() throws IOException{
+
+        File file = file(SNAPSHOT_PREFIX, sequence);
+        try(PrintWriter writer = open(file)){
+            for(int id = 0; id < quantities.length; id++)
+                writer.println(DataManager.formatRow(rows.getName(id), rows.getPrice(id), quantities[id]));
+            if(writer.checkError())
+                throw new IOException("Failed writing " + file);
+        }
+        publish(file);
+
+        sinceSnapshot = 0;
+        snapshotUnsynced = true;
+    }//end writeSnapshot
+
+    // Helper - Deletes the snapshots older than the ones kept, and the deltas the
+    // oldest snapshot kept already includes
+    private static void prune(File dir){
+
+        File[] files = dir.listFiles();
+        if(files == null)
+            return;
+
+        // The oldest snapshot kept
+        TreeSet<Long> snapshots = new TreeSet<>();
+        for(File f : files){
+            long seq = sequenceOf(f.getName(), SNAPSHOT_PREFIX);
+            if(seq >= 0)
+                snapshots.add(seq);
+        }
+        if(snapshots.size() <= KEEP_SNAPSHOTS)
+            return;
+        Iterator<Long> newest = snapshots.descendingIterator();
+        for(int i = 1; i < KEEP_SNAPSHOTS; i++)
+            newest.next();
+        long keep = newest.next();
+
+        for(File f : files){
+            long snapshot = sequenceOf(f.getName(), SNAPSHOT_PREFIX);
+            long delta = sequenceOf(f.getName(), DELTA_PREFIX);
+            if(((snapshot >= 0 && snapshot < keep) || (delta >= 0 && delta <= keep)) && !f.delete())
+                System.out.println("Cannot delete " + f);
+        }
+    }//end prune
+
+    // Helper - Opens the temporary file a file is written to
+    private static PrintWriter open(File file) throws IOException{
+        return new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(temp(file)), StandardCharsets.UTF_8), 1 << 16));
+    }//end open
+
+    // Helper - Moves a finished file to its final name
+    private void publish(File file) throws IOException{
+        Files.move(temp(file).toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        unsynced.add(file);
+    }//end publish
+
+    // Helper - Where a file is written before it is complete
+    private static File temp(File file){
+        return new File(file.getPath() + ".tmp");
+    }//end temp
+
+    // Helper - A file of this log
+    private File file(String prefix, long seq){
+        return file(dir, prefix, seq);
+    }//end file
+
+    // Helper - A file of a log directory
+    private static File file(File dir, String prefix, long seq){
+        return new File(dir, String.format("%s%012d%s", prefix, seq, SUFFIX));
+    }//end file
+
+    // Helper - The largest sequence number of any file in the directory, or zero
+    private static long lastSequence(File dir){
+        long last = 0;
+        File[] files = dir.listFiles();
+        if(files != null)
+            for(File f : files)
+                last = Math.max(last, Math.max(sequenceOf(f.getName(), DELTA_PREFIX), sequenceOf(f.getName(), SNAPSHOT_PREFIX)));
+        return last;
+    }//end lastSequence
+
+    // Helper - The sequence number in a file name with the prefix, or -1
+    private static long sequenceOf(String name, String prefix){
+        if(!name.startsWith(prefix) || !name.endsWith(SUFFIX))
+            return -1;
+        try {
+            return Long.parseLong(name.substring(prefix.length(), name.length() - SUFFIX.length()));
+        } catch(NumberFormatException ex){
+            return -1;
+        }
+    }//end sequenceOf
+
+    // The quantities of a log as of a sequence number
+    public static class State{
+
+        private final long snapshot;
+        private final long sequence;
+        private final int[] quantities;
+
+        State(long snapshot, long sequence, int[] quantities){
+            this.snapshot = snapshot;
+            this.sequence = sequence;
+            this.quantities = quantities;
+        }//end State
+
+        // The snapshot the deltas were applied to
+        public long getSnapshotSequence(){
+            return snapshot;
+        }//end getSnapshotSequence
+
+        // The last file applied
+        public long getSequence(){
+            return sequence;
+        }//end getSequence
+
+        // The quantity of each book, indexed by id
+        public int[] getQuantities(){
+            return quantities;
+        }//end getQuantities
+
+    }//end inner class State
+
+}//end class DeltaLog
@@ -4,12 +4,100 @@
  * Just a simple book store Swing application.
  */
 
+import java.io.*;
+import java.util.*;
+
 public class Driver {
 
-    public static void main(String[] args){
+    // Port the headless store listens on unless --port is given
+    private static final int DEFAULT_PORT = 8080;
+
+    // Starts the Swing store, or with --headless [--port n] [database...] serves
+    // the store over HTTP on localhost without opening a window. Several database
+    // files, or a directory of them, are merged into one sharded catalog. With
+    // --import orders [--results file] [--rejects file] [database...] it sells the
+    // orders of a file instead and exits.
+    public static void main(String[] args) throws IOException{
+
+        boolean headless = false;
+        int port = DEFAULT_PORT;
+        File orders = null, results = null, rejects = null;
+        List<File> databases = new ArrayList<>();
+
+        // Read the command line
+        for(int i = 0; i < args.length; i++){
+            if(args[i].equals("--headless"))
+                headless = true;
+            else if(args[i].equals("--port") && i + 1 < args.length)
+                port = Integer.parseInt(args[++i]);
+            else if(args[i].equals("--import") && i + 1 < args.length)
+                orders = new File(args[++i]);
+            else if(args[i].equals("--results") && i + 1 < args.length)
+                results = new File(args[++i]);
+            else if(args[i].equals("--rejects") && i + 1 < args.length)
+                rejects = new File(args[++i]);
+            else
+                databases.add(new File(args[i]));
+        }
 
-        new Bookstore();
+        if(databases.isEmpty())
+            databases.add(new File("Books.txt"));
+
+        if(orders != null)
+            importOrders(databases, orders,
+                    results != null ? results : OrderImport.getResultsFile(orders),
+                    rejects != null ? rejects : OrderImport.getRejectsFile(orders));
+        else if(headless)
+            startHeadless(databases, port);
+        else
+            new Bookstore();
 
     }//end main
 
+    // Helper - Serves the store over HTTP until the process is stopped
+    private static void startHeadless(List<File> databases, int port) throws IOException{
+
+        StoreService store = databases.size() == 1 ? StoreService.open(databases.get(0)) : StoreService.openShards(databases);
+        StoreServer server = new StoreServer(store, port);
+
+        // Apply edits to a single database file without restarting
+        CatalogWatcher watcher = databases.size() == 1 && databases.get(0).isFile() ?
+                CatalogWatcher.watch(databases.get(0), () -> {
+                    try {
+                        store.reload();
+                    } catch(IOException ex){
+                        System.out.println(ex);
+                    }
+                }) : null;
+
+        // Stop serving and flush unsaved checkouts on exit
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if(watcher != null)
+                watcher.close();
+            server.close();
+            store.close();
+        }));
+
+        server.start();
+        System.out.println("Serving " + databases + " on http://localhost:" + server.getPort() + "/books");
+
+    }//end startHeadless
+
+    // Helper - Sells the orders of a file, then saves the stock and reports
+    private static void importOrders(List<File> databases, File orders, File results, File rejects) throws IOException{
+
+        StoreService store = databases.size() == 1 ? StoreService.open(databases.get(0)) : StoreService.openShards(databases);
+        OrderImport.Summary summary;
+        try {
+            summary = OrderImport.run(store, orders, results, rejects);
+        } finally {
+            // Write the quantities and the ledger out
+            store.close();
+        }
+
+        System.out.println(summary);
+        System.out.println("Results in " + results + ", rejects in " + rejects);
+
+    }//end importOrders
+
 }//end Driver
@@ -0,0 +1,114 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.util.concurrent.atomic.*;
+
+// A lock-free histogram of non-negative values such as latencies in nanoseconds
+// or cart sizes. Values below 16 get a bucket each; above that every power of
+// two is split into eight buckets, so a percentile is never off by more than
+// an eighth. Recording is a few atomic adds and never allocates.
+public class Histogram {
+
+    // Values with a bucket each
+    private static final int LINEAR = 16;
+
+    // Buckets per power of two above the linear ones
+    private static final int SUB_BUCKETS = 8;
+
+    // Enough buckets for any positive long
+    private static final int BUCKETS = LINEAR + (63 - 4) * SUB_BUCKETS;
+
+    // Values recorded per bucket
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    // Records a value, negative values are counted as zero
+    public void record(long value){
+
+        if(value < 0)
+            value = 0;
+
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+
+        // Raise the maximum
+        long current = max.get();
+        while(value > current && !max.compareAndSet(current, value))
+            current = max.get();
+    }//end record
+
+    // Records the time since a System.nanoTime() reading
+    public void recordSince(long startNanos){
+        record(System.nanoTime() - startNanos);
+    }//end recordSince
+
+    public long getCount(){
+        return count.sum();
+    }//end getCount
+
+    public long getSum(){
+        return sum.sum();
+    }//end getSum
+
+    public long getMax(){
+        return max.get();
+    }//end getMax
+
+    public double getMean(){
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }//end getMean
+
+    // The value below which the given fraction of values fall, as the top of its bucket
+    public long getPercentile(double fraction){
+
+        // Total the buckets as they are now, recording may carry on
+        long total = 0;
+        for(int i = 0; i < BUCKETS; i++)
+            total += counts.get(i);
+        if(total == 0)
+            return 0;
+
+        long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            seen += counts.get(i);
+            if(seen >= rank)
+                return Math.min(upperBound(i), max.get());
+        }
+
+        return max.get();
+    }//end getPercentile
+
+    // Helper - The bucket holding a value
+    private static int bucketOf(long value){
+
+        if(value < LINEAR)
+            return (int) value;
+
+        // The power of two and which eighth of it
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+        return LINEAR + (exponent - 4) * SUB_BUCKETS + sub;
+    }//end bucketOf
+
+    // Helper - The largest value a bucket holds
+    private static long upperBound(int bucket){
+
+        if(bucket < LINEAR)
+            return bucket;
+
+        int exponent = (bucket - LINEAR) / SUB_BUCKETS + 4;
+        int sub = (bucket - LINEAR) % SUB_BUCKETS;
+        long lower = (long) (SUB_BUCKETS + sub) << (exponent - 3);
+        return lower + (1L << (exponent - 3)) - 1;
+    }//end upperBound
+
+}//end class Histogram
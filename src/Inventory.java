@@ -0,0 +1,453 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.util.*;
+
+// The store's stock and the list model the store JList shows. Rows are read from
+// a row source and only materialized as Book views when the list asks for them;
+// a small window of recently used pages is cached. The stock counts are held in a
+// lock-free stock engine indexed by book id, which is also the row number, so
+// finding, reserving and returning a book are constant time and safe to do from
+// many sessions at once. Rows appended and cleared in a batch reach the list as
+// one event.
+//
+// A book removed from the catalog keeps its id so carts holding it and the
+// stock counts of every other book stay valid; it is only left out of the list.
+public class Inventory extends BatchListModel<Book> {
+
+    // Where the rows of a catalog come from
+    public interface RowSource{
+
+        // The number of rows
+        int size();
+
+        // The title of a row
+        String getName(int row);
+
+        // The price of a row
+        String getPrice(int row);
+
+        // The price of a row in cents
+        long getPriceCents(int row);
+
+        // The quantity of a row when it was loaded
+        int getQuantity(int row);
+
+        // The rows removed from the catalog when it was saved, which keep their
+        // ids. Only a snapshot taken after a reload has any.
+        default BitSet getRemoved(){
+            return new BitSet();
+        }//end getRemoved
+
+    }//end interface RowSource
+
+    // Rows materialized together
+    private static final int PAGE_SIZE = 256;
+
+    // Pages kept around the viewport
+    private static final int MAX_PAGES = 16;
+
+    // Where the rows come from, replaced as a whole so lookups by id can read it
+    // without the lock. It always has size rows.
+    private volatile RowSource source;
+
+    // The number of rows, removed or not
+    private int size;
+
+    // The id of the book at each position of the list, null while no book is removed
+    private int[] order;
+
+    // The books removed from the catalog
+    private final BitSet removed = new BitSet();
+
+    // The available and reserved copies of each row
+    private StockEngine stock;
+
+    // Recently used pages of Book views, least recently used first
+    private final LinkedHashMap<Integer, Book[]> pages = new LinkedHashMap<Integer, Book[]>(MAX_PAGES * 2, 0.75f, true){
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Book[]> eldest){
+            return size() > MAX_PAGES;
+        }
+    };
+
+    // Books by normalized title, built the first time a title is looked up
+    private Map<String, Integer> byTitle;
+
+    // Counts the changes that can give an id another title or price, so what is
+    // kept about a book can be checked without decoding its title
+    private volatile long version;
+
+    // Creates an empty inventory
+    public Inventory(){
+        this(new ListRowSource(Collections.<Book>emptyList()));
+    }//end Inventory
+
+    // Creates an inventory holding the given books in order
+    public Inventory(List<Book> books){
+        this(new ListRowSource(books));
+    }//end Inventory
+
+    // Creates an inventory over the rows of a source
+    public Inventory(RowSource source){
+        this.source = source;
+
+        // Copy the quantity column out of the source
+        size = source.size();
+        stock = new StockEngine(size);
+        for(int i = 0; i < size; i++)
+            stock.setOnHand(i, source.getQuantity(i));
+
+        // Books removed before the catalog was saved stay removed
+        removed.or(source.getRemoved());
+        if(!removed.isEmpty())
+            order = listed();
+    }//end Inventory
+
+    // The number of books listed
+    @Override
+    public int getSize(){
+        return order == null ? size : order.length;
+    }//end getSize
+
+    // The number of ids in use, including removed books
+    public int getRowCount(){
+        return size;
+    }//end getRowCount
+
+    // Changes whenever a reload or clear may have given an id another title or price
+    public long getVersion(){
+        return version;
+    }//end getVersion
+
+    // Returns the book listed at a position
+    @Override
+    public synchronized Book getElementAt(int index){
+
+        if(order == null)
+            return book(index);
+
+        if(index < 0 || index >= order.length)
+            throw new IndexOutOfBoundsException("Row " + index + " of " + order.length);
+        return book(order[index]);
+    }//end getElementAt
+
+    // Helper - Returns the book with an id from the page cache. The caller holds
+    // the lock because the cache is shared by the Swing and HTTP threads.
+    private Book book(int index){
+
+        if(index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Row " + index + " of " + size);
+
+        // Materialize the page holding the row if it isn't cached
+        int page = index / PAGE_SIZE;
+        Book[] books = pages.get(page);
+        if(books == null){
+            int start = page * PAGE_SIZE;
+            books = new Book[Math.min(PAGE_SIZE, size - start)];
+            for(int i = 0; i < books.length; i++)
+                books[i] = new Book(this, start + i, source);
+            pages.put(page, books);
+        }
+
+        return books[index % PAGE_SIZE];
+    }//end book
+
+    // Returns the book with the given id or null, removed books included so
+    // carts can still show them
+    public synchronized Book get(int id){
+        return id >= 0 && id < size ? book(id) : null;
+    }//end get
+
+    // Whether a book has been removed from the catalog
+    public synchronized boolean isRemoved(int id){
+        return removed.get(id);
+    }//end isRemoved
+
+    // Returns the ids of the removed books
+    public synchronized BitSet getRemoved(){
+        return (BitSet) removed.clone();
+    }//end getRemoved
+
+    // Returns a Book view of the book with an id or null, removed books included,
+    // without taking the lock or touching the page cache. For lookups by id from
+    // other threads, such as the HTTP server's.
+    public Book find(int id){
+        RowSource rows = source;
+        return id >= 0 && id < rows.size() ? new Book(this, id, rows) : null;
+    }//end find
+
+    // Returns a Book view of a row without caching its page, for lists that
+    // jump around the catalog such as search results
+    Book view(int id){
+        checkId(id);
+        return new Book(this, id, source);
+    }//end view
+
+    // Returns the copies of a row that can still be added to a cart
+    public int getQuantity(int id){
+        return stock.getAvailable(id);
+    }//end getQuantity
+
+    // Sets the available quantity of a row
+    public void setQuantity(int id, int quantity){
+        stock.setOnHand(id, quantity + stock.getReserved(id));
+    }//end setQuantity
+
+    // Returns the copies of a row physically on hand, including those in carts
+    public int getOnHand(int id){
+        return stock.getOnHand(id);
+    }//end getOnHand
+
+    // Sets the copies of a row physically on hand, keeping the cart reservations
+    public void setOnHand(int id, int quantity){
+        stock.setOnHand(id, quantity);
+    }//end setOnHand
+
+    // Returns the stock counters shared by every session
+    public StockEngine getStock(){
+        return stock;
+    }//end getStock
+
+    // Returns the rows this inventory was built from
+    public RowSource getSource(){
+        return source;
+    }//end getSource
+
+    // Returns the book with the given title, ignoring case and surrounding spaces, or null
+    public synchronized Book findByTitle(String title){
+
+        // Index the titles on first use, the first row with a title wins
+        if(byTitle == null){
+            byTitle = new HashMap<>();
+            for(int i = 0; i < size; i++)
+                if(!removed.get(i))
+                    byTitle.putIfAbsent(normalize(source.getName(i)), i);
+        }
+
+        Integer id = byTitle.get(normalize(title));
+        return id == null ? null : get(id);
+    }//end findByTitle
+
+    // Reserves copies of a book for a cart, returns false if there aren't enough
+    public boolean reserve(Book b, int count){
+        return stock.reserve(checkId(b), count);
+    }//end reserve
+
+    // Returns copies a cart had reserved to the stock
+    public void returnItem(Book b, int count){
+        stock.release(checkId(b), count);
+    }//end returnItem
+
+    // Sells copies a cart had reserved
+    public void commit(Book b, int count){
+        stock.commit(checkId(b), count);
+    }//end commit
+
+    // Adds the rows of some sources after the current rows, firing a single event.
+    // Used while a catalog loads in chunks, before any session shares the stock.
+    public synchronized void append(List<? extends RowSource> parts){
+
+        if(order != null)
+            throw new IllegalStateException("Cannot append after books are removed");
+
+        int start = size;
+        RowSource grown = CatalogParts.append(source, parts);
+        if(grown.size() == start)
+            return;
+
+        // Take the new quantities into the stock
+        source = grown;
+        size = grown.size();
+        stock = stock.copyOf(size);
+        for(int i = start; i < size; i++)
+            stock.setOnHand(i, source.getQuantity(i));
+
+        // A snapshot saved after a reload lists only the books not removed
+        BitSet gone = grown.getRemoved();
+        if(!gone.isEmpty()){
+            removed.or(gone);
+            order = listed();
+        }
+
+        // The last page may have been cut short and the title index is stale
+        pages.remove(start / PAGE_SIZE);
+        byTitle = null;
+
+        if(getSize() > start)
+            fireIntervalAdded(this, start, getSize() - 1);
+    }//end append
+
+    // Applies the difference between the catalog and a newer version of its file.
+    // Only the books the diff names are touched and the list hears one batch of
+    // events. A book's stock moves by as much as its quantity in the file did, so
+    // a new price leaves the stock alone and sales since the load aren't undone.
+    // Copies already in carts stay reserved, so a book can't drop below
+    // what carts hold, and removed books keep their reservations until the carts
+    // let go of them. The caller keeps sessions from changing the stock
+    // meanwhile, as growing the stock replaces it.
+    public synchronized void apply(CatalogDiff diff){
+
+        if(diff.getBase() != source)
+            throw new IllegalStateException("The diff was not taken against this catalog");
+
+        beginBatch();
+        try {
+            version++;
+            int start = size;
+            int[] changed = diff.getChanged();
+            int[] gone = diff.getRemoved();
+            source = diff.getRows();
+
+            // New prices and quantities, the cached views show the old price
+            for(int i = 0; i < changed.length; i++){
+                int id = changed[i];
+                int change = diff.getQuantityChange(i);
+                if(change != 0){
+                    long onHand = Math.min(Integer.MAX_VALUE, (long) stock.getOnHand(id) + change);
+                    stock.setOnHand(id, (int) Math.max(onHand, stock.getReserved(id)));
+                }
+                pages.remove(id / PAGE_SIZE);
+                int position = position(id);
+                fireContentsChanged(this, position, position);
+            }
+
+            // New books go after the last id and at the end of the list
+            int added = diff.getAdded().size();
+            if(added > 0){
+                StockEngine grown = stock.copyOf(start + added);
+                for(int id = start; id < start + added; id++)
+                    grown.setOnHand(id, source.getQuantity(id));
+                stock = grown;
+                size = start + added;
+                pages.remove(start / PAGE_SIZE);
+                if(order != null){
+                    int listed = order.length;
+                    order = Arrays.copyOf(order, listed + added);
+                    for(int i = 0; i < added; i++)
+                        order[listed + i] = start + i;
+                }
+                if(byTitle != null)
+                    for(int id = start; id < size; id++)
+                        byTitle.putIfAbsent(normalize(source.getName(id)), id);
+                fireIntervalAdded(this, getSize() - added, getSize() - 1);
+            }
+
+            // Removed books keep only the copies carts hold
+            if(gone.length > 0){
+                for(int id : gone){
+                    removed.set(id);
+                    stock.setOnHand(id, stock.getReserved(id));
+                    if(byTitle != null)
+                        byTitle.remove(normalize(source.getName(id)), id);
+                }
+                relist(position(gone[0]));
+            }
+        } finally {
+            commitBatch();
+        }
+    }//end apply
+
+    // Removes every book, firing a single event
+    public void clear(){
+
+        int removed = size;
+        if(removed == 0)
+            return;
+
+        version++;
+        source = new ListRowSource(Collections.<Book>emptyList());
+        size = 0;
+        order = null;
+        this.removed.clear();
+        stock = new StockEngine(0);
+        pages.clear();
+        byTitle = null;
+
+        fireIntervalRemoved(this, 0, removed - 1);
+    }//end clear
+
+    // Helper - The position of a listed book, ids stay in order in the list
+    private int position(int id){
+        return order == null ? id : Arrays.binarySearch(order, id);
+    }//end position
+
+    // Helper - Rebuilds the list order without the removed books, the first of
+    // the books just removed was listed at a position
+    private void relist(int first){
+
+        int before = getSize();
+        order = listed();
+
+        // Every row from the first one removed onward moved up
+        fireIntervalRemoved(this, first, first + before - order.length - 1);
+    }//end relist
+
+    // Helper - The ids of the books not removed, in order
+    private int[] listed(){
+        int[] listed = new int[size - removed.cardinality()];
+        int n = 0;
+        for(int id = removed.nextClearBit(0); id < size; id = removed.nextClearBit(id + 1))
+            listed[n++] = id;
+        return listed;
+    }//end listed
+
+    // Helper - The id of a book in this inventory
+    private int checkId(Book b){
+        int id = b.getId();
+        if(id < 0 || id >= size)
+            throw new NoSuchElementException("Book is not in stock: " + b.getName());
+        return id;
+    }//end checkId
+
+    // Helper - Checks a row number
+    private void checkId(int id){
+        if(id < 0 || id >= size)
+            throw new IndexOutOfBoundsException("Row " + id + " of " + size);
+    }//end checkId
+
+    // Normalizes a title for lookup
+    static String normalize(String title){
+        return title.trim().toLowerCase(Locale.ROOT);
+    }//end normalize
+
+    // Rows held in a list of parsed books
+    private static class ListRowSource implements RowSource{
+
+        private final List<Book> books;
+
+        ListRowSource(List<Book> books){
+            this.books = books;
+        }//end ListRowSource
+
+        @Override
+        public int size(){
+            return books.size();
+        }//end size
+
+        @Override
+        public String getName(int row){
+            return books.get(row).getName();
+        }//end getName
+
+        @Override
+        public String getPrice(int row){
+            return books.get(row).getPrice();
+        }//end getPrice
+
+        @Override
+        public long getPriceCents(int row){
+            return books.get(row).getPriceCents();
+        }//end getPriceCents
+
+        @Override
+        public int getQuantity(int row){
+            return books.get(row).getQuantity();
+        }//end getQuantity
+
+    }//end inner class ListRowSource
+
+}//end class Inventory
@@ -0,0 +1,199 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.management.*;
+
+// The store's counters, gauges and histograms by name. Each one is published
+// as an MBean under "bookstore" so jconsole or any JMX client can read it with
+// nothing else running. Code that records keeps the metric in a field, so the
+// hot path is an add on a LongAdder or Histogram and never looks anything up
+// or allocates. Histograms of times are in nanoseconds and named so.
+public final class Metrics {
+
+    // The JMX domain the metrics are published under
+    public static final String DOMAIN = "bookstore";
+
+    // Every metric by name, a LongAdder, Histogram or LongSupplier
+    private static final ConcurrentMap<String, Object> metrics = new ConcurrentHashMap<>();
+
+    private Metrics(){
+    }//end Metrics
+
+    // Returns the counter with the given name, creating it on first use
+    public static LongAdder counter(String name){
+        return (LongAdder) metrics.computeIfAbsent(name, n -> publish(n, "Counter", new LongAdder()));
+    }//end counter
+
+    // Returns the histogram with the given name, creating it on first use
+    public static Histogram histogram(String name){
+        return (Histogram) metrics.computeIfAbsent(name, n -> publish(n, "Histogram", new Histogram()));
+    }//end histogram
+
+    // Publishes a value read when it is asked for, replacing any gauge of the same name
+    public static void gauge(String name, LongSupplier value){
+        metrics.put(name, publish(name, "Gauge", value));
+    }//end gauge
+
+    // Stops publishing a gauge unless it has since been replaced
+    public static void removeGauge(String name, LongSupplier value){
+        if(metrics.remove(name, value))
+            unpublish(name, "Gauge");
+    }//end removeGauge
+
+    // Returns the current value of a counter or gauge, or zero if there is none
+    public static long getValue(String name){
+        Object metric = metrics.get(name);
+        if(metric instanceof LongAdder)
+            return ((LongAdder) metric).sum();
+        if(metric instanceof LongSupplier)
+            return ((LongSupplier) metric).getAsLong();
+        return 0;
+    }//end getValue
+
+    // Returns the names of every metric, sorted
+    public static SortedSet<String> getNames(){
+        return new TreeSet<>(metrics.keySet());
+    }//end getNames
+
+    // Helper - Registers a metric's MBean, replacing one of the same name
+    private static <T> T publish(String name, String type, T metric){
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(name, type);
+            if(server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+            server.registerMBean(new MetricBean(name, metric), objectName);
+        } catch(JMException ex){
+            System.out.println("Metric " + name + " not published: " + ex);
+        }
+
+        return metric;
+    }//end publish
+
+    // Helper - Unregisters a metric's MBean
+    private static void unpublish(String name, String type){
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(name, type));
+        } catch(JMException ex){
+            System.out.println(ex);
+        }
+    }//end unpublish
+
+    // Helper - The JMX name of a metric
+    private static ObjectName objectName(String name, String type) throws MalformedObjectNameException{
+        return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+    }//end objectName
+
+    // Exposes one metric's readings as read-only attributes
+    private static class MetricBean implements DynamicMBean{
+
+        private final String name;
+        private final Object metric;
+
+        // When the metric was published, for the mean rate
+        private final long created = System.nanoTime();
+
+        MetricBean(String name, Object metric){
+            this.name = name;
+            this.metric = metric;
+        }//end MetricBean
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException{
+
+            if(metric instanceof LongAdder){
+                long count = ((LongAdder) metric).sum();
+                switch(attribute){
+                    case "Count": return count;
+                    case "MeanRate": return count / Math.max(1e-9, (System.nanoTime() - created) / 1e9);
+                }
+            }
+            else if(metric instanceof Histogram){
+                Histogram h = (Histogram) metric;
+                switch(attribute){
+                    case "Count": return h.getCount();
+                    case "Sum": return h.getSum();
+                    case "Mean": return h.getMean();
+                    case "Max": return h.getMax();
+                    case "P50": return h.getPercentile(0.50);
+                    case "P90": return h.getPercentile(0.90);
+                    case "P99": return h.getPercentile(0.99);
+                    case "P999": return h.getPercentile(0.999);
+                }
+            }
+            else if(attribute.equals("Value"))
+                return ((LongSupplier) metric).getAsLong();
+
+            throw new AttributeNotFoundException(attribute);
+        }//end getAttribute
+
+        @Override
+        public AttributeList getAttributes(String[] attributes){
+            AttributeList list = new AttributeList();
+            for(String attribute : attributes){
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch(AttributeNotFoundException ex){
+                    // Left out of the list as the interface expects
+                }
+            }
+            return list;
+        }//end getAttributes
+
+        @Override
+        public MBeanInfo getMBeanInfo(){
+
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            if(metric instanceof LongAdder){
+                attributes.add(attribute("Count", "long", "Times counted"));
+                attributes.add(attribute("MeanRate", "double", "Counted per second since the metric was created"));
+            }
+            else if(metric instanceof Histogram){
+                attributes.add(attribute("Count", "long", "Values recorded"));
+                attributes.add(attribute("Sum", "long", "Total of the values"));
+                attributes.add(attribute("Mean", "double", "Mean value"));
+                attributes.add(attribute("Max", "long", "Largest value"));
+                attributes.add(attribute("P50", "long", "Median"));
+                attributes.add(attribute("P90", "long", "90th percentile"));
+                attributes.add(attribute("P99", "long", "99th percentile"));
+                attributes.add(attribute("P999", "long", "99.9th percentile"));
+            }
+            else
+                attributes.add(attribute("Value", "long", "Current value"));
+
+            return new MBeanInfo(getClass().getName(), name, attributes.toArray(new MBeanAttributeInfo[0]),
+                    null, null, null);
+        }//end getMBeanInfo
+
+        // Helper - Describes a read-only attribute
+        private static MBeanAttributeInfo attribute(String name, String type, String description){
+            return new MBeanAttributeInfo(name, type, description, true, false, false);
+        }//end attribute
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException{
+            throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+        }//end setAttribute
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes){
+            return new AttributeList();
+        }//end setAttributes
+
+        @Override
+        public Object invoke(String action, Object[] params, String[] signature) throws MBeanException{
+            throw new MBeanException(new UnsupportedOperationException(action));
+        }//end invoke
+
+    }//end inner class MetricBean
+
+}//end class Metrics
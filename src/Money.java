@@ -0,0 +1,148 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+// An exact amount of money held as a whole number of cents. Prices are parsed
+// into cents once when the catalog is loaded; cart totals are kept as plain
+// longs with the static helpers so adding and removing books doesn't allocate.
+public final class Money implements Comparable<Money> {
+
+    // No money at all
+    public static final Money ZERO = new Money(0);
+
+    // The sales tax rate in basis points, 700 is 7%
+    public static final int SALES_TAX_BASIS_POINTS = 700;
+
+    // The amount in cents
+    private final long cents;
+
+    private Money(long cents){
+        this.cents = cents;
+    }//end Money
+
+    // Creates an amount from cents
+    public static Money ofCents(long cents){
+        return cents == 0 ? ZERO : new Money(cents);
+    }//end ofCents
+
+    // Parses an amount like "7.99"
+    public static Money parse(String amount){
+        return ofCents(parseCents(amount));
+    }//end parse
+
+    public long getCents(){
+        return cents;
+    }//end getCents
+
+    public Money plus(Money other){
+        return ofCents(Math.addExact(cents, other.cents));
+    }//end plus
+
+    public Money minus(Money other){
+        return ofCents(Math.subtractExact(cents, other.cents));
+    }//end minus
+
+    public Money times(long count){
+        return ofCents(Math.multiplyExact(cents, count));
+    }//end times
+
+    // The sales tax on this amount
+    public Money salesTax(){
+        return ofCents(percentOf(cents, SALES_TAX_BASIS_POINTS));
+    }//end salesTax
+
+    @Override
+    public int compareTo(Money other){
+        return Long.compare(cents, other.cents);
+    }//end compareTo
+
+    @Override
+    public boolean equals(Object o){
+        return o instanceof Money && ((Money) o).cents == cents;
+    }//end equals
+
+    @Override
+    public int hashCode(){
+        return Long.hashCode(cents);
+    }//end hashCode
+
+    // Formats the amount like "7.99"
+    public String toString(){
+        return format(cents);
+    }//end toString
+
+    // Parses an amount like "7.99", "7.9" or "7" into cents. Throws
+    // NumberFormatException if it isn't a number and ArithmeticException if it
+    // has a fraction of a cent.
+    public static long parseCents(String amount){
+
+        String s = amount.trim();
+        int length = s.length();
+        int pos = 0;
+
+        boolean negative = length > 0 && s.charAt(0) == '-';
+        if(negative || (length > 0 && s.charAt(0) == '+'))
+            pos++;
+
+        // Whole dollars
+        long dollars = 0;
+        int digits = 0;
+        while(pos < length && Character.isDigit(s.charAt(pos))){
+            dollars = Math.addExact(Math.multiplyExact(dollars, 10), s.charAt(pos++) - '0');
+            digits++;
+        }
+
+        // Up to two decimal places
+        long fraction = 0;
+        if(pos < length && s.charAt(pos) == '.'){
+            pos++;
+            int places = 0;
+            while(pos < length && Character.isDigit(s.charAt(pos))){
+                int digit = s.charAt(pos++) - '0';
+                if(places < 2)
+                    fraction = fraction * 10 + digit;
+                else if(digit != 0)
+                    throw new ArithmeticException("Fraction of a cent: " + amount);
+                places++;
+                digits++;
+            }
+            if(places == 1)
+                fraction *= 10;
+        }
+
+        if(digits == 0 || pos != length)
+            throw new NumberFormatException("Not an amount: " + amount);
+
+        long cents = Math.addExact(Math.multiplyExact(dollars, 100), fraction);
+        return negative ? -cents : cents;
+    }//end parseCents
+
+    // Formats cents like "7.99"
+    public static String format(long cents){
+
+        long abs = Math.abs(cents);
+        long fraction = abs % 100;
+
+        StringBuilder sb = new StringBuilder(24);
+        if(cents < 0)
+            sb.append('-');
+        sb.append(abs / 100).append('.');
+        if(fraction < 10)
+            sb.append('0');
+        sb.append(fraction);
+
+        return sb.toString();
+    }//end format
+
+    // Takes a rate in basis points of an amount in cents, rounding half a cent away from zero
+    public static long percentOf(long cents, int basisPoints){
+
+        long product = Math.multiplyExact(Math.abs(cents), basisPoints);
+        long rounded = (product + 5000) / 10000;
+
+        return cents < 0 ? -rounded : rounded;
+    }//end percentOf
+
+}//end class Money
@@ -0,0 +1,251 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+// Imports a file of wholesale orders without a window. Each line is one order:
+//
+//   reference, id, quantity[, id, quantity...]
+//
+// where the ids are catalog ids. An order is sold whole or not at all: every
+// line is checked against the catalog and the stock before any copy is taken.
+// Sold orders go to the results file and the ledger, the rest to the rejects
+// file as a comment giving the reason followed by the order unchanged, so the
+// rejects can be fixed and imported again. Blank lines and lines starting with
+// # are skipped. The file is streamed, and the quantities are saved once at the
+// end instead of after every order.
+public class OrderImport {
+
+    // Orders imported and rejected
+    private static final LongAdder ORDERS_IMPORTED = Metrics.counter("import.orders");
+    private static final LongAdder ORDERS_REJECTED = Metrics.counter("import.rejected");
+
+    // The most books one order may list
+    private static final int MAX_LINES = 10000;
+
+    // Buffer size of the files read and written
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // The totals of an import
+    public static class Summary{
+
+        private long orders, rejected, lines, copies, revenueCents, taxCents;
+        private long nanos;
+
+        // Orders sold
+        public long getOrders(){
+            return orders;
+        }//end getOrders
+
+        // Orders rejected
+        public long getRejected(){
+            return rejected;
+        }//end getRejected
+
+        // Order lines sold
+        public long getLines(){
+            return lines;
+        }//end getLines
+
+        public long getCopies(){
+            return copies;
+        }//end getCopies
+
+        public long getRevenueCents(){
+            return revenueCents;
+        }//end getRevenueCents
+
+        public long getTaxCents(){
+            return taxCents;
+        }//end getTaxCents
+
+        // Time the import took, in nanoseconds
+        public long getNanos(){
+            return nanos;
+        }//end getNanos
+
+        public String toString(){
+            double seconds = Math.max(nanos, 1) / 1e9;
+            return String.format(Locale.ROOT,
+                    "Imported %d orders (%d lines, %d copies, %s + %s tax), rejected %d, in %.3f s: %.0f orders/s, %.0f lines/s",
+                    orders, lines, copies, Money.format(revenueCents), Money.format(taxCents), rejected,
+                    seconds, (orders + rejected) / seconds, lines / seconds);
+        }//end toString
+
+    }//end inner class Summary
+
+    // Sells the orders of a file, writing each sold order to the results file and
+    // each rejected one to the rejects file
+    public static Summary run(StoreService store, File orders, File results, File rejects) throws IOException{
+
+        long start = System.nanoTime();
+        Summary summary = new Summary();
+        Inventory inventory = store.getInventory();
+
+        // Books sold, saved once at the end
+        BitSet sold = new BitSet(inventory.getRowCount());
+
+        // The order being read, reused for every line
+        int[] ids = new int[16];
+        int[] counts = new int[16];
+
+        try(BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(orders), StandardCharsets.UTF_8), BUFFER_SIZE);
+            Writer resultsOut = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(results), StandardCharsets.UTF_8), BUFFER_SIZE);
+            Writer rejectsOut = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(rejects), StandardCharsets.UTF_8), BUFFER_SIZE)){
+
+            String line;
+            long lineNumber = 0;
+            StringBuilder result = new StringBuilder();
+
+            while((line = in.readLine()) != null){
+                lineNumber++;
+
+                // Skip blank lines and comments
+                int pos = skipSpaces(line, 0);
+                if(pos == line.length() || line.charAt(pos) == '#')
+                    continue;
+
+                // The reference runs up to the first comma
+                int comma = line.indexOf(',', pos);
+                String reference = line.substring(pos, trimEnd(line, pos, comma < 0 ? line.length() : comma));
+                String reason = reference.isEmpty() ? "no reference" : null;
+
+                // Then pairs of book id and quantity
+                int lines = 0;
+                while(reason == null && comma >= 0){
+                    int idEnd = line.indexOf(',', comma + 1);
+                    if(idEnd < 0){
+                        reason = "book " + line.substring(comma + 1).trim() + " has no quantity";
+                        break;
+                    }
+                    int countEnd = line.indexOf(',', idEnd + 1);
+                    int end = countEnd < 0 ? line.length() : countEnd;
+
+                    int id = parseInt(line, comma + 1, idEnd);
+                    int count = parseInt(line, idEnd + 1, end);
+                    if(id < 0 || id >= inventory.getRowCount() || inventory.isRemoved(id))
+                        reason = "no book " + line.substring(comma + 1, idEnd).trim();
+                    else if(count <= 0)
+                        reason = "bad quantity " + line.substring(idEnd + 1, end).trim() + " of book " + id;
+                    else if(lines == MAX_LINES)
+                        reason = "more than " + MAX_LINES + " books";
+                    else{
+                        if(lines == ids.length){
+                            ids = Arrays.copyOf(ids, lines * 2);
+                            counts = Arrays.copyOf(counts, lines * 2);
+                        }
+                        ids[lines] = id;
+                        counts[lines++] = count;
+                    }
+
+                    comma = countEnd;
+                }//end order line loop
+
+                if(reason == null && lines == 0)
+                    reason = "no books";
+
+                // Sell the whole order or none of it
+                StoreService.Receipt receipt = null;
+                if(reason == null){
+                    try {
+                        receipt = store.sell(ids, counts, lines);
+                        if(receipt == null)
+                            reason = "not enough copies";
+                    } catch(IllegalArgumentException ex){
+                        reason = ex.getMessage();
+                    }
+                }
+
+                if(reason != null){
+                    rejectsOut.write("# line " + lineNumber + ": " + reason + "\n");
+                    rejectsOut.write(line);
+                    rejectsOut.write('\n');
+                    summary.rejected++;
+                    ORDERS_REJECTED.increment();
+                    continue;
+                }
+
+                for(int i = 0; i < lines; i++)
+                    sold.set(ids[i]);
+
+                result.setLength(0);
+                result.append(reference).append(", ").append(receipt.getCopies())
+                      .append(", ").append(receipt.getSubtotal())
+                      .append(", ").append(receipt.getSalesTax())
+                      .append(", ").append(receipt.getTotal()).append('\n');
+                resultsOut.append(result);
+
+                summary.orders++;
+                summary.lines += lines;
+                summary.copies += receipt.getCopies();
+                summary.revenueCents += receipt.getSubtotal().getCents();
+                summary.taxCents += receipt.getSalesTax().getCents();
+                ORDERS_IMPORTED.increment();
+            }//end order loop
+        }
+
+        // Save every book sold once
+        store.saveQuantities(sold);
+
+        summary.nanos = System.nanoTime() - start;
+        return summary;
+    }//end run
+
+    // The default results file for an order file, next to it
+    public static File getResultsFile(File orders){
+        return sibling(orders, "Results.txt");
+    }//end getResultsFile
+
+    // The default rejects file for an order file, next to it
+    public static File getRejectsFile(File orders){
+        return sibling(orders, "Rejects.txt");
+    }//end getRejectsFile
+
+    // Helper - A file next to an order file named after it
+    private static File sibling(File orders, String suffix){
+        String name = orders.getName();
+        int dot = name.lastIndexOf('.');
+        return new File(orders.getAbsoluteFile().getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + suffix);
+    }//end sibling
+
+    // Helper - Parses a decimal int between surrounding spaces in [start, end),
+    // returning -1 if it is not a non-negative int
+    private static int parseInt(String line, int start, int end){
+
+        start = skipSpaces(line, start);
+        end = trimEnd(line, start, end);
+        if(start == end || end - start > 9)
+            return -1;
+
+        int value = 0;
+        for(int i = start; i < end; i++){
+            int digit = line.charAt(i) - '0';
+            if(digit < 0 || digit > 9)
+                return -1;
+            value = value * 10 + digit;
+        }
+
+        return value;
+    }//end parseInt
+
+    // Helper - First non-space index from start on
+    private static int skipSpaces(String line, int start){
+        while(start < line.length() && line.charAt(start) <= ' ')
+            start++;
+        return start;
+    }//end skipSpaces
+
+    // Helper - One past the last non-space index in [start, end)
+    private static int trimEnd(String line, int start, int end){
+        while(end > start && line.charAt(end - 1) <= ' ')
+            end--;
+        return end;
+    }//end trimEnd
+
+}//end class OrderImport
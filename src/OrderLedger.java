@@ -0,0 +1,1408 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+// Every checkout as an order in an append-only binary ledger. Checkouts queue
+// their order and return without waking anything; a background writer wakes
+// every bookstore.ledgerLingerMillis, numbers and timestamps what has queued up
+// and appends it as one batch, syncing as bookstore.durability says.
+//
+// The ledger is a directory of segment files named after the first order they
+// hold. A segment rolls over once it reaches bookstore.ledgerSegmentBytes, and a
+// new one is started each time the ledger opens so a torn tail is never written
+// after. Each record is its length, a CRC-32 of its bytes and the order: id,
+// time, subtotal and tax in cents, then each line's book id, copies, unit price
+// in cents and title.
+//
+// Orders are written in time order, so each segment keeps a sparse index of the
+// time at every few kilobytes. Finding the orders in a time range skips the
+// segments outside it and starts reading a segment at the indexed record just
+// before the range. The index of a finished segment is saved next to it.
+//
+// A compactor merges runs of small finished segments, dropping records that
+// fail their check, and deletes segments older than bookstore.ledgerRetentionDays
+// when that is set. The id after the last deleted order is saved first, so ids
+// never start over once every segment is gone. Lookups read copies of the
+// segments taken under the lock and pin the files meanwhile: a pinned run is
+// left unmerged until the next compaction and a pinned old segment is deleted
+// once its last reader is done.
+//
+// A batch that fails to be written is kept and tried again in a new segment,
+// its orders keeping the ids they were given.
+//
+// Reports read the history through a visitor, which is handed each order's
+// numbers without an object being built for it. A scan splits the segments at
+// their index entries and reads the pieces in parallel, and listeners are told
+// of each order as it is written so totals can be kept up to date.
+public class OrderLedger implements Closeable {
+
+    // Reads orders field by field, for scans over the whole history
+    public interface Visitor{
+
+        // An order, followed by a call for each of its lines
+        void order(long id, long timeMillis, long subtotalCents, long taxCents);
+
+        // A line of the last order, with the UTF-8 bytes [titleStart, titleStart +
+        // titleLength) of its title, only valid during the call. The book id is
+        // the one the book had when the order was written; ids change when the
+        // catalog file is edited, the title is what stays the same.
+        void line(int bookId, byte[] title, int titleStart, int titleLength, int quantity, long unitCents);
+
+    }//end interface Visitor
+
+    // A line of an order
+    public static class Line{
+
+        private final int bookId;
+        private final String title;
+        private final int quantity;
+        private final long unitCents;
+
+        public Line(int bookId, String title, int quantity, long unitCents){
+            this.bookId = bookId;
+            this.title = Objects.requireNonNull(title, "title");
+            this.quantity = quantity;
+            this.unitCents = unitCents;
+        }//end Line
+
+        public int getBookId(){
+            return bookId;
+        }//end getBookId
+
+        public String getTitle(){
+            return title;
+        }//end getTitle
+
+        public int getQuantity(){
+            return quantity;
+        }//end getQuantity
+
+        public long getUnitCents(){
+            return unitCents;
+        }//end getUnitCents
+
+        public String toString(){
+            return title + " x" + quantity + " @ " + Money.format(unitCents);
+        }//end toString
+
+    }//end inner class Line
+
+    // A checkout as the ledger holds it
+    public static class Order{
+
+        // Numbered by the ledger, -1 until the order is written
+        private final long id;
+        private final long timeMillis;
+        private final long subtotalCents;
+        private final long taxCents;
+        private final Line[] lines;
+
+        // An order to submit, numbered and timestamped when it is written. An
+        // order too long to be read back as one record is refused.
+        public Order(long subtotalCents, long taxCents, Line[] lines){
+            this(-1, System.currentTimeMillis(), subtotalCents, taxCents, lines);
+
+            if(lines.length > (MAX_RECORD - 36) / (18 + 0xFFFF) && recordLength(lines) > MAX_RECORD)
+                throw new IllegalArgumentException("Order of " + lines.length + " lines is too long to record");
+        }//end Order
+
+        Order(long id, long timeMillis, long subtotalCents, long taxCents, Line[] lines){
+            this.id = id;
+            this.timeMillis = timeMillis;
+            this.subtotalCents = subtotalCents;
+            this.taxCents = taxCents;
+            this.lines = lines;
+        }//end Order
+
+        public long getId(){
+            return id;
+        }//end getId
+
+        // When the order was written, milliseconds since the epoch
+        public long getTimeMillis(){
+            return timeMillis;
+        }//end getTimeMillis
+
+        public long getSubtotalCents(){
+            return subtotalCents;
+        }//end getSubtotalCents
+
+        public long getTaxCents(){
+            return taxCents;
+        }//end getTaxCents
+
+        public long getTotalCents(){
+            return subtotalCents + taxCents;
+        }//end getTotalCents
+
+        public List<Line> getLines(){
+            return Collections.unmodifiableList(Arrays.asList(lines));
+        }//end getLines
+
+        public String toString(){
+            return "Order " + id + " at " + new Date(timeMillis) + ": " + Arrays.toString(lines) +
+                   " total " + Money.format(getTotalCents());
+        }//end toString
+
+    }//end inner class Order
+
+    // File names, followed by the twelve digit id of the first order
+    private static final String PREFIX = "orders-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    // Holds the id after the last order of the segments deleted so far
+    private static final String NEXT_ID_FILE = "next-order-id";
+
+    // Starts every segment and index file
+    private static final int SEGMENT_MAGIC = 0x4F52444C;
+    private static final int INDEX_MAGIC = 0x4F524458;
+    private static final int VERSION = 1;
+    private static final int SEGMENT_HEADER_SIZE = 8;
+
+    // The length and CRC before each record
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    // Bytes of records between entries of the time index
+    private static final int INDEX_INTERVAL = 4096;
+
+    // Bytes of records a scan reads as one piece of work
+    private static final int SCAN_PIECE = 1 << 20;
+
+    // The longest record read back, anything longer is taken as damage
+    private static final int MAX_RECORD = 1 << 24;
+
+    // Times the last batch is tried on close before it is given up on
+    private static final int CLOSE_ATTEMPTS = 3;
+
+    // Appends, batches, compactions and lookups
+    private static final LongAdder ORDERS = Metrics.counter("ledger.orders");
+    private static final LongAdder BYTES = Metrics.counter("ledger.bytes");
+    private static final LongAdder COMPACTIONS = Metrics.counter("ledger.compactions");
+    private static final LongAdder FAILURES = Metrics.counter("ledger.failures");
+    private static final Histogram BATCH_NANOS = Metrics.histogram("ledger.batch.nanos");
+    private static final Histogram FIND_NANOS = Metrics.histogram("ledger.find.nanos");
+    private static final Histogram SCAN_NANOS = Metrics.histogram("ledger.scan.nanos");
+
+    // The directory holding the segments
+    private final File dir;
+
+    // When a segment rolls over
+    private final long segmentBytes;
+
+    // How long orders are kept, zero to keep them all
+    private final long retentionMillis;
+
+    // When batches are made durable
+    private final PersistenceWriter.Durability durability;
+    private final long intervalMillis;
+
+    // How long the writer lets orders gather between batches
+    private final long lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, Long.getLong("bookstore.ledgerLingerMillis", 5L)));
+
+    // Orders waiting for the writer
+    private final Queue<Order> queue = new ConcurrentLinkedQueue<>();
+
+    // Told of each order once it is written
+    private final List<Visitor> listeners = new CopyOnWriteArrayList<>();
+
+    // The background writer and compactor
+    private final Thread writer;
+    private final ExecutorService compactor;
+
+    // Set once close has been called
+    private volatile boolean closed;
+
+    // Every segment oldest first, the last may be the one being written. The lock
+    // is held to read while lookups copy the list and to write when a segment is
+    // added, grown or replaced.
+    private final List<Segment> segments = new ArrayList<>();
+    private final ReadWriteLock segmentsLock = new ReentrantReadWriteLock();
+
+    // The segment being written, only used by the writer
+    private Segment active;
+    private FileChannel activeChannel;
+
+    // The next order id and the last time written, only used by the writer
+    private long nextId;
+    private long lastTime;
+
+    // The last order id lookups and listeners have been given
+    private long publishedId;
+
+    private OrderLedger(File dir, long segmentBytes, long retentionMillis,
+                        PersistenceWriter.Durability durability, long intervalMillis){
+        this.dir = dir;
+        this.segmentBytes = Math.max(SEGMENT_HEADER_SIZE + INDEX_INTERVAL, segmentBytes);
+        this.retentionMillis = Math.max(0, retentionMillis);
+        this.durability = durability;
+        this.intervalMillis = Math.max(1, intervalMillis);
+
+        writer = new Thread(this::run, "Bookstore order ledger");
+        writer.setDaemon(true);
+
+        compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Bookstore ledger compactor");
+            t.setDaemon(true);
+            return t;
+        });
+    }//end OrderLedger
+
+    // Opens the ledger in a directory, creating it if needed. The segment size,
+    // retention and durability come from the bookstore.ledgerSegmentBytes,
+    // bookstore.ledgerRetentionDays, bookstore.durability and bookstore.syncInterval
+    // system properties.
+    public static OrderLedger open(File dir) throws IOException{
+        return open(dir, Long.getLong("bookstore.ledgerSegmentBytes", 8L << 20),
+                TimeUnit.DAYS.toMillis(Long.getLong("bookstore.ledgerRetentionDays", 0L)),
+                PersistenceWriter.Durability.fromProperty(), Long.getLong("bookstore.syncInterval", 1000L));
+    }//end open
+
+    // Opens the ledger with the given settings
+    public static OrderLedger open(File dir, long segmentBytes, long retentionMillis,
+                                   PersistenceWriter.Durability durability, long intervalMillis) throws IOException{
+
+        if(!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Cannot create " + dir);
+
+        OrderLedger ledger = new OrderLedger(dir, segmentBytes, retentionMillis, durability, intervalMillis);
+        ledger.loadSegments();
+        ledger.writer.start();
+        ledger.compactor.execute(ledger::compact);
+        return ledger;
+    }//end open
+
+    // Queues an order to be written, never blocks. Only orders made to submit,
+    // which are never too long to record, are taken.
+    public void submit(Order order){
+
+        if(closed)
+            throw new IllegalStateException("Order ledger is closed");
+        if(order.id != -1)
+            throw new IllegalArgumentException("Order " + order.id + " is already written");
+
+        queue.add(order);
+    }//end submit
+
+    // Returns up to limit orders written between two times, inclusive, oldest
+    // first. Orders still queued for the writer are not included.
+    public List<Order> find(long fromMillis, long toMillis, int limit) throws IOException{
+
+        long start = System.nanoTime();
+        List<Order> found = new ArrayList<>();
+
+        List<Segment> pinned = pinSegments();
+        try {
+            // Skip the segments that end before the range, the rest start in time order
+            int first = 0;
+            while(first < pinned.size() && pinned.get(first).lastTime < fromMillis)
+                first++;
+
+            for(int s = first; s < pinned.size() && found.size() < limit; s++){
+                Segment segment = pinned.get(s);
+                if(segment.firstTime > toMillis)
+                    break;
+                if(!segment.read(fromMillis, toMillis, limit, found))
+                    break;
+            }
+        } finally {
+            unpin(pinned);
+        }
+
+        FIND_NANOS.recordSince(start);
+        return found;
+    }//end find
+
+    // Visits every order written between two times, inclusive, whose id is at
+    // most throughId. The segments are split into pieces read in parallel on the
+    // fork-join pool by a new visitor from the supplier for each worker; the
+    // visitors are returned to be combined. Lines of an order reach the same visitor.
+    public <V extends Visitor> List<V> scan(long fromMillis, long toMillis, long throughId, Supplier<V> visitors) throws IOException{
+
+        long start = System.nanoTime();
+        List<Segment> pinned = pinSegments();
+        try {
+            // Split the segments in the range at index entries about a piece apart
+            List<long[]> pieces = new ArrayList<>();
+            List<Segment> pieceSegments = new ArrayList<>();
+            for(Segment segment : pinned){
+                if(segment.lastTime < fromMillis)
+                    continue;
+                if(segment.firstTime > toMillis || segment.firstId > throughId)
+                    break;
+
+                int from = 0;
+                for(int i = 1; i <= segment.indexCount; i++){
+                    long end = i < segment.indexCount ? segment.indexOffsets[i] : segment.size;
+                    if(i < segment.indexCount && end - segment.indexOffsets[from] < SCAN_PIECE)
+                        continue;
+
+                    // Every record of the piece is no later than the entry after it
+                    boolean before = i < segment.indexCount && segment.indexTimes[i] < fromMillis;
+                    if(!before && segment.indexTimes[from] <= toMillis){
+                        pieces.add(new long[]{ segment.indexOffsets[from], end });
+                        pieceSegments.add(segment);
+                    }
+                    from = i;
+                }
+            }
+
+            // Read the pieces in parallel, one visitor to each worker taking every
+            // workers-th piece, so a visitor's totals are built once per worker
+            int workers = Math.min(pieces.size(), Runtime.getRuntime().availableProcessors());
+            List<V> results = new ArrayList<>();
+            for(int w = 0; w < workers; w++)
+                results.add(visitors.get());
+
+            try {
+                IntStream.range(0, workers).parallel().forEach(w -> {
+                    try {
+                        for(int i = w; i < pieces.size(); i += workers)
+                            pieceSegments.get(i).visit(pieces.get(i)[0], pieces.get(i)[1],
+                                    fromMillis, toMillis, throughId, results.get(w));
+                    } catch(IOException ex){
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            } catch(UncheckedIOException ex){
+                throw ex.getCause();
+            }
+
+            SCAN_NANOS.recordSince(start);
+            return results;
+        } finally {
+            unpin(pinned);
+        }
+    }//end scan
+
+    // Tells a visitor of each order from now on, on the writer's thread. Returns
+    // the id of the last order written before it, so a scan through that id and
+    // the listener together see every order once.
+    public long addListener(Visitor listener){
+        segmentsLock.writeLock().lock();
+        try {
+            listeners.add(listener);
+            return publishedId;
+        } finally {
+            segmentsLock.writeLock().unlock();
+        }
+    }//end addListener
+
+    public void removeListener(Visitor listener){
+        listeners.remove(listener);
+    }//end removeListener
+
+    // The number of segment files
+    public int getSegmentCount(){
+        segmentsLock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+    }//end getSegmentCount
+
+    // Writes out every queued order, seals the segment being written and stops
+    // the writer and compactor
+    @Override
+    public void close(){
+
+        if(closed)
+            return;
+        closed = true;
+
+        LockSupport.unpark(writer);
+
+        // Wait for the final batch, then for a compaction already running
+        boolean interrupted = false;
+        while(writer.isAlive()){
+            try {
+                writer.join();
+            } catch(InterruptedException ex){
+                interrupted = true;
+            }
+        }
+
+        compactor.shutdown();
+        while(!compactor.isTerminated()){
+            try {
+                compactor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch(InterruptedException ex){
+                interrupted = true;
+            }
+        }
+
+        if(interrupted)
+            Thread.currentThread().interrupt();
+
+    }//end close
+
+    // Helper - The writer loop
+    private void run(){
+
+        List<Order> batch = new ArrayList<>();
+        ByteBuffer out = ByteBuffer.allocate(1 << 16);
+        CRC32 crc = new CRC32();
+
+        long lastSync = System.nanoTime();
+        boolean dirty = false;
+        boolean done = false;
+        int failures = 0;
+
+        while(true){
+            try {
+                // Let orders gather, close wakes the writer early. After a
+                // failure wait longer before trying again.
+                if(!closed)
+                    LockSupport.parkNanos(this, failures == 0 ? lingerNanos : TimeUnit.MILLISECONDS.toNanos(intervalMillis));
+
+                // Take everything that queued up meanwhile. Closing gets its
+                // own attempts at a batch that has been failing.
+                if(closed && !done)
+                    failures = 0;
+                done = closed;
+                Order order;
+                while((order = queue.poll()) != null)
+                    batch.add(order);
+
+                // Append the batch
+                if(!batch.isEmpty()){
+                    long start = System.nanoTime();
+                    out = writeBatch(batch, out, crc);
+                    BATCH_NANOS.recordSince(start);
+                    ORDERS.add(batch.size());
+                    batch.clear();
+                    dirty = true;
+                }
+
+                // Sync according to the durability
+                long now = System.nanoTime();
+                boolean intervalDue = now - lastSync >= TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+                if(dirty && (done || durability == PersistenceWriter.Durability.BATCH ||
+                        (durability == PersistenceWriter.Durability.INTERVAL && intervalDue))){
+                    activeChannel.force(false);
+                    dirty = false;
+                    lastSync = now;
+                }
+
+                failures = 0;
+
+            } catch(IOException | RuntimeException ex){
+                // Keep the batch and start a new segment for it, the one being
+                // written may be what failed
+                failures++;
+                FAILURES.increment();
+                System.out.println("Orders not written, retrying: " + ex);
+                abandonSegment();
+                dirty = false;
+            }
+
+            if(done && (failures == 0 || failures >= CLOSE_ATTEMPTS))
+                break;
+        }//end writer loop
+
+        if(!batch.isEmpty())
+            System.out.println("Closed with " + batch.size() + " orders not written");
+
+        // Seal the last segment so the next open finds its index
+        try {
+            seal();
+        } catch(IOException ex){
+            System.out.println(ex);
+        }
+
+    }//end run
+
+    // Helper - Numbers, encodes and appends a batch of orders, rolling the
+    // segment over first if the batch doesn't fit. Returns the buffer, grown if
+    // it had to be.
+    private ByteBuffer writeBatch(List<Order> batch, ByteBuffer out, CRC32 crc) throws IOException{
+
+        out.clear();
+        long now = System.currentTimeMillis();
+
+        // Given back if the batch isn't written, so a retry numbers it the same
+        long firstId = nextId;
+        long timeBefore = lastTime;
+
+        // Where each record starts in the buffer and when it was written, for the index
+        long[] times = new long[batch.size()];
+        int[] starts = new int[batch.size()];
+
+        long base;
+        try {
+            for(int i = 0; i < batch.size(); i++){
+                Order order = batch.get(i);
+
+                // Times never go backwards so every segment stays in time order
+                lastTime = Math.max(lastTime, Math.min(order.timeMillis, now));
+                times[i] = lastTime;
+                starts[i] = out.position();
+
+                out = encode(out, nextId++, lastTime, order, crc);
+            }
+            out.flip();
+
+            // Roll over when the batch would take the segment past its size
+            if(active != null && active.size > SEGMENT_HEADER_SIZE && active.size + out.remaining() > segmentBytes)
+                seal();
+            if(active == null)
+                startSegment(firstId, times[0]);
+
+            base = active.size;
+            while(out.hasRemaining())
+                activeChannel.write(out, base + out.position());
+        } catch(IOException | RuntimeException ex){
+            nextId = firstId;
+            lastTime = timeBefore;
+            throw ex;
+        }
+        BYTES.add(out.limit());
+
+        // Publish the records to lookups
+        segmentsLock.writeLock().lock();
+        try {
+            for(int i = 0; i < starts.length; i++)
+                active.indexRecord(base + starts[i], times[i]);
+            active.lastId = nextId - 1;
+            active.lastTime = lastTime;
+            active.size = base + out.limit();
+            publishedId = nextId - 1;
+
+            // Tell the listeners while no new one can miss the batch or see it twice
+            for(Visitor listener : listeners){
+                for(int i = 0; i < starts.length; i++){
+                    Order order = batch.get(i);
+                    listener.order(firstId + i, times[i], order.subtotalCents, order.taxCents);
+                    for(Line line : order.lines){
+                        byte[] title = line.title.getBytes(StandardCharsets.UTF_8);
+                        listener.line(line.bookId, title, 0, Math.min(title.length, 0xFFFF), line.quantity, line.unitCents);
+                    }
+                }
+            }
+        } finally {
+            segmentsLock.writeLock().unlock();
+        }
+
+        return out;
+    }//end writeBatch
+
+    // Helper - Appends one record to the buffer, growing it if needed
+    private static ByteBuffer encode(ByteBuffer out, long id, long time, Order order, CRC32 crc){
+
+        // Size the record
+        byte[][] titles = new byte[order.lines.length][];
+        int length = 8 * 4 + 4;
+        for(int i = 0; i < order.lines.length; i++){
+            byte[] title = order.lines[i].title.getBytes(StandardCharsets.UTF_8);
+            titles[i] = title.length > 0xFFFF ? Arrays.copyOf(title, 0xFFFF) : title;
+            length += 4 + 4 + 8 + 2 + titles[i].length;
+        }
+
+        if(out.remaining() < RECORD_HEADER_SIZE + length){
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + RECORD_HEADER_SIZE + length));
+            out.flip();
+            grown.put(out);
+            out = grown;
+        }
+
+        int start = out.position();
+        out.position(start + RECORD_HEADER_SIZE);
+
+        out.putLong(id);
+        out.putLong(time);
+        out.putLong(order.subtotalCents);
+        out.putLong(order.taxCents);
+        out.putInt(order.lines.length);
+        for(int i = 0; i < order.lines.length; i++){
+            Line line = order.lines[i];
+            out.putInt(line.bookId);
+            out.putInt(line.quantity);
+            out.putLong(line.unitCents);
+            out.putShort((short) titles[i].length);
+            out.put(titles[i]);
+        }
+
+        // The length and check go in front
+        crc.reset();
+        crc.update(out.array(), start + RECORD_HEADER_SIZE, length);
+        out.putInt(start, length);
+        out.putInt(start + 4, (int) crc.getValue());
+
+        return out;
+    }//end encode
+
+    // Helper - The length of the record an order's lines make, as a long so a
+    // huge order can't wrap around
+    private static long recordLength(Line[] lines){
+
+        long length = 8 * 4 + 4;
+        for(Line line : lines){
+            // Titles are cut to what the length field holds
+            int title = 0;
+            for(int i = 0; i < line.title.length() && title < 0xFFFF; i++){
+                char c = line.title.charAt(i);
+                if(c < 0x80)
+                    title++;
+                else if(c < 0x800)
+                    title += 2;
+                else if(Character.isHighSurrogate(c) && i + 1 < line.title.length() && Character.isLowSurrogate(line.title.charAt(i + 1))){
+                    title += 4;
+                    i++;
+                }
+                else
+                    title += 3;
+            }
+            length += 4 + 4 + 8 + 2 + Math.min(title, 0xFFFF);
+        }
+        return length;
+    }//end recordLength
+
+    // Helper - Reads a record's order, null if it is malformed
+    private static Order decode(byte[] record, int length){
+
+        ByteBuffer in = ByteBuffer.wrap(record, 0, length);
+        try {
+            long id = in.getLong();
+            long time = in.getLong();
+            long subtotal = in.getLong();
+            long tax = in.getLong();
+            Line[] lines = new Line[in.getInt()];
+            for(int i = 0; i < lines.length; i++){
+                int bookId = in.getInt();
+                int quantity = in.getInt();
+                long unitCents = in.getLong();
+                byte[] title = new byte[in.getShort() & 0xFFFF];
+                in.get(title);
+                lines[i] = new Line(bookId, new String(title, StandardCharsets.UTF_8), quantity, unitCents);
+            }
+            return new Order(id, time, subtotal, tax, lines);
+        } catch(RuntimeException ex){
+            return null;
+        }
+    }//end decode
+
+    // Helper - Starts a segment for orders from an id
+    private void startSegment(long firstId, long firstTime) throws IOException{
+
+        // A file left by a failed start holds none of these orders
+        File file = segmentFile(dir, firstId);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+
+        try {
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+            header.putInt(SEGMENT_MAGIC).putInt(VERSION).flip();
+            channel.write(header, 0);
+        } catch(IOException ex){
+            channel.close();
+            file.delete();
+            throw ex;
+        }
+
+        Segment segment = new Segment(file, firstId);
+        segment.firstTime = firstTime;
+
+        segmentsLock.writeLock().lock();
+        try {
+            segments.add(segment);
+        } finally {
+            segmentsLock.writeLock().unlock();
+        }
+
+        active = segment;
+        activeChannel = channel;
+    }//end startSegment
+
+    // Helper - Syncs the segment being written, saves its index and asks for a compaction
+    private void seal() throws IOException{
+
+        if(active == null)
+            return;
+
+        activeChannel.force(true);
+        activeChannel.close();
+        active.writeIndex();
+        active.sealed = true;
+
+        active = null;
+        activeChannel = null;
+
+        if(!compactor.isShutdown())
+            compactor.execute(this::compact);
+    }//end seal
+
+    // Helper - Stops writing the segment after a failed write. Its published
+    // records are kept: the file is cut back to them and sealed if it still can
+    // be, and a segment with none is deleted. The next batch starts a new segment.
+    private void abandonSegment(){
+
+        if(active == null)
+            return;
+
+        Segment segment = active;
+        try {
+            activeChannel.truncate(segment.size);
+            seal();
+        } catch(IOException ex){
+            System.out.println("Segment " + segment.file.getName() + " not sealed: " + ex);
+            try {
+                activeChannel.close();
+            } catch(IOException closeEx){
+                System.out.println(closeEx);
+            }
+            segment.sealed = true;
+            active = null;
+            activeChannel = null;
+        }
+
+        if(segment.size == SEGMENT_HEADER_SIZE){
+            segmentsLock.writeLock().lock();
+            try {
+                segments.remove(segment);
+                segment.retire();
+            } finally {
+                segmentsLock.writeLock().unlock();
+            }
+        }
+    }//end abandonSegment
+
+    // Helper - Finds the segments already in the directory. A segment whose saved
+    // index doesn't match it is scanned, cutting off a torn or damaged tail.
+    private void loadSegments() throws IOException{
+
+        File[] files = dir.listFiles((d, name) -> name.startsWith(PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if(files == null)
+            files = new File[0];
+
+        TreeMap<Long, File> byId = new TreeMap<>();
+        for(File f : files){
+            long id = idOf(f.getName());
+            if(id >= 0)
+                byId.put(id, f);
+        }
+
+        long lastId = 0;
+        for(Map.Entry<Long, File> e : byId.entrySet()){
+
+            // A compaction stopped before deleting the segments it merged
+            if(e.getKey() <= lastId){
+                System.out.println("Deleting " + e.getValue().getName() + ", already merged");
+                deleteSegment(e.getValue());
+                continue;
+            }
+
+            Segment segment = Segment.load(e.getValue(), e.getKey());
+            if(segment == null)
+                continue;
+            if(segment.size == SEGMENT_HEADER_SIZE){
+                deleteSegment(e.getValue());
+                continue;
+            }
+
+            segments.add(segment);
+            lastId = segment.lastId;
+            lastTime = Math.max(lastTime, segment.lastTime);
+        }
+
+        // Ids carry on after every order ever written, even if its segment is gone
+        nextId = Math.max(lastId + 1, readNextId());
+        publishedId = nextId - 1;
+    }//end loadSegments
+
+    // Helper - Deletes old segments and merges runs of small finished ones. Runs
+    // on the compactor thread; only swapping the files in holds up lookups.
+    private void compact(){
+        try {
+            // Drop segments past the retention, oldest first
+            if(retentionMillis > 0){
+                long cutoff = System.currentTimeMillis() - retentionMillis;
+                for(Segment segment : sealedSegments()){
+                    if(segment.lastTime >= cutoff)
+                        break;
+                    replace(Collections.singletonList(segment), null);
+                }
+            }
+
+            // Merge each run of finished segments that fits in one
+            List<Segment> sealed = sealedSegments();
+            List<Segment> run = new ArrayList<>();
+            long runSize = SEGMENT_HEADER_SIZE;
+            for(Segment segment : sealed){
+                long data = segment.size - SEGMENT_HEADER_SIZE;
+                if(runSize + data > segmentBytes){
+                    merge(run);
+                    run = new ArrayList<>();
+                    runSize = SEGMENT_HEADER_SIZE;
+                }
+                run.add(segment);
+                runSize += data;
+            }
+            merge(run);
+        } catch(IOException ex){
+            System.out.println("Ledger compaction failed: " + ex);
+        }
+    }//end compact
+
+    // Helper - Rewrites a run of segments as one, keeping the records that pass their check
+    private void merge(List<Segment> run) throws IOException{
+
+        if(run.size() < 2)
+            return;
+
+        Segment first = run.get(0);
+        File temp = new File(first.file.getPath() + ".tmp");
+        Segment merged = new Segment(first.file, first.firstId);
+        merged.firstTime = first.firstTime;
+
+        try(FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+            header.putInt(SEGMENT_MAGIC).putInt(VERSION).flip();
+            out.write(header);
+
+            for(Segment segment : run)
+                segment.copyTo(out, merged);
+
+            out.force(true);
+        }
+
+        if(replace(run, merged))
+            COMPACTIONS.increment();
+    }//end merge
+
+    // Helper - Swaps segments for the one merged from them, or deletes them when
+    // there is none. A merge is given up while a lookup is reading the run, as
+    // the merged file takes the first segment's name; returns false then.
+    private boolean replace(List<Segment> old, Segment merged) throws IOException{
+
+        segmentsLock.writeLock().lock();
+        try {
+            // Lookups only pin segments while holding the lock to read
+            if(merged != null){
+                for(Segment segment : old){
+                    if(segment.readers.get() > 0){
+                        new File(merged.file.getPath() + ".tmp").delete();
+                        return false;
+                    }
+                }
+            }
+
+            int at = segments.indexOf(old.get(0));
+
+            // Move the merged file in under the first segment's name
+            if(merged != null){
+                Files.move(new File(merged.file.getPath() + ".tmp").toPath(), merged.file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                merged.writeIndex();
+                merged.sealed = true;
+                segments.set(at, merged);
+            }
+            else{
+                // Remember where the ids got to before the orders are gone
+                writeNextId(old.get(old.size() - 1).lastId + 1);
+                segments.remove(at);
+            }
+
+            for(Segment segment : old){
+                if(segment != old.get(0) || merged == null){
+                    segments.remove(segment);
+                    segment.retire();
+                }
+            }
+            return true;
+        } finally {
+            segmentsLock.writeLock().unlock();
+        }
+    }//end replace
+
+    // Helper - Copies of the segments holding orders as they are now, oldest
+    // first, each pinned so its file stays as it is until it is unpinned
+    private List<Segment> pinSegments(){
+        segmentsLock.readLock().lock();
+        try {
+            List<Segment> pinned = new ArrayList<>(segments.size());
+            for(Segment segment : segments){
+                if(segment.size == SEGMENT_HEADER_SIZE)
+                    continue;
+                segment.readers.incrementAndGet();
+                pinned.add(segment.copy());
+            }
+            return pinned;
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+    }//end pinSegments
+
+    // Helper - Lets go of segments pinned by pinSegments
+    private static void unpin(List<Segment> pinned){
+        for(Segment copy : pinned)
+            copy.original.unpin();
+    }//end unpin
+
+    // Helper - A copy of the finished segments, oldest first
+    private List<Segment> sealedSegments(){
+        segmentsLock.readLock().lock();
+        try {
+            List<Segment> sealed = new ArrayList<>();
+            for(Segment segment : segments)
+                if(segment.sealed)
+                    sealed.add(segment);
+            return sealed;
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+    }//end sealedSegments
+
+    // Helper - The saved id after the last deleted order, 1 if none was saved
+    private long readNextId(){
+
+        File file = new File(dir, NEXT_ID_FILE);
+        if(!file.isFile())
+            return 1;
+
+        try(DataInputStream in = new DataInputStream(new FileInputStream(file))){
+            return in.readLong();
+        } catch(IOException ex){
+            System.out.println("Cannot read " + file + ": " + ex);
+            return 1;
+        }
+    }//end readNextId
+
+    // Helper - Saves the id after the last deleted order, never lowering it
+    private void writeNextId(long next) throws IOException{
+
+        if(next <= readNextId())
+            return;
+
+        File file = new File(dir, NEXT_ID_FILE);
+        File temp = new File(file.getPath() + ".tmp");
+        try(FileOutputStream out = new FileOutputStream(temp)){
+            new DataOutputStream(out).writeLong(next);
+            out.getFD().sync();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }//end writeNextId
+
+    // Helper - Deletes a segment file and its index
+    private static void deleteSegment(File file){
+        file.delete();
+        indexFile(file).delete();
+    }//end deleteSegment
+
+    // Helper - The segment file for orders from an id
+    private static File segmentFile(File dir, long firstId){
+        return new File(dir, String.format("%s%012d%s", PREFIX, firstId, SEGMENT_SUFFIX));
+    }//end segmentFile
+
+    // Helper - The index saved next to a segment
+    private static File indexFile(File segment){
+        String name = segment.getName();
+        return new File(segment.getParentFile(), name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + INDEX_SUFFIX);
+    }//end indexFile
+
+    // Helper - The first order id in a segment's name, or -1
+    private static long idOf(String name){
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch(NumberFormatException ex){
+            return -1;
+        }
+    }//end idOf
+
+    // A segment file and its sparse time index
+    private static class Segment{
+
+        private final File file;
+        private final long firstId;
+
+        // The orders it holds and when they were written
+        private long lastId;
+        private long firstTime, lastTime;
+
+        // Bytes of the file holding whole records
+        private long size = SEGMENT_HEADER_SIZE;
+
+        // Whether the writer has finished with it
+        private volatile boolean sealed;
+
+        // The time and file offset of a record every INDEX_INTERVAL bytes
+        private long[] indexTimes = new long[16];
+        private long[] indexOffsets = new long[16];
+        private int indexCount;
+
+        // The segment a copy was taken of, itself otherwise
+        private final Segment original;
+
+        // Lookups reading the file, and whether the ledger has let go of it.
+        // A file let go of is deleted once its last reader is done.
+        private final AtomicInteger readers = new AtomicInteger();
+        private volatile boolean retired;
+
+        Segment(File file, long firstId){
+            this.file = file;
+            this.firstId = firstId;
+            this.lastId = firstId - 1;
+            this.original = this;
+        }//end Segment
+
+        private Segment(Segment segment){
+            this.file = segment.file;
+            this.firstId = segment.firstId;
+            this.original = segment;
+        }//end Segment
+
+        // A copy as the segment is now, for reading without the lock. Entries
+        // are only ever added past the count, so the index arrays are shared.
+        Segment copy(){
+            Segment copy = new Segment(this);
+            copy.lastId = lastId;
+            copy.firstTime = firstTime;
+            copy.lastTime = lastTime;
+            copy.size = size;
+            copy.sealed = sealed;
+            copy.indexTimes = indexTimes;
+            copy.indexOffsets = indexOffsets;
+            copy.indexCount = indexCount;
+            return copy;
+        }//end copy
+
+        // Done reading, deletes the file if the ledger has let go of it meanwhile
+        void unpin(){
+            if(readers.decrementAndGet() == 0 && retired)
+                deleteSegment(file);
+        }//end unpin
+
+        // Lets go of the segment once it is out of the list, deleting the file
+        // now or when the last lookup reading it is done
+        void retire(){
+            retired = true;
+            if(readers.get() == 0)
+                deleteSegment(file);
+        }//end retire
+
+        // Reads a finished segment's saved index, or scans the segment when the
+        // index is missing or doesn't match it. Returns null if it isn't a segment.
+        static Segment load(File file, long firstId) throws IOException{
+
+            Segment segment = new Segment(file, firstId);
+            segment.sealed = true;
+            if(segment.readIndex())
+                return segment;
+
+            // Scan the records, stopping at the first that is torn or damaged
+            try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)){
+
+                ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+                channel.read(header, 0);
+                header.flip();
+                if(header.remaining() < SEGMENT_HEADER_SIZE || header.getInt() != SEGMENT_MAGIC || header.getInt() != VERSION){
+                    System.out.println("Not a ledger segment, skipped: " + file);
+                    return null;
+                }
+
+                RecordReader reader = new RecordReader(channel, SEGMENT_HEADER_SIZE, channel.size());
+                while(reader.next()){
+                    long time = reader.getTime();
+                    if(segment.lastId < firstId)
+                        segment.firstTime = time;
+                    segment.indexRecord(reader.recordStart, time);
+                    segment.lastId = reader.getId();
+                    segment.lastTime = time;
+                    segment.size = reader.position;
+                }
+
+                // Cut off whatever follows the last good record
+                if(segment.size < channel.size()){
+                    System.out.println("Truncating " + file.getName() + " from " + channel.size() + " to " + segment.size + " bytes");
+                    channel.truncate(segment.size);
+                    channel.force(true);
+                }
+            }
+
+            segment.writeIndex();
+            return segment;
+        }//end load
+
+        // Adds a record to the sparse index if it is far enough past the last entry
+        void indexRecord(long offset, long time){
+            if(indexCount > 0 && offset - indexOffsets[indexCount - 1] < INDEX_INTERVAL)
+                return;
+
+            if(indexCount == indexTimes.length){
+                indexTimes = Arrays.copyOf(indexTimes, indexCount * 2);
+                indexOffsets = Arrays.copyOf(indexOffsets, indexCount * 2);
+            }
+            indexTimes[indexCount] = time;
+            indexOffsets[indexCount] = offset;
+            indexCount++;
+        }//end indexRecord
+
+        // Adds the orders between two times to a list, up to limit of them.
+        // Returns false once an order after the range has been seen.
+        boolean read(long from, long to, int limit, List<Order> found) throws IOException{
+
+            // Start at the last indexed record before the range
+            int lo = 0, hi = indexCount - 1, entry = 0;
+            while(lo <= hi){
+                int mid = (lo + hi) >>> 1;
+                if(indexTimes[mid] < from){
+                    entry = mid;
+                    lo = mid + 1;
+                }
+                else
+                    hi = mid - 1;
+            }
+
+            try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+                RecordReader reader = new RecordReader(channel, indexOffsets[entry], size);
+                while(found.size() < limit && reader.next()){
+                    long time = reader.getTime();
+                    if(time > to)
+                        return false;
+                    Order order = time >= from ? decode(reader.record, reader.length) : null;
+                    if(order != null)
+                        found.add(order);
+                }
+                if(reader.position < size)
+                    System.out.println("Damaged record in " + file.getName() + " at " + reader.position);
+            }
+            return true;
+        }//end read
+
+        // Hands the orders of [start, end) between two times with ids up to
+        // throughId to a visitor. The range starts at a record.
+        void visit(long start, long end, long from, long to, long throughId, Visitor visitor) throws IOException{
+
+            try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+                RecordReader reader = new RecordReader(channel, start, end);
+                while(reader.next()){
+                    long time = reader.getTime();
+                    if(time > to || reader.getId() > throughId)
+                        return;
+                    if(time >= from)
+                        reader.visit(visitor);
+                }
+                if(reader.position < end)
+                    System.out.println("Damaged record in " + file.getName() + " at " + reader.position);
+            }
+        }//end visit
+
+        // Appends this segment's good records to a merged segment's file
+        void copyTo(FileChannel out, Segment merged) throws IOException{
+
+            try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+                RecordReader reader = new RecordReader(channel, SEGMENT_HEADER_SIZE, size);
+                while(reader.next()){
+                    long time = reader.getTime();
+                    ByteBuffer record = ByteBuffer.wrap(reader.record, 0, reader.length);
+                    ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+                    header.putInt(reader.length).putInt(reader.check).flip();
+
+                    merged.indexRecord(merged.size, time);
+                    while(header.hasRemaining())
+                        out.write(header);
+                    while(record.hasRemaining())
+                        out.write(record);
+
+                    merged.size += RECORD_HEADER_SIZE + reader.length;
+                    merged.lastId = reader.getId();
+                    merged.lastTime = time;
+                }
+                if(reader.position < size)
+                    System.out.println("Dropped damaged records from " + file.getName() + " at " + reader.position);
+            }
+        }//end copyTo
+
+        // Saves the index beside the segment
+        void writeIndex() throws IOException{
+
+            File index = indexFile(file);
+            File temp = new File(index.getPath() + ".tmp");
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))){
+                out.writeInt(INDEX_MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(size);
+                out.writeLong(lastId);
+                out.writeLong(firstTime);
+                out.writeLong(lastTime);
+                out.writeInt(indexCount);
+                for(int i = 0; i < indexCount; i++){
+                    out.writeLong(indexTimes[i]);
+                    out.writeLong(indexOffsets[i]);
+                }
+            }
+            Files.move(temp.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }//end writeIndex
+
+        // Helper - Reads the saved index, false if it is missing or is for another version of the segment
+        private boolean readIndex(){
+
+            File index = indexFile(file);
+            if(!index.isFile())
+                return false;
+
+            try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(index)))){
+                if(in.readInt() != INDEX_MAGIC || in.readInt() != VERSION)
+                    return false;
+
+                long savedSize = in.readLong();
+                if(savedSize != file.length())
+                    return false;
+
+                size = savedSize;
+                lastId = in.readLong();
+                firstTime = in.readLong();
+                lastTime = in.readLong();
+                indexCount = in.readInt();
+                indexTimes = new long[Math.max(16, indexCount)];
+                indexOffsets = new long[Math.max(16, indexCount)];
+                for(int i = 0; i < indexCount; i++){
+                    indexTimes[i] = in.readLong();
+                    indexOffsets[i] = in.readLong();
+                }
+                return true;
+            } catch(IOException ex){
+                System.out.println(ex);
+                lastId = firstId - 1;
+                size = SEGMENT_HEADER_SIZE;
+                indexCount = 0;
+                return false;
+            }
+        }//end readIndex
+
+    }//end inner class Segment
+
+    // Reads the records of a segment in order through a buffer
+    private static class RecordReader{
+
+        private final FileChannel channel;
+        private final long end;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        private final CRC32 crc = new CRC32();
+
+        // Where the buffer was read from
+        private long bufferStart;
+
+        // The end of the last good record, and where it started
+        private long position;
+        private long recordStart;
+
+        // The last record's bytes, length and check
+        private byte[] record = new byte[256];
+        private ByteBuffer view = ByteBuffer.wrap(record);
+        private int length;
+        private int check;
+
+        RecordReader(FileChannel channel, long start, long end){
+            this.channel = channel;
+            this.end = end;
+            this.position = start;
+            this.bufferStart = start;
+            buffer.limit(0);
+        }//end RecordReader
+
+        // Reads the next record, false at the end or at a record that fails its check
+        boolean next() throws IOException{
+
+            if(position + RECORD_HEADER_SIZE > end || !fill(RECORD_HEADER_SIZE))
+                return false;
+
+            int at = (int) (position - bufferStart);
+            int length = buffer.getInt(at);
+            int check = buffer.getInt(at + 4);
+            if(length < 36 || length > MAX_RECORD || position + RECORD_HEADER_SIZE + length > end)
+                return false;
+
+            // Copy the record out, reading past the buffer when it is large
+            if(record.length < length){
+                record = new byte[Math.max(length, record.length * 2)];
+                view = ByteBuffer.wrap(record);
+            }
+            if(fill(RECORD_HEADER_SIZE + length)){
+                buffer.position((int) (position - bufferStart) + RECORD_HEADER_SIZE);
+                buffer.get(record, 0, length);
+            }
+            else{
+                ByteBuffer direct = ByteBuffer.wrap(record, 0, length);
+                while(direct.hasRemaining())
+                    if(channel.read(direct, position + RECORD_HEADER_SIZE + direct.position()) < 0)
+                        return false;
+            }
+
+            crc.reset();
+            crc.update(record, 0, length);
+            if((int) crc.getValue() != check)
+                return false;
+
+            this.length = length;
+            this.check = check;
+            recordStart = position;
+            position += RECORD_HEADER_SIZE + length;
+            return true;
+        }//end next
+
+        // The id of the last record's order
+        long getId(){
+            return view.getLong(0);
+        }//end getId
+
+        // When the last record's order was written
+        long getTime(){
+            return view.getLong(8);
+        }//end getTime
+
+        // Hands the last record's order to a visitor
+        void visit(Visitor visitor){
+            visitor.order(view.getLong(0), view.getLong(8), view.getLong(16), view.getLong(24));
+
+            int lines = view.getInt(32);
+            int at = 36;
+            for(int i = 0; i < lines && at + 18 <= length; i++){
+                int titleLength = Math.min(view.getShort(at + 16) & 0xFFFF, length - at - 18);
+                visitor.line(view.getInt(at), record, at + 18, titleLength, view.getInt(at + 4), view.getLong(at + 8));
+                at += 18 + titleLength;
+            }
+        }//end visit
+
+        // Helper - Makes sure the buffer holds bytes from position on, false if
+        // they can't fit in it
+        private boolean fill(int bytes) throws IOException{
+
+            if(bytes > buffer.capacity())
+                return false;
+            if(position >= bufferStart && position + bytes <= bufferStart + buffer.limit())
+                return true;
+
+            // Read from the position on
+            buffer.clear();
+            bufferStart = position;
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            while(buffer.hasRemaining())
+                if(channel.read(buffer, bufferStart + buffer.position()) < 0)
+                    break;
+            buffer.limit(buffer.position());
+            buffer.position(0);
+
+            return bytes <= buffer.limit();
+        }//end fill
+
+    }//end inner class RecordReader
+
+}//end class OrderLedger
@@ -0,0 +1,242 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntUnaryOperator;
+
+// Saves on-hand quantity changes on a background thread. Checkouts submit the
+// books they changed and return right away; the writer drains everything that
+// queued up while it was busy and commits it as one batch (group commit). The
+// quantities are read when the batch is written rather than when a book is
+// submitted, so sessions submitting the same book in any order still save its
+// latest quantity. A batch the sink fails to write is kept and written again
+// on the next pass.
+public class PersistenceWriter implements Closeable {
+
+    // When the writer makes its batches durable
+    public enum Durability{
+
+        // Sync after every batch
+        BATCH,
+
+        // Sync at most once per interval
+        INTERVAL,
+
+        // Leave it to the operating system, only sync on close
+        NEVER;
+
+        // Reads the mode from the bookstore.durability system property, BATCH by default
+        public static Durability fromProperty(){
+            String mode = System.getProperty("bookstore.durability", "batch");
+            for(Durability d : values())
+                if(d.name().equalsIgnoreCase(mode))
+                    return d;
+            return BATCH;
+        }//end fromProperty
+
+    }//end enum Durability
+
+    // Where the batches are written
+    public interface Sink{
+
+        // Writes the latest quantity of each changed row
+        void write(int[] ids, int[] quantities, int count) throws IOException;
+
+        // Makes everything written so far durable
+        void sync() throws IOException;
+
+    }//end interface Sink
+
+    // Queued by close after the last id, never a book id since ids start at zero
+    private static final int CLOSE = -1;
+
+    // Batch and sync times, the rows written and the failed writes or syncs
+    private static final Histogram BATCH_NANOS = Metrics.histogram("persist.batch.nanos");
+    private static final Histogram SYNC_NANOS = Metrics.histogram("persist.sync.nanos");
+    private static final LongAdder ROWS_WRITTEN = Metrics.counter("persist.rows");
+    private static final LongAdder FAILURES = Metrics.counter("persist.failures");
+
+    // Times the last batch is tried on close before it is given up on
+    private static final int CLOSE_ATTEMPTS = 3;
+
+    // Where batches go
+    private final Sink sink;
+
+    // Reads the current quantity of a book
+    private final IntUnaryOperator quantities;
+
+    // When to sync
+    private final Durability durability;
+
+    // Milliseconds between syncs for INTERVAL durability
+    private final long intervalMillis;
+
+    // Ids of the books changed, waiting for the writer
+    private final BlockingQueue<Integer> queue = new LinkedBlockingQueue<>();
+
+    // The background writer
+    private final Thread thread;
+
+    // Set once close has been called
+    private volatile boolean closed;
+
+    // The error of the last write or sync, null once one succeeds
+    private volatile Exception failure;
+
+    // Creates and starts a writer saving the quantities read from quantities to the given sink
+    public PersistenceWriter(Sink sink, IntUnaryOperator quantities, Durability durability, long intervalMillis){
+        this.sink = sink;
+        this.quantities = quantities;
+        this.durability = durability;
+        this.intervalMillis = Math.max(1, intervalMillis);
+
+        thread = new Thread(this::run, "Bookstore persistence writer");
+        thread.setDaemon(true);
+        thread.start();
+    }//end PersistenceWriter
+
+    // Queues a book whose quantity changed, never blocks. Call it after the change.
+    public void submit(int id){
+
+        if(closed)
+            throw new IllegalStateException("Persistence writer is closed");
+        if(id < 0)
+            throw new IllegalArgumentException("No book has id " + id);
+
+        queue.add(id);
+
+    }//end submit
+
+    // Writes out everything still queued, syncs it and stops the writer
+    @Override
+    public void close(){
+
+        if(closed)
+            return;
+        closed = true;
+
+        queue.add(CLOSE);
+
+        // Wait for the final batch
+        boolean interrupted = false;
+        while(thread.isAlive()){
+            try {
+                thread.join();
+            } catch(InterruptedException ex){
+                interrupted = true;
+            }
+        }
+
+        if(interrupted)
+            Thread.currentThread().interrupt();
+
+    }//end close
+
+    // The error of the last write or sync, null if it succeeded. A failed batch
+    // is kept and tried again, so changes are only lost if it never succeeds.
+    public Exception getFailure(){
+        return failure;
+    }//end getFailure
+
+    // Helper - The writer loop
+    private void run(){
+
+        // Ids in the current batch, once each in first-changed order
+        Set<Integer> batch = new LinkedHashSet<>();
+        List<Integer> drained = new ArrayList<>();
+
+        long lastSync = System.nanoTime();
+        boolean dirty = false;
+        boolean done = false;
+        int failures = 0;
+
+        while(true){
+            try {
+                // Wait for work, waking up to honour the sync interval, or once
+                // closing just try the last batch again
+                Integer first = done ? null : queue.poll(intervalMillis, TimeUnit.MILLISECONDS);
+
+                if(first != null){
+                    // Take everything else that queued up meanwhile
+                    drained.add(first);
+                    queue.drainTo(drained);
+
+                    for(int id : drained){
+                        // Closing gets its own attempts at a batch that has been failing
+                        if(id == CLOSE){
+                            done = true;
+                            failures = 0;
+                        }
+                        else
+                            batch.add(id);
+                    }
+                    drained.clear();
+                }
+
+                // Commit the batch
+                if(!batch.isEmpty()){
+                    long start = System.nanoTime();
+                    writeBatch(batch);
+                    BATCH_NANOS.recordSince(start);
+                    ROWS_WRITTEN.add(batch.size());
+                    batch.clear();
+                    dirty = true;
+                }
+
+                // Sync according to the durability
+                long now = System.nanoTime();
+                boolean intervalDue = now - lastSync >= TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+                if(dirty && (done || durability == Durability.BATCH || (durability == Durability.INTERVAL && intervalDue))){
+                    sink.sync();
+                    SYNC_NANOS.recordSince(now);
+                    dirty = false;
+                    lastSync = now;
+                }
+
+                failures = 0;
+                failure = null;
+
+            } catch(InterruptedException ex){
+                // Only close stops the writer
+            } catch(IOException | RuntimeException ex){
+                // Keep the batch, and the need to sync, for the next pass
+                failures++;
+                failure = ex;
+                FAILURES.increment();
+                System.out.println("Quantities not saved, retrying: " + ex);
+            }
+
+            if(done && (failures == 0 || failures >= CLOSE_ATTEMPTS))
+                break;
+        }//end writer loop
+
+        if(failures > 0 && !batch.isEmpty())
+            System.out.println("Closed with " + batch.size() + " quantity changes not saved: " + failure);
+        else if(failures > 0)
+            System.out.println("Closed without syncing the last quantities: " + failure);
+
+    }//end run
+
+    // Helper - Reads the current quantity of each book in a batch and hands them to the sink
+    private void writeBatch(Set<Integer> batch) throws IOException{
+
+        int[] ids = new int[batch.size()];
+        int[] latest = new int[batch.size()];
+
+        int i = 0;
+        for(int id : batch){
+            ids[i] = id;
+            latest[i] = quantities.applyAsInt(id);
+            i++;
+        }
+
+        sink.write(ids, latest, i);
+    }//end writeBatch
+
+}//end class PersistenceWriter
@@ -0,0 +1,134 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+// A memory-mapped column of on-hand quantities, one fixed-width int slot per
+// catalog row. A checkout writes only the slots of the books it sold and then
+// forces the mapping, so the operating system writes back just the dirty pages.
+public class QuantityStore implements PersistenceWriter.Sink, Closeable {
+
+    // Identifies a quantity column file, "TBKQ"
+    private static final int MAGIC = 0x54424B51;
+
+    // Bumped whenever the column layout changes
+    private static final int VERSION = 1;
+
+    // Bytes in the header: magic, version, row count
+    private static final int HEADER_SIZE = 12;
+
+    // The open file
+    private final FileChannel channel;
+
+    // The mapping of the whole file
+    private final MappedByteBuffer buffer;
+
+    // The number of slots
+    private final int rows;
+
+    // True if the file already held a column for this many rows when opened
+    private final boolean initialized;
+
+    private QuantityStore(FileChannel channel, MappedByteBuffer buffer, int rows, boolean initialized){
+        this.channel = channel;
+        this.buffer = buffer;
+        this.rows = rows;
+        this.initialized = initialized;
+    }//end QuantityStore
+
+    // Opens the column file for the given number of rows, creating or resizing it if needed
+    public static QuantityStore open(File file, int rows) throws IOException{
+
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            long size = HEADER_SIZE + 4L * rows;
+
+            // Check whether the existing file already describes this catalog
+            boolean initialized = false;
+            if(channel.size() == size){
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                channel.read(header, 0);
+                header.flip();
+                initialized = header.getInt() == MAGIC && header.getInt() == VERSION && header.getInt() == rows;
+            }
+
+            // Start over with an empty column of the right size
+            if(!initialized)
+                channel.truncate(0);
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+            // Write the header for a new column
+            if(!initialized){
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, rows);
+            }
+
+            return new QuantityStore(channel, buffer, rows, initialized);
+        } catch(IOException | RuntimeException ex){
+            channel.close();
+            throw ex;
+        }
+
+    }//end open
+
+    // True if the column was read from an existing file rather than created
+    public boolean isInitialized(){
+        return initialized;
+    }//end isInitialized
+
+    public int getRows(){
+        return rows;
+    }//end getRows
+
+    // Returns the quantity in a row's slot
+    public int get(int row){
+        return buffer.getInt(slot(row));
+    }//end get
+
+    // Sets the quantity in a row's slot, it is not durable until force is called
+    public void set(int row, int quantity){
+        buffer.putInt(slot(row), quantity);
+    }//end set
+
+    // Writes each changed quantity into its row's slot
+    @Override
+    public void write(int[] ids, int[] quantities, int count){
+        for(int i = 0; i < count; i++)
+            set(ids[i], quantities[i]);
+    }//end write
+
+    // Forces the written slots to disk
+    @Override
+    public void sync(){
+        force();
+    }//end sync
+
+    // Flushes the dirty pages of the mapping to disk
+    public void force(){
+        buffer.force();
+    }//end force
+
+    @Override
+    public void close() throws IOException{
+        force();
+        channel.close();
+    }//end close
+
+    // Helper - Byte offset of a row's slot
+    private int slot(int row){
+        if(row < 0 || row >= rows)
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+        return HEADER_SIZE + 4 * row;
+    }//end slot
+
+}//end class QuantityStore
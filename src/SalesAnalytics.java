@@ -0,0 +1,105 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.io.*;
+import java.util.*;
+
+// Sales reports over the order ledger. The totals of the whole history are kept
+// as a rollup: it is built once by a parallel scan of the ledger and from then
+// on every order written is added to it as a listener of the ledger, so asking
+// for it never reads the ledger again. Reports of other time ranges scan just
+// the segments in the range.
+public class SalesAnalytics implements Closeable {
+
+    // The orders read
+    private final OrderLedger ledger;
+
+    // The stock sales are compared with
+    private final Inventory inventory;
+
+    // The totals of every order written, locked while it is changed or copied
+    private final SalesReport rollup = new SalesReport();
+
+    // Adds each new order to the rollup, on the ledger's writer thread
+    private final OrderLedger.Visitor listener = new OrderLedger.Visitor(){
+
+        @Override
+        public void order(long id, long timeMillis, long subtotalCents, long taxCents){
+            synchronized(rollup){
+                rollup.order(id, timeMillis, subtotalCents, taxCents);
+            }
+        }//end order
+
+        @Override
+        public void line(int bookId, byte[] title, int titleStart, int titleLength, int quantity, long unitCents){
+            synchronized(rollup){
+                rollup.line(bookId, title, titleStart, titleLength, quantity, unitCents);
+            }
+        }//end line
+
+    };
+
+    private SalesAnalytics(OrderLedger ledger, Inventory inventory){
+        this.ledger = ledger;
+        this.inventory = inventory;
+    }//end SalesAnalytics
+
+    // Builds the rollup of a ledger and keeps it up to date. Orders are listened
+    // for before the history is scanned, and the scan stops at the last order
+    // written before that, so no order is counted twice or missed.
+    public static SalesAnalytics open(OrderLedger ledger, Inventory inventory) throws IOException{
+
+        SalesAnalytics analytics = new SalesAnalytics(ledger, inventory);
+        long throughId = ledger.addListener(analytics.listener);
+        try {
+            List<SalesReport> parts = ledger.scan(Long.MIN_VALUE, Long.MAX_VALUE, throughId, SalesReport::new);
+            synchronized(analytics.rollup){
+                for(SalesReport part : parts)
+                    analytics.rollup.merge(part);
+            }
+        } catch(IOException | RuntimeException ex){
+            ledger.removeListener(analytics.listener);
+            throw ex;
+        }
+
+        return analytics;
+    }//end open
+
+    // Returns a copy of the totals of every order so far
+    public SalesReport getRollup(){
+        synchronized(rollup){
+            return rollup.copy();
+        }
+    }//end getRollup
+
+    // Totals the orders written between two times, inclusive, by scanning the ledger
+    public SalesReport scan(long fromMillis, long toMillis) throws IOException{
+        return SalesReport.merge(ledger.scan(fromMillis, toMillis, Long.MAX_VALUE, SalesReport::new));
+    }//end scan
+
+    // The share of a title's copies that have sold: copies sold over copies sold
+    // and still on hand in the catalog as it is now. Zero for a title that never sold.
+    public double getSellThrough(String title){
+
+        long sold;
+        synchronized(rollup){
+            sold = rollup.getCopiesSold(title);
+        }
+        if(sold == 0)
+            return 0;
+
+        Book book = inventory.findByTitle(title);
+        int onHand = book != null ? inventory.getOnHand(book.getId()) : 0;
+        return (double) sold / (sold + Math.max(0, onHand));
+    }//end getSellThrough
+
+    // Stops keeping the rollup up to date
+    @Override
+    public void close(){
+        ledger.removeListener(listener);
+    }//end close
+
+}//end class SalesAnalytics
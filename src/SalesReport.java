@@ -0,0 +1,405 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// Sales totals built from the order ledger: copies and revenue per title, and
+// orders, revenue and tax per hour. Books are told apart by their normalized
+// title, as their ids change when the catalog file is edited and reloaded.
+// Titles are numbered by interning their bytes the first time the report sees
+// them, and the totals are kept in long arrays indexed by that number and by
+// hour, so adding an order line never builds a String or boxes a key. Reports
+// of separate pieces of the ledger are merged into one. Hours are UTC hours
+// since the epoch.
+public class SalesReport implements OrderLedger.Visitor {
+
+    public static final long HOUR_MILLIS = 60 * 60 * 1000L;
+    public static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    // The normalized titles numbered in the order they were first seen
+    private final TitleDictionary.Builder keys = new TitleDictionary.Builder();
+
+    // The UTF-8 bytes of each title as first seen, back to back, and where each
+    // starts followed by the end of the last
+    private byte[] shown = new byte[1024];
+    private int[] shownOffsets = new int[1];
+
+    // Copies sold and revenue in cents, indexed by title number
+    private long[] copies = new long[0];
+    private long[] revenue = new long[0];
+
+    // Where a title is normalized
+    private byte[] normalized = new byte[256];
+
+    // Orders, revenue and tax in cents per hour, from firstHour on
+    private long firstHour;
+    private long[] hourOrders = new long[0];
+    private long[] hourRevenue = new long[0];
+    private long[] hourTax = new long[0];
+
+    // Totals
+    private long orders, lines, copiesSold, revenueCents, taxCents;
+
+    // When the report's orders were written
+    private long firstTime = Long.MAX_VALUE, lastTime = Long.MIN_VALUE;
+
+    @Override
+    public void order(long id, long timeMillis, long subtotalCents, long taxCents){
+
+        int hour = hour(Math.floorDiv(timeMillis, HOUR_MILLIS));
+        hourOrders[hour]++;
+        hourRevenue[hour] += subtotalCents;
+        hourTax[hour] += taxCents;
+
+        orders++;
+        revenueCents += subtotalCents;
+        this.taxCents += taxCents;
+        firstTime = Math.min(firstTime, timeMillis);
+        lastTime = Math.max(lastTime, timeMillis);
+    }//end order
+
+    @Override
+    public void line(int bookId, byte[] title, int titleStart, int titleLength, int quantity, long unitCents){
+
+        int key = key(title, titleStart, titleLength);
+        copies[key] += quantity;
+        revenue[key] += quantity * unitCents;
+
+        lines++;
+        copiesSold += quantity;
+    }//end line
+
+    // Adds another report's totals to this one
+    public void merge(SalesReport other){
+
+        // Number the other report's titles here, showing new ones as it does
+        int known = keys.size();
+        int[] keyOf = keys.internAll(other.keys);
+        ensureTitles(keys.size());
+
+        for(int k = 0; k < keyOf.length; k++){
+            int key = keyOf[k];
+            if(key >= known){
+                int start = other.shownOffsets[k];
+                show(key, other.shown, start, other.shownOffsets[k + 1] - start);
+            }
+            copies[key] += other.copies[k];
+            revenue[key] += other.revenue[k];
+        }
+
+        for(int h = 0; h < other.hourOrders.length; h++){
+            if(other.hourOrders[h] == 0)
+                continue;
+            int hour = hour(other.firstHour + h);
+            hourOrders[hour] += other.hourOrders[h];
+            hourRevenue[hour] += other.hourRevenue[h];
+            hourTax[hour] += other.hourTax[h];
+        }
+
+        orders += other.orders;
+        lines += other.lines;
+        copiesSold += other.copiesSold;
+        revenueCents += other.revenueCents;
+        taxCents += other.taxCents;
+        firstTime = Math.min(firstTime, other.firstTime);
+        lastTime = Math.max(lastTime, other.lastTime);
+    }//end merge
+
+    // Merges reports into the first of them, so its titles aren't numbered again
+    public static SalesReport merge(List<SalesReport> parts){
+        if(parts.isEmpty())
+            return new SalesReport();
+
+        SalesReport report = parts.get(0);
+        for(int i = 1; i < parts.size(); i++)
+            report.merge(parts.get(i));
+        return report;
+    }//end merge
+
+    // Returns a copy of this report
+    public SalesReport copy(){
+        SalesReport copy = new SalesReport();
+        copy.merge(this);
+        return copy;
+    }//end copy
+
+    public long getOrders(){
+        return orders;
+    }//end getOrders
+
+    public long getLines(){
+        return lines;
+    }//end getLines
+
+    public long getCopiesSold(){
+        return copiesSold;
+    }//end getCopiesSold
+
+    public long getRevenueCents(){
+        return revenueCents;
+    }//end getRevenueCents
+
+    public long getTaxCents(){
+        return taxCents;
+    }//end getTaxCents
+
+    // When the first and last orders were written, MAX_VALUE and MIN_VALUE when there are none
+    public long getFirstTime(){
+        return firstTime;
+    }//end getFirstTime
+
+    public long getLastTime(){
+        return lastTime;
+    }//end getLastTime
+
+    // Copies of a title sold, ignoring case and surrounding spaces
+    public long getCopiesSold(String title){
+        int key = find(title);
+        return key >= 0 ? copies[key] : 0;
+    }//end getCopiesSold
+
+    // Revenue from a title in cents, ignoring case and surrounding spaces
+    public long getRevenueCents(String title){
+        int key = find(title);
+        return key >= 0 ? revenue[key] : 0;
+    }//end getRevenueCents
+
+    // The n titles that sold the most copies, best first. Kept in a min-heap of
+    // n title numbers so the rest of the titles are only compared once.
+    public String[] getTopSellers(int n){
+
+        int[] heap = new int[Math.max(0, n)];
+        int size = 0;
+
+        for(int key = 0; key < keys.size() && n > 0; key++){
+            if(copies[key] == 0)
+                continue;
+            if(size < n){
+                heap[size] = key;
+                siftUp(heap, size++);
+            }
+            else if(better(key, heap[0])){
+                heap[0] = key;
+                siftDown(heap, size);
+            }
+        }
+
+        // Empty the heap worst first into the back of the result
+        String[] top = new String[size];
+        for(int i = size - 1; i >= 0; i--){
+            int key = heap[0];
+            top[i] = new String(shown, shownOffsets[key], shownOffsets[key + 1] - shownOffsets[key], StandardCharsets.UTF_8);
+            heap[0] = heap[--size];
+            siftDown(heap, size);
+        }
+        return top;
+    }//end getTopSellers
+
+    // Orders, revenue and tax for each hour with sales between two times, inclusive
+    public List<Period> getByHour(long fromMillis, long toMillis){
+        return periods(fromMillis, toMillis, HOUR_MILLIS);
+    }//end getByHour
+
+    // Orders, revenue and tax for each UTC day with sales between two times, inclusive
+    public List<Period> getByDay(long fromMillis, long toMillis){
+        return periods(fromMillis, toMillis, DAY_MILLIS);
+    }//end getByDay
+
+    // The totals of one hour or day
+    public static class Period{
+
+        private final long startMillis;
+        private long orders, revenueCents, taxCents;
+
+        Period(long startMillis){
+            this.startMillis = startMillis;
+        }//end Period
+
+        public long getStartMillis(){
+            return startMillis;
+        }//end getStartMillis
+
+        public long getOrders(){
+            return orders;
+        }//end getOrders
+
+        public long getRevenueCents(){
+            return revenueCents;
+        }//end getRevenueCents
+
+        public long getTaxCents(){
+            return taxCents;
+        }//end getTaxCents
+
+        public String toString(){
+            return new Date(startMillis) + ": " + orders + " orders, " + Money.format(revenueCents) +
+                   " + " + Money.format(taxCents) + " tax";
+        }//end toString
+
+    }//end inner class Period
+
+    // Helper - Adds up the hours with sales into periods of a length
+    private List<Period> periods(long fromMillis, long toMillis, long length){
+
+        List<Period> periods = new ArrayList<>();
+        Period period = null;
+
+        long from = Math.max(0, Math.floorDiv(fromMillis, HOUR_MILLIS) - firstHour);
+        long to = Math.min(hourOrders.length - 1L, Math.floorDiv(toMillis, HOUR_MILLIS) - firstHour);
+        for(long h = from; h <= to; h++){
+            int i = (int) h;
+            if(hourOrders[i] == 0)
+                continue;
+
+            long start = Math.floorDiv((firstHour + i) * HOUR_MILLIS, length) * length;
+            if(period == null || period.startMillis != start){
+                period = new Period(start);
+                periods.add(period);
+            }
+            period.orders += hourOrders[i];
+            period.revenueCents += hourRevenue[i];
+            period.taxCents += hourTax[i];
+        }
+
+        return periods;
+    }//end periods
+
+    // Helper - The number of the title in some UTF-8 bytes, numbering it the
+    // first time it is seen
+    private int key(byte[] title, int start, int length){
+
+        // Trim the title as String.trim does, only ASCII bytes are trimmed
+        while(length > 0 && (title[start] & 0xFF) <= ' '){
+            start++;
+            length--;
+        }
+        while(length > 0 && (title[start + length - 1] & 0xFF) <= ' ')
+            length--;
+
+        int known = keys.size();
+        int key = normalize(title, start, length);
+        if(key < known)
+            return key;
+
+        ensureTitles(key + 1);
+        show(key, title, start, length);
+        return key;
+    }//end key
+
+    // Helper - Interns the normalized form of trimmed title bytes and returns its
+    // number. ASCII is lowercased in place, anything else goes through Inventory.normalize.
+    private int normalize(byte[] title, int start, int length){
+
+        if(normalized.length < length)
+            normalized = new byte[Math.max(length, normalized.length * 2)];
+
+        for(int i = 0; i < length; i++){
+            byte b = title[start + i];
+            if(b < 0){
+                byte[] other = Inventory.normalize(new String(title, start, length, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+                return keys.intern(other, 0, other.length);
+            }
+            normalized[i] = b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+        }
+        return keys.intern(normalized, 0, length);
+    }//end normalize
+
+    // Helper - The number of a title, or -1 if the report hasn't seen it
+    private int find(String title){
+        byte[] key = Inventory.normalize(title).getBytes(StandardCharsets.UTF_8);
+        return keys.find(key, 0, key.length);
+    }//end find
+
+    // Helper - Grows the per-title arrays to hold a number of titles
+    private void ensureTitles(int titles){
+        if(titles > copies.length){
+            int capacity = Math.max(titles, Math.max(16, copies.length * 2));
+            shownOffsets = Arrays.copyOf(shownOffsets, capacity + 1);
+            copies = Arrays.copyOf(copies, capacity);
+            revenue = Arrays.copyOf(revenue, capacity);
+        }
+    }//end ensureTitles
+
+    // Helper - Keeps how a newly numbered title is shown, titles are numbered in order
+    private void show(int key, byte[] title, int start, int length){
+        int end = shownOffsets[key];
+        if(end + length > shown.length)
+            shown = Arrays.copyOf(shown, Math.max(shown.length * 2, end + length));
+        System.arraycopy(title, start, shown, end, length);
+        shownOffsets[key + 1] = end + length;
+    }//end show
+
+    // Helper - The index of an hour in the hour arrays, growing them to hold it
+    private int hour(long hour){
+
+        if(hourOrders.length == 0){
+            firstHour = hour;
+            grow(0, 24);
+        }
+        else if(hour < firstHour){
+            // Grow at the front, keeping room for a day more
+            int more = (int) Math.max(firstHour - hour, 24);
+            grow(more, hourOrders.length + more);
+            firstHour -= more;
+        }
+        else if(hour - firstHour >= hourOrders.length)
+            grow(0, (int) Math.max(hour - firstHour + 1, hourOrders.length * 2L));
+
+        return (int) (hour - firstHour);
+    }//end hour
+
+    // Helper - Resizes the hour arrays, moving the hours held up by shift
+    private void grow(int shift, int capacity){
+        hourOrders = shifted(hourOrders, shift, capacity);
+        hourRevenue = shifted(hourRevenue, shift, capacity);
+        hourTax = shifted(hourTax, shift, capacity);
+    }//end grow
+
+    // Helper - A copy of an array of a capacity with its values moved up by shift
+    private static long[] shifted(long[] values, int shift, int capacity){
+        long[] grown = new long[capacity];
+        System.arraycopy(values, 0, grown, shift, values.length);
+        return grown;
+    }//end shifted
+
+    // Helper - Whether a title sold more than another, the one seen first on a tie
+    private boolean better(int a, int b){
+        return copies[a] != copies[b] ? copies[a] > copies[b] : a < b;
+    }//end better
+
+    // Helper - Moves a new heap entry up past better entries, worst at the top
+    private void siftUp(int[] heap, int i){
+        while(i > 0){
+            int parent = (i - 1) / 2;
+            if(!better(heap[parent], heap[i]))
+                break;
+            int t = heap[parent];
+            heap[parent] = heap[i];
+            heap[i] = t;
+            i = parent;
+        }
+    }//end siftUp
+
+    // Helper - Moves the top entry down below worse entries
+    private void siftDown(int[] heap, int size){
+        int i = 0;
+        while(true){
+            int left = 2 * i + 1, right = left + 1, worst = i;
+            if(left < size && better(heap[worst], heap[left]))
+                worst = left;
+            if(right < size && better(heap[worst], heap[right]))
+                worst = right;
+            if(worst == i)
+                break;
+            int t = heap[worst];
+            heap[worst] = heap[i];
+            heap[i] = t;
+            i = worst;
+        }
+    }//end siftDown
+
+}//end class SalesReport
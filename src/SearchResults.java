@@ -0,0 +1,44 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import javax.swing.*;
+
+// The list model the store list shows while a search is typed: the books of an
+// inventory whose titles match, in title order. Books are looked up through the
+// index as the list paints them, so a search that matches millions of titles
+// costs no more than one that matches a few.
+public class SearchResults extends AbstractListModel<Book> {
+
+    // The books
+    private final Inventory inventory;
+
+    // The index the matches are positions of
+    private final TitleIndex index;
+
+    // The matching titles
+    private final TitleIndex.Matches matches;
+
+    public SearchResults(Inventory inventory, TitleIndex index, TitleIndex.Matches matches){
+        this.inventory = inventory;
+        this.index = index;
+        this.matches = matches;
+    }//end SearchResults
+
+    public TitleIndex.Matches getMatches(){
+        return matches;
+    }//end getMatches
+
+    @Override
+    public int getSize(){
+        return matches.size();
+    }//end getSize
+
+    @Override
+    public Book getElementAt(int index){
+        return inventory.view(this.index.getId(matches.getFrom() + index));
+    }//end getElementAt
+
+}//end class SearchResults
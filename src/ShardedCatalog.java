@@ -0,0 +1,383 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+// A catalog merged from several database files, such as one per publisher or
+// warehouse. The shards are loaded in parallel and merged in shard order: a
+// title that appears in more than one shard becomes a single book whose
+// quantity is the sum of its copies and whose price is picked by a PriceRule.
+//
+// Each row of each shard is an entry of the merged book it went into, so
+// quantity changes can be written back to the shards they belong to. Copies
+// sold are taken from the entries in shard order and copies added go to the
+// shard the title first appeared in, the book's owning shard. A batch of
+// changes only writes the shards it touched.
+public class ShardedCatalog {
+
+    // Which price a title takes when its shards disagree
+    public enum PriceRule{
+
+        // The price in the first shard holding the title
+        FIRST,
+
+        // The lowest price of any shard
+        LOWEST,
+
+        // The highest price of any shard
+        HIGHEST;
+
+        // Reads the rule from the bookstore.priceConflict system property, FIRST by default
+        public static PriceRule fromProperty(){
+            String rule = System.getProperty("bookstore.priceConflict", "first");
+            for(PriceRule r : values())
+                if(r.name().equalsIgnoreCase(rule))
+                    return r;
+            return FIRST;
+        }//end fromProperty
+
+        // Helper - The price kept when a shard's price differs from the current one
+        private int resolve(int current, int other){
+            switch(this){
+                case LOWEST: return Math.min(current, other);
+                case HIGHEST: return Math.max(current, other);
+                default: return current;
+            }
+        }//end resolve
+
+    }//end enum PriceRule
+
+    // The database files in shard order
+    private final List<File> shards;
+
+    // The rows of each shard
+    private final Inventory.RowSource[] shardRows;
+
+    // The first entry of each shard, followed by the total number of entries.
+    // Entry e is row e - shardStarts[s] of shard s.
+    private final int[] shardStarts;
+
+    // The merged books
+    private final CatalogStore rows;
+
+    // The first entry of each merged book, and the next entry of the same book or -1
+    private final int[] firstEntry;
+    private final int[] nextEntry;
+
+    // Titles whose prices differed between shards
+    private final int priceConflicts;
+
+    private ShardedCatalog(List<File> shards, Inventory.RowSource[] shardRows, int[] shardStarts,
+                           CatalogStore rows, int[] firstEntry, int[] nextEntry, int priceConflicts){
+        this.shards = shards;
+        this.shardRows = shardRows;
+        this.shardStarts = shardStarts;
+        this.rows = rows;
+        this.firstEntry = firstEntry;
+        this.nextEntry = nextEntry;
+        this.priceConflicts = priceConflicts;
+    }//end ShardedCatalog
+
+    // Returns the catalog files in a directory in name order, leaving out the
+    // output files the store writes
+    public static List<File> listShards(File dir) throws IOException{
+
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".txt") && !name.endsWith("Out.txt"));
+        if(files == null || files.length == 0)
+            throw new FileNotFoundException("No catalog files in " + dir);
+
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }//end listShards
+
+    // Loads the shards in parallel and merges them, resolving prices with the rule
+    // from the bookstore.priceConflict property
+    public static ShardedCatalog load(List<File> shards) throws IOException{
+        return load(shards, PriceRule.fromProperty());
+    }//end load
+
+    // Loads the shards in parallel and merges them in the given order
+    public static ShardedCatalog load(List<File> shards, PriceRule rule) throws IOException{
+
+        // Parse or map every shard at once on the fork-join pool
+        List<ForkJoinTask<Inventory.RowSource>> tasks = new ArrayList<>();
+        for(File shard : shards)
+            tasks.add(ForkJoinPool.commonPool().submit(() -> new DataManager(shard).loadRows()));
+
+        Inventory.RowSource[] shardRows = new Inventory.RowSource[shards.size()];
+        try {
+            for(int s = 0; s < shardRows.length; s++)
+                shardRows[s] = tasks.get(s).get();
+        } catch(ExecutionException ex){
+            if(ex.getCause() instanceof IOException)
+                throw (IOException) ex.getCause();
+            throw new IOException("Catalog shard not loaded", ex.getCause());
+        } catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Catalog load cancelled");
+        } finally {
+            for(ForkJoinTask<Inventory.RowSource> task : tasks)
+                task.cancel(false);
+        }
+
+        return merge(new ArrayList<>(shards), shardRows, rule);
+    }//end load
+
+    // Helper - Merges the rows of every shard into one book per title
+    private static ShardedCatalog merge(List<File> shards, Inventory.RowSource[] shardRows, PriceRule rule) throws IOException{
+
+        // Number the entries of each shard
+        int[] shardStarts = new int[shardRows.length + 1];
+        for(int s = 0; s < shardRows.length; s++)
+            shardStarts[s + 1] = Math.addExact(shardStarts[s], shardRows[s].size());
+        int entries = shardStarts[shardRows.length];
+
+        // The book of each normalized title
+        Map<String, Integer> books = new HashMap<>();
+
+        // By book: its first and last entry, price and summed quantity
+        int[] firstEntry = new int[1024];
+        int[] lastEntry = new int[1024];
+        int[] cents = new int[1024];
+        int[] quantities = new int[1024];
+        int[] nextEntry = new int[entries];
+        int size = 0;
+        int priceConflicts = 0;
+
+        for(int s = 0; s < shardRows.length; s++){
+            Inventory.RowSource part = shardRows[s];
+            for(int row = 0; row < part.size(); row++){
+
+                int entry = shardStarts[s] + row;
+                nextEntry[entry] = -1;
+
+                int price = (int) part.getPriceCents(row);
+                int quantity = part.getQuantity(row);
+                Integer book = books.putIfAbsent(Inventory.normalize(part.getName(row)), size);
+
+                if(book == null){
+                    // The first time the title is seen, grow the columns
+                    if(size == firstEntry.length){
+                        int capacity = size * 2;
+                        firstEntry = Arrays.copyOf(firstEntry, capacity);
+                        lastEntry = Arrays.copyOf(lastEntry, capacity);
+                        cents = Arrays.copyOf(cents, capacity);
+                        quantities = Arrays.copyOf(quantities, capacity);
+                    }
+                    firstEntry[size] = lastEntry[size] = entry;
+                    cents[size] = price;
+                    quantities[size] = quantity;
+                    size++;
+                }
+                else{
+                    // Chain the entry onto the book, sum the copies and settle the price
+                    nextEntry[lastEntry[book]] = entry;
+                    lastEntry[book] = entry;
+                    try {
+                        quantities[book] = Math.addExact(quantities[book], quantity);
+                    } catch(ArithmeticException ex){
+                        throw new IOException("Too many copies of \"" + part.getName(row) + "\" across " + shards);
+                    }
+                    if(price != cents[book]){
+                        priceConflicts++;
+                        cents[book] = rule.resolve(cents[book], price);
+                    }
+                }
+            }//end row loop
+        }//end shard loop
+
+        // The titles are no longer needed on the heap
+        books = null;
+
+        // Store the merged books off-heap, titled as in their owning shard
+        CatalogStore.Builder merged = new CatalogStore.Builder();
+        for(int book = 0; book < size; book++){
+            int entry = firstEntry[book];
+            int s = shardOf(shardStarts, entry);
+            byte[] title = shardRows[s].getName(entry - shardStarts[s]).getBytes(StandardCharsets.UTF_8);
+            merged.add(title, 0, title.length, cents[book], quantities[book]);
+        }
+
+        return new ShardedCatalog(shards, shardRows, shardStarts, merged.build(),
+                Arrays.copyOf(firstEntry, size), nextEntry, priceConflicts);
+    }//end merge
+
+    // The database files in shard order
+    public List<File> getShards(){
+        return Collections.unmodifiableList(shards);
+    }//end getShards
+
+    // The merged books, one per distinct title
+    public CatalogStore getRows(){
+        return rows;
+    }//end getRows
+
+    // The number of titles whose shards disagreed on the price
+    public int getPriceConflicts(){
+        return priceConflicts;
+    }//end getPriceConflicts
+
+    // Opens a sink that writes quantity changes back to the shards, each shard
+    // stored as the bookstore.storage property says. The stock of the merged
+    // inventory is set from what the shards hold, which in MAPPED and DELTA mode
+    // may be quantities saved since the shard files were written.
+    public PersistenceWriter.Sink openSink(Inventory inventory) throws IOException{
+
+        PersistenceWriter.Sink[] sinks = new PersistenceWriter.Sink[shardRows.length];
+        int[] entryQuantities = new int[shardStarts[shardRows.length]];
+
+        try {
+            for(int s = 0; s < shardRows.length; s++){
+
+                // Open the shard's own storage over a stock of just its rows
+                Inventory shard = new Inventory(shardRows[s]);
+                sinks[s] = new DataManager(shards.get(s)).openSink(shard);
+
+                for(int row = 0; row < shard.getRowCount(); row++)
+                    entryQuantities[shardStarts[s] + row] = shard.getOnHand(row);
+            }
+        } catch(IOException ex){
+            closeAll(sinks);
+            throw ex;
+        }
+
+        // Carry the shards' quantities over to the merged stock
+        for(int book = 0; book < firstEntry.length; book++){
+            int copies = 0;
+            for(int e = firstEntry[book]; e >= 0; e = nextEntry[e])
+                copies += entryQuantities[e];
+            if(copies != inventory.getOnHand(book))
+                inventory.setOnHand(book, copies);
+        }
+
+        return new ShardSink(sinks, entryQuantities);
+    }//end openSink
+
+    // Helper - The shard an entry belongs to
+    private static int shardOf(int[] shardStarts, int entry){
+        int s = Arrays.binarySearch(shardStarts, entry);
+
+        // Skip empty shards that start at the same entry
+        if(s >= 0){
+            while(s + 1 < shardStarts.length && shardStarts[s + 1] == entry)
+                s++;
+            return s;
+        }
+        return -s - 2;
+    }//end shardOf
+
+    // Helper - Closes every sink that can be closed, reporting failures
+    private static void closeAll(PersistenceWriter.Sink[] sinks){
+        for(PersistenceWriter.Sink sink : sinks){
+            if(sink instanceof Closeable){
+                try {
+                    ((Closeable) sink).close();
+                } catch(IOException ex){
+                    System.out.println(ex);
+                }
+            }
+        }
+    }//end closeAll
+
+    // Splits each batch of merged quantity changes into batches for the shards
+    // holding the changed entries and hands each shard only its own batch
+    private class ShardSink implements PersistenceWriter.Sink, Closeable{
+
+        // The storage of each shard
+        private final PersistenceWriter.Sink[] sinks;
+
+        // The copies each entry holds as last written
+        private final int[] entryQuantities;
+
+        // The batch being built for each shard
+        private final int[][] ids, quantities;
+        private final int[] counts;
+
+        // Shards written since they were last synced
+        private final boolean[] unsynced;
+
+        ShardSink(PersistenceWriter.Sink[] sinks, int[] entryQuantities){
+            this.sinks = sinks;
+            this.entryQuantities = entryQuantities;
+            ids = new int[sinks.length][16];
+            quantities = new int[sinks.length][16];
+            counts = new int[sinks.length];
+            unsynced = new boolean[sinks.length];
+        }//end ShardSink
+
+        @Override
+        public void write(int[] books, int[] changed, int count) throws IOException{
+
+            // Move each book's change onto its entries
+            for(int i = 0; i < count; i++){
+
+                int book = books[i];
+                int copies = 0;
+                for(int e = firstEntry[book]; e >= 0; e = nextEntry[e])
+                    copies += entryQuantities[e];
+
+                int delta = changed[i] - copies;
+                if(delta > 0)
+                    // Copies added go to the owning shard
+                    stage(firstEntry[book], entryQuantities[firstEntry[book]] + delta);
+                else{
+                    // Copies sold are taken from the shards in order
+                    for(int e = firstEntry[book]; e >= 0 && delta < 0; e = nextEntry[e]){
+                        int taken = Math.min(entryQuantities[e], -delta);
+                        if(taken > 0){
+                            stage(e, entryQuantities[e] - taken);
+                            delta += taken;
+                        }
+                    }
+                }
+            }//end change loop
+
+            // Write only the shards that changed
+            for(int s = 0; s < sinks.length; s++){
+                if(counts[s] > 0){
+                    sinks[s].write(ids[s], quantities[s], counts[s]);
+                    counts[s] = 0;
+                    unsynced[s] = true;
+                }
+            }
+        }//end write
+
+        @Override
+        public void sync() throws IOException{
+            for(int s = 0; s < sinks.length; s++){
+                if(unsynced[s]){
+                    sinks[s].sync();
+                    unsynced[s] = false;
+                }
+            }
+        }//end sync
+
+        @Override
+        public void close(){
+            closeAll(sinks);
+        }//end close
+
+        // Helper - Adds an entry's new quantity to its shard's batch
+        private void stage(int entry, int quantity){
+
+            entryQuantities[entry] = quantity;
+
+            int s = shardOf(shardStarts, entry);
+            if(counts[s] == ids[s].length){
+                ids[s] = Arrays.copyOf(ids[s], counts[s] * 2);
+                quantities[s] = Arrays.copyOf(quantities[s], counts[s] * 2);
+            }
+            ids[s][counts[s]] = entry - shardStarts[s];
+            quantities[s][counts[s]] = quantity;
+            counts[s]++;
+        }//end stage
+
+    }//end inner class ShardSink
+
+}//end class ShardedCatalog
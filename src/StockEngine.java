@@ -0,0 +1,147 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.util.concurrent.atomic.*;
+
+// Lock-free stock counters shared by every shopping session. Each book id has an
+// available count and a reserved count. A cart reserves copies by moving them from
+// available to reserved with compare-and-set, so two sessions can never take the
+// same copy; releasing moves them back and committing a sale drops them from
+// reserved. The on-hand quantity is always available plus reserved.
+public class StockEngine {
+
+    // Copies that can still be reserved, per id
+    private final AtomicIntegerArray available;
+
+    // Copies held by carts that haven't checked out, per id
+    private final AtomicIntegerArray reserved;
+
+    // Running totals for reporting
+    private final LongAdder reservations = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder releases = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+
+    // Creates counters for the given number of ids, all zero
+    public StockEngine(int size){
+        available = new AtomicIntegerArray(size);
+        reserved = new AtomicIntegerArray(size);
+    }//end StockEngine
+
+    // Returns counters for more ids, starting with a copy of these. Only meant for
+    // loading or reloading the catalog, while no session is changing the stock.
+    public StockEngine copyOf(int size){
+
+        StockEngine copy = new StockEngine(size);
+        for(int id = 0; id < Math.min(size, size()); id++){
+            copy.available.set(id, available.get(id));
+            copy.reserved.set(id, reserved.get(id));
+        }
+
+        return copy;
+    }//end copyOf
+
+    public int size(){
+        return available.length();
+    }//end size
+
+    // Copies of a book that can still be reserved
+    public int getAvailable(int id){
+        return available.get(id);
+    }//end getAvailable
+
+    // Copies of a book held in carts
+    public int getReserved(int id){
+        return reserved.get(id);
+    }//end getReserved
+
+    // Copies of a book physically on hand, reserved or not
+    public int getOnHand(int id){
+        return available.get(id) + reserved.get(id);
+    }//end getOnHand
+
+    // Sets the on-hand quantity of a book, keeping its reservations. Only meant for
+    // loading and reloading while no session is changing the same book.
+    public void setOnHand(int id, int quantity){
+        available.set(id, quantity - reserved.get(id));
+    }//end setOnHand
+
+    // Reserves copies of a book if enough are available, never overselling
+    public boolean reserve(int id, int count){
+
+        if(count <= 0)
+            throw new IllegalArgumentException("Count must be positive: " + count);
+
+        // Take the copies from available
+        int current;
+        do {
+            current = available.get(id);
+            if(current < count){
+                rejections.increment();
+                return false;
+            }
+        } while(!available.compareAndSet(id, current, current - count));
+
+        // And hold them for the cart
+        reserved.addAndGet(id, count);
+        reservations.increment();
+        return true;
+    }//end reserve
+
+    // Puts reserved copies back so other sessions can take them
+    public void release(int id, int count){
+        takeReserved(id, count);
+        available.addAndGet(id, count);
+        releases.increment();
+    }//end release
+
+    // Sells reserved copies, removing them from the on-hand quantity
+    public void commit(int id, int count){
+        takeReserved(id, count);
+        commits.increment();
+    }//end commit
+
+    // True if no counter is negative. Counters can only be checked against each
+    // other once the sessions have stopped.
+    public boolean checkInvariants(){
+        for(int id = 0; id < size(); id++)
+            if(available.get(id) < 0 || reserved.get(id) < 0)
+                return false;
+        return true;
+    }//end checkInvariants
+
+    public long getReservations(){
+        return reservations.sum();
+    }//end getReservations
+
+    public long getRejections(){
+        return rejections.sum();
+    }//end getRejections
+
+    public long getReleases(){
+        return releases.sum();
+    }//end getReleases
+
+    public long getCommits(){
+        return commits.sum();
+    }//end getCommits
+
+    // Helper - Removes copies from reserved, failing if the cart never held them
+    private void takeReserved(int id, int count){
+
+        if(count <= 0)
+            throw new IllegalArgumentException("Count must be positive: " + count);
+
+        int current;
+        do {
+            current = reserved.get(id);
+            if(current < count)
+                throw new IllegalStateException("Only " + current + " copies of book " + id + " are reserved, not " + count);
+        } while(!reserved.compareAndSet(id, current, current - count));
+
+    }//end takeReserved
+
+}//end class StockEngine
@@ -0,0 +1,473 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+// A small HTTP front end over a StoreService using the JDK's built-in server.
+// Each request runs on its own virtual thread when the JDK has them (21 and
+// later) and on a cached thread pool otherwise. Sessions are named by the
+// "session" query parameter and answers are JSON. A session starts with its
+// first add to the cart and ends at checkout, on clear, or once it has gone
+// unused for the bookstore.sessionTimeout system property in milliseconds, 30
+// minutes by default, when what its cart held goes back to the stock.
+//
+//   GET  /books?offset=0&limit=50           a page of the catalog
+//   GET  /books/{id}                        one book
+//   GET  /cart?session=s                    a session's cart
+//   POST /cart/add?session=s&id=1&count=2   reserve copies into the cart
+//   POST /cart/remove?session=s&id=1&count=1
+//   POST /cart/clear?session=s
+//   POST /cart/checkout?session=s           buy the cart, ending the session
+//   GET  /orders?from=0&to=t&limit=50       orders checked out between two times,
+//                                           in milliseconds since the epoch
+//   GET  /sales?by=day&top=10&from=0&to=t   sales totals by hour or UTC day and the
+//                                           best sellers, of every order without a range
+public class StoreServer implements Closeable {
+
+    // The most books one page of the catalog returns
+    private static final int MAX_PAGE = 500;
+
+    // Milliseconds a session may go unused before it is ended
+    private static final long SESSION_TIMEOUT_MILLIS = Long.getLong("bookstore.sessionTimeout", 30 * 60 * 1000L);
+
+    // The store being served
+    private final StoreService store;
+
+    // The JDK server
+    private final HttpServer server;
+
+    // Runs the requests
+    private final ExecutorService executor;
+
+    // Ends idle sessions
+    private final ScheduledExecutorService expiry = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Bookstore session expiry");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Creates a server for the store on the given port of localhost, call start to serve
+    public StoreServer(StoreService store, int port) throws IOException{
+        this.store = store;
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        executor = newExecutor();
+        server.setExecutor(executor);
+
+        server.createContext("/books", this::books);
+        server.createContext("/cart", this::cart);
+        server.createContext("/cart/add", this::add);
+        server.createContext("/cart/remove", this::remove);
+        server.createContext("/cart/clear", this::clear);
+        server.createContext("/cart/checkout", this::checkout);
+        server.createContext("/orders", this::orders);
+        server.createContext("/sales", this::sales);
+    }//end StoreServer
+
+    public void start(){
+        server.start();
+
+        // Look for idle sessions a few times per timeout
+        long period = Math.max(1, SESSION_TIMEOUT_MILLIS / 4);
+        expiry.scheduleWithFixedDelay(() -> store.expireSessions(SESSION_TIMEOUT_MILLIS),
+                period, period, TimeUnit.MILLISECONDS);
+    }//end start
+
+    // The port the server is listening on
+    public int getPort(){
+        return server.getAddress().getPort();
+    }//end getPort
+
+    // Stops accepting requests and waits briefly for the running ones
+    @Override
+    public void close(){
+        expiry.shutdownNow();
+        server.stop(1);
+        executor.shutdown();
+    }//end close
+
+    // Helper - GET /books and /books/{id}
+    private void books(HttpExchange ex) throws IOException{
+
+        if(!require(ex, "GET"))
+            return;
+
+        Inventory inventory = store.getInventory();
+        String path = ex.getRequestURI().getPath();
+
+        // A single book
+        if(path.startsWith("/books/")){
+            Book b = findBook(path.substring("/books/".length()));
+            if(b == null)
+                send(ex, 404, error("No such book"));
+            else
+                send(ex, 200, book(b));
+            return;
+        }
+
+        // A page of books
+        Map<String, String> query = query(ex);
+        int offset = Math.max(0, intParam(query, "offset", 0));
+        int limit = Math.min(MAX_PAGE, Math.max(0, intParam(query, "limit", 50)));
+        int end = (int) Math.min(inventory.getSize(), (long) offset + limit);
+
+        StringBuilder sb = new StringBuilder("{\"total\":").append(inventory.getSize()).append(",\"books\":[");
+        for(int i = offset; i < end; i++){
+            if(i > offset)
+                sb.append(',');
+            sb.append(book(inventory.getElementAt(i)));
+        }
+        sb.append("]}");
+
+        send(ex, 200, sb.toString());
+    }//end books
+
+    // Helper - GET /cart
+    private void cart(HttpExchange ex) throws IOException{
+
+        if(!require(ex, "GET"))
+            return;
+
+        // Looking at a cart doesn't start a session
+        String session = session(ex);
+        if(session != null){
+            Cart cart = store.findCart(session);
+            send(ex, 200, cart(cart != null ? cart : new Cart()));
+        }
+    }//end cart
+
+    // Helper - POST /cart/add
+    private void add(HttpExchange ex) throws IOException{
+
+        if(!require(ex, "POST"))
+            return;
+
+        String session = session(ex);
+        if(session == null)
+            return;
+
+        Map<String, String> query = query(ex);
+        Book b = findBook(query.get("id"));
+        int count = intParam(query, "count", 1);
+
+        if(b == null)
+            send(ex, 404, error("No such book"));
+        else if(count <= 0)
+            send(ex, 400, error("count must be positive"));
+        else{
+            Cart cart = store.getCart(session);
+            if(store.addToCart(cart, b, count))
+                send(ex, 200, cart(cart));
+            else
+                send(ex, 409, error("Not enough copies in stock"));
+        }
+    }//end add
+
+    // Helper - POST /cart/remove
+    private void remove(HttpExchange ex) throws IOException{
+
+        if(!require(ex, "POST"))
+            return;
+
+        String session = session(ex);
+        if(session == null)
+            return;
+
+        Map<String, String> query = query(ex);
+        Book b = findBook(query.get("id"));
+
+        if(b == null)
+            send(ex, 404, error("No such book"));
+        else{
+            Cart cart = store.findCart(session);
+            if(cart != null)
+                store.removeFromCart(cart, b, intParam(query, "count", 1));
+            send(ex, 200, cart(cart != null ? cart : new Cart()));
+        }
+    }//end remove
+
+    // Helper - POST /cart/clear
+    private void clear(HttpExchange ex) throws IOException{
+
+        if(!require(ex, "POST"))
+            return;
+
+        String session = session(ex);
+        if(session != null){
+            store.closeSession(session);
+            send(ex, 200, cart(new Cart()));
+        }
+    }//end clear
+
+    // Helper - POST /cart/checkout
+    private void checkout(HttpExchange ex) throws IOException{
+
+        if(!require(ex, "POST"))
+            return;
+
+        String session = session(ex);
+        if(session == null)
+            return;
+
+        Cart cart = store.findCart(session);
+        StoreService.Receipt receipt = cart == null ? null : store.checkout(cart);
+        store.closeSession(session);
+
+        if(receipt == null)
+            send(ex, 409, error("Cart is empty"));
+        else
+            send(ex, 200, "{\"copies\":" + receipt.getCopies() +
+                          ",\"subtotal\":\"" + receipt.getSubtotal() +
+                          "\",\"salesTax\":\"" + receipt.getSalesTax() +
+                          "\",\"total\":\"" + receipt.getTotal() + "\"}");
+    }//end checkout
+
+    // Helper - GET /orders
+    private void orders(HttpExchange ex) throws IOException{
+
+        if(!require(ex, "GET"))
+            return;
+
+        Map<String, String> query = query(ex);
+        long from = longParam(query, "from", 0);
+        long to = longParam(query, "to", Long.MAX_VALUE);
+        int limit = Math.min(MAX_PAGE, Math.max(0, intParam(query, "limit", 50)));
+
+        StringBuilder sb = new StringBuilder("{\"orders\":[");
+        int i = 0;
+        for(OrderLedger.Order order : store.findOrders(from, to, limit)){
+            if(i++ > 0)
+                sb.append(',');
+            sb.append(order(order));
+        }
+        sb.append("]}");
+
+        send(ex, 200, sb.toString());
+    }//end orders
+
+    // Helper - GET /sales
+    private void sales(HttpExchange ex) throws IOException{
+
+        if(!require(ex, "GET"))
+            return;
+
+        Map<String, String> query = query(ex);
+        long from = longParam(query, "from", Long.MIN_VALUE);
+        long to = longParam(query, "to", Long.MAX_VALUE);
+        int top = Math.min(MAX_PAGE, Math.max(0, intParam(query, "top", 10)));
+        boolean byHour = "hour".equals(query.get("by"));
+
+        // The rollup answers for the whole history, a range is scanned
+        SalesAnalytics analytics = store.getAnalytics();
+        SalesReport report = query.containsKey("from") || query.containsKey("to") ?
+                analytics.scan(from, to) : analytics.getRollup();
+
+        StringBuilder sb = new StringBuilder("{\"orders\":").append(report.getOrders())
+                .append(",\"copies\":").append(report.getCopiesSold())
+                .append(",\"revenue\":\"").append(Money.format(report.getRevenueCents()))
+                .append("\",\"salesTax\":\"").append(Money.format(report.getTaxCents()))
+                .append("\",\"periods\":[");
+
+        int i = 0;
+        for(SalesReport.Period period : byHour ? report.getByHour(from, to) : report.getByDay(from, to)){
+            if(i++ > 0)
+                sb.append(',');
+            sb.append("{\"start\":").append(period.getStartMillis())
+              .append(",\"orders\":").append(period.getOrders())
+              .append(",\"revenue\":\"").append(Money.format(period.getRevenueCents()))
+              .append("\",\"salesTax\":\"").append(Money.format(period.getTaxCents())).append("\"}");
+        }
+
+        sb.append("],\"top\":[");
+        Inventory inventory = store.getInventory();
+        i = 0;
+        for(String title : report.getTopSellers(top)){
+            if(i++ > 0)
+                sb.append(',');
+
+            // The book's id in the catalog as it is now, -1 once it is gone
+            Book book = inventory.findByTitle(title);
+            sb.append("{\"id\":").append(book != null ? book.getId() : -1)
+              .append(",\"title\":").append(quote(title))
+              .append(",\"copies\":").append(report.getCopiesSold(title))
+              .append(",\"revenue\":\"").append(Money.format(report.getRevenueCents(title)))
+              .append("\",\"sellThrough\":").append(String.format(Locale.ROOT, "%.3f", analytics.getSellThrough(title)))
+              .append('}');
+        }
+        sb.append("]}");
+
+        send(ex, 200, sb.toString());
+    }//end sales
+
+    // Helper - Runs each request on a virtual thread when the JDK supports them
+    private static ExecutorService newExecutor(){
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch(ReflectiveOperationException ex){
+            return Executors.newCachedThreadPool();
+        }
+    }//end newExecutor
+
+    // Helper - Looks up a book by its id parameter, without holding up the store list
+    private Book findBook(String id){
+        try {
+            return id == null ? null : store.getInventory().find(Integer.parseInt(id));
+        } catch(NumberFormatException ex){
+            return null;
+        }
+    }//end findBook
+
+    // Helper - Sends 405 unless the request used the given method
+    private static boolean require(HttpExchange ex, String method) throws IOException{
+        if(ex.getRequestMethod().equalsIgnoreCase(method))
+            return true;
+
+        send(ex, 405, error("Use " + method));
+        return false;
+    }//end require
+
+    // Helper - The session parameter, sends 400 and returns null if it is missing
+    private static String session(HttpExchange ex) throws IOException{
+        String session = query(ex).get("session");
+        if(session == null || session.isEmpty()){
+            send(ex, 400, error("session is required"));
+            return null;
+        }
+        return session;
+    }//end session
+
+    // Helper - Decodes the query string
+    private static Map<String, String> query(HttpExchange ex){
+
+        Map<String, String> params = new HashMap<>();
+        String raw = ex.getRequestURI().getRawQuery();
+        if(raw == null)
+            return params;
+
+        try {
+            for(String pair : raw.split("&")){
+                int eq = pair.indexOf('=');
+                if(eq > 0)
+                    params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+                               URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+        } catch(UnsupportedEncodingException ex2){
+            throw new IllegalStateException(ex2);
+        }
+
+        return params;
+    }//end query
+
+    // Helper - An int parameter or its default
+    private static int intParam(Map<String, String> query, String name, int defaultValue){
+        try {
+            String value = query.get(name);
+            return value == null ? defaultValue : Integer.parseInt(value);
+        } catch(NumberFormatException ex){
+            return defaultValue;
+        }
+    }//end intParam
+
+    // Helper - A long parameter or its default
+    private static long longParam(Map<String, String> query, String name, long defaultValue){
+        try {
+            String value = query.get(name);
+            return value == null ? defaultValue : Long.parseLong(value);
+        } catch(NumberFormatException ex){
+            return defaultValue;
+        }
+    }//end longParam
+
+    // Helper - A book as JSON
+    private static String book(Book b){
+        return "{\"id\":" + b.getId() +
+               ",\"title\":" + quote(b.getName()) +
+               ",\"price\":\"" + b.getPrice() +
+               "\",\"available\":" + b.getQuantity() + "}";
+    }//end book
+
+    // Helper - A cart as JSON, read while the cart is locked
+    private static String cart(Cart cart){
+        synchronized(cart){
+            StringBuilder sb = new StringBuilder("{\"copies\":").append(cart.getCopies())
+                    .append(",\"subtotal\":\"").append(Money.format(cart.getTotalCents()))
+                    .append("\",\"lines\":[");
+
+            int i = 0;
+            for(CartLine line : cart.getLines()){
+                if(i++ > 0)
+                    sb.append(',');
+                sb.append("{\"id\":").append(line.getBook().getId())
+                  .append(",\"title\":").append(quote(line.getBook().getName()))
+                  .append(",\"quantity\":").append(line.getQuantity()).append('}');
+            }
+
+            return sb.append("]}").toString();
+        }
+    }//end cart
+
+    // Helper - An order as JSON
+    private static String order(OrderLedger.Order order){
+        StringBuilder sb = new StringBuilder("{\"id\":").append(order.getId())
+                .append(",\"time\":").append(order.getTimeMillis())
+                .append(",\"subtotal\":\"").append(Money.format(order.getSubtotalCents()))
+                .append("\",\"salesTax\":\"").append(Money.format(order.getTaxCents()))
+                .append("\",\"total\":\"").append(Money.format(order.getTotalCents()))
+                .append("\",\"lines\":[");
+
+        int i = 0;
+        for(OrderLedger.Line line : order.getLines()){
+            if(i++ > 0)
+                sb.append(',');
+            sb.append("{\"id\":").append(line.getBookId())
+              .append(",\"title\":").append(quote(line.getTitle()))
+              .append(",\"quantity\":").append(line.getQuantity())
+              .append(",\"price\":\"").append(Money.format(line.getUnitCents())).append("\"}");
+        }
+
+        return sb.append("]}").toString();
+    }//end order
+
+    // Helper - An error as JSON
+    private static String error(String message){
+        return "{\"error\":" + quote(message) + "}";
+    }//end error
+
+    // Helper - A JSON string literal
+    private static String quote(String s){
+
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for(int i = 0; i < s.length(); i++){
+            char c = s.charAt(i);
+            if(c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if(c < ' ')
+                sb.append(String.format("\\u%04x", (int) c));
+            else
+                sb.append(c);
+        }
+
+        return sb.append('"').toString();
+    }//end quote
+
+    // Helper - Sends a JSON response and closes the exchange
+    private static void send(HttpExchange ex, int status, String body) throws IOException{
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length);
+
+        try(OutputStream out = ex.getResponseBody()){
+            out.write(bytes);
+        }
+    }//end send
+
+}//end class StoreServer
@@ -0,0 +1,630 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.*;
+import java.util.function.LongSupplier;
+
+// The store without any user interface: the catalog, a cart per shopping session
+// and checkout. The Swing window and the HTTP server are both front ends over it.
+// Carts may be used from many threads; each cart is locked while it is changed and
+// the stock itself is lock-free. Reloading the catalog file is the one thing that
+// waits for every cart change to finish, and they wait for it. Sessions left
+// unused can be expired, which returns what their carts hold to the stock.
+public class StoreService implements Closeable {
+
+    // Cart changes and checkouts across every session
+    private static final LongAdder CART_ADDS = Metrics.counter("cart.adds");
+    private static final LongAdder CART_ADDS_REJECTED = Metrics.counter("cart.adds.rejected");
+    private static final LongAdder CART_REMOVES = Metrics.counter("cart.removes");
+    private static final LongAdder SESSIONS_EXPIRED = Metrics.counter("store.sessions.expired");
+    private static final Histogram CHECKOUT_NANOS = Metrics.histogram("checkout.nanos");
+    private static final Histogram CHECKOUT_COPIES = Metrics.histogram("checkout.copies");
+    private static final Histogram CATALOG_APPLY_NANOS = Metrics.histogram("catalog.apply.nanos");
+    private static final LongAdder CATALOG_ROWS_APPLIED = Metrics.counter("catalog.rows.applied");
+
+    // The totals of a checkout
+    public static class Receipt{
+
+        private final Money subtotal;
+        private final Money salesTax;
+        private final Money total;
+
+        // Copies bought
+        private final int copies;
+
+        Receipt(Money subtotal, int copies){
+            this.subtotal = subtotal;
+            this.salesTax = subtotal.salesTax();
+            this.total = subtotal.plus(salesTax);
+            this.copies = copies;
+        }//end Receipt
+
+        public Money getSubtotal(){
+            return subtotal;
+        }//end getSubtotal
+
+        public Money getSalesTax(){
+            return salesTax;
+        }//end getSalesTax
+
+        public Money getTotal(){
+            return total;
+        }//end getTotal
+
+        public int getCopies(){
+            return copies;
+        }//end getCopies
+
+        public String toString(){
+            return "Subtotal: $" + subtotal +
+                   "\nSales Tax: $" + salesTax +
+                   "\nTotal: $" + total;
+        }//end toString
+
+    }//end inner class Receipt
+
+    // A shopping session's cart and when it was last used
+    private static class Session{
+
+        private final Cart cart = new Cart();
+
+        // System.nanoTime of the last request for the cart
+        private volatile long lastUsed = System.nanoTime();
+
+    }//end inner class Session
+
+    // The database file the catalog came from, or the directory of its shards
+    private final File database;
+
+    // The catalog and its stock
+    private final Inventory inventory;
+
+    // Where the saved quantities go, a text file, a mapped column, a change log or
+    // the shards. Replaced along with the writer when the catalog is reloaded.
+    private PersistenceWriter.Sink sink;
+
+    // Saves quantity changes in the background
+    private PersistenceWriter persistenceWriter;
+
+    // Records every checkout as an order
+    private final OrderLedger ledger;
+
+    // Sales reports over the ledger, built the first time they are asked for
+    private SalesAnalytics analytics;
+
+    // Held to read by cart changes and checkouts, and to write while a reload is applied
+    private final ReadWriteLock stockLock = new ReentrantReadWriteLock();
+
+    // The cart of each session
+    private final ConcurrentMap<String, Session> sessions = new ConcurrentHashMap<>();
+
+    // Gauges published for this store, read only when a JMX client asks
+    private final LongSupplier inventoryValue = this::getInventoryValueCents;
+    private final LongSupplier inventoryCopies = this::getInventoryCopies;
+    private final LongSupplier sessionCount = this::getSessionCount;
+
+    private StoreService(File database, Inventory inventory, PersistenceWriter.Sink sink) throws IOException{
+        this.database = database;
+        this.inventory = inventory;
+        this.sink = sink;
+        this.ledger = OrderLedger.open(new DataManager(database).getLedgerDirectory());
+
+        // Start saving checkouts in the background
+        this.persistenceWriter = newWriter(sink);
+
+        Metrics.gauge("inventory.value.cents", inventoryValue);
+        Metrics.gauge("inventory.copies", inventoryCopies);
+        Metrics.gauge("store.sessions", sessionCount);
+    }//end StoreService
+
+    // Loads a database and starts saving its checkouts. The storage mode and
+    // durability come from the bookstore.storage, bookstore.durability and
+    // bookstore.syncInterval system properties. A directory is opened as a
+    // catalog sharded over the database files in it.
+    public static StoreService open(File database) throws IOException{
+        if(database.isDirectory())
+            return openShards(ShardedCatalog.listShards(database));
+        return open(database, new DataManager(database).loadInventory());
+    }//end open
+
+    // Loads several database files in parallel and opens them as one merged catalog
+    public static StoreService openShards(List<File> shards) throws IOException{
+        ShardedCatalog catalog = ShardedCatalog.load(shards);
+        return open(catalog, new Inventory(catalog.getRows()));
+    }//end openShards
+
+    // Starts saving checkouts back to the shards of a merged catalog, for an
+    // inventory of its rows
+    public static StoreService open(ShardedCatalog catalog, Inventory inventory) throws IOException{
+        File database = catalog.getShards().get(0).getAbsoluteFile().getParentFile();
+        return new StoreService(database, inventory, catalog.openSink(inventory));
+    }//end open
+
+    // Starts saving checkouts for an inventory already loaded from the database
+    public static StoreService open(File database, Inventory inventory) throws IOException{
+
+        // Map the quantity column for this database, write the text file or log the changes
+        return new StoreService(database, inventory, new DataManager(database).openSink(inventory));
+    }//end open
+
+    public File getDatabase(){
+        return database;
+    }//end getDatabase
+
+    public Inventory getInventory(){
+        return inventory;
+    }//end getInventory
+
+    // Returns up to limit orders checked out between two times, inclusive, oldest first
+    public List<OrderLedger.Order> findOrders(long fromMillis, long toMillis, int limit) throws IOException{
+        return ledger.find(fromMillis, toMillis, limit);
+    }//end findOrders
+
+    // Returns the sales reports of the ledger, scanning it the first time
+    public synchronized SalesAnalytics getAnalytics() throws IOException{
+        if(analytics == null)
+            analytics = SalesAnalytics.open(ledger, inventory);
+        return analytics;
+    }//end getAnalytics
+
+    // Returns the cart of a session, creating it on first use
+    public Cart getCart(String session){
+        return use(session, true);
+    }//end getCart
+
+    // Returns the cart of a session, or null if it has none
+    public Cart findCart(String session){
+        return use(session, false);
+    }//end findCart
+
+    // Returns the number of open sessions
+    public int getSessionCount(){
+        return sessions.size();
+    }//end getSessionCount
+
+    // Ends the sessions not used for longer than idleMillis, returning what their
+    // carts hold to the stock. Returns how many were ended.
+    public int expireSessions(long idleMillis){
+
+        long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        int expired = 0;
+
+        for(String id : sessions.keySet()){
+
+            // Take the session out only if it is still idle, so a request using
+            // it meanwhile keeps it
+            Session[] idle = new Session[1];
+            sessions.computeIfPresent(id, (k, s) -> {
+                if(s.lastUsed - cutoff >= 0)
+                    return s;
+                idle[0] = s;
+                return null;
+            });
+
+            if(idle[0] != null){
+                clearCart(idle[0].cart);
+                expired++;
+            }
+        }
+
+        SESSIONS_EXPIRED.add(expired);
+        return expired;
+    }//end expireSessions
+
+    // The value of every copy on hand, in cents
+    public long getInventoryValueCents(){
+        long cents = 0;
+        for(int id = 0; id < inventory.getRowCount(); id++)
+            cents += inventory.getOnHand(id) * inventory.getSource().getPriceCents(id);
+        return cents;
+    }//end getInventoryValueCents
+
+    // The number of copies on hand, including those in carts
+    public long getInventoryCopies(){
+        long copies = 0;
+        for(int id = 0; id < inventory.getRowCount(); id++)
+            copies += inventory.getOnHand(id);
+        return copies;
+    }//end getInventoryCopies
+
+    // Ends a session, returning anything left in its cart to the stock
+    public void closeSession(String session){
+        Session s = sessions.remove(session);
+        if(s != null)
+            clearCart(s.cart);
+    }//end closeSession
+
+    // Reserves copies of a book and adds them to the cart, returns false if there aren't enough
+    public boolean addToCart(Cart cart, Book b, int count){
+        stockLock.readLock().lock();
+        try {
+            synchronized(cart){
+                if(!inventory.reserve(b, count)){
+                    CART_ADDS_REJECTED.increment();
+                    return false;
+                }
+
+                cart.add(b, count);
+                CART_ADDS.increment();
+                return true;
+            }
+        } finally {
+            stockLock.readLock().unlock();
+        }
+    }//end addToCart
+
+    // Reserves copies of many books and adds them to the cart as one batch, so a
+    // list showing the cart hears of them once. Returns the books there weren't
+    // enough of, which are left out.
+    public List<Book> addAllToCart(Cart cart, Map<Book, Integer> counts){
+        List<Book> rejected = new ArrayList<>();
+        stockLock.readLock().lock();
+        try {
+            synchronized(cart){
+                cart.beginBatch();
+                try {
+                    for(Map.Entry<Book, Integer> e : counts.entrySet())
+                        if(!addToCart(cart, e.getKey(), e.getValue()))
+                            rejected.add(e.getKey());
+                } finally {
+                    cart.commitBatch();
+                }
+            }
+        } finally {
+            stockLock.readLock().unlock();
+        }
+        return rejected;
+    }//end addAllToCart
+
+    // Takes up to count copies of a book out of the cart and returns them to the stock
+    public int removeFromCart(Cart cart, Book b, int count){
+        stockLock.readLock().lock();
+        try {
+            synchronized(cart){
+                int removed = cart.remove(b, count);
+                if(removed > 0){
+                    inventory.returnItem(b, removed);
+                    CART_REMOVES.increment();
+                }
+                return removed;
+            }
+        } finally {
+            stockLock.readLock().unlock();
+        }
+    }//end removeFromCart
+
+    // Returns everything in the cart to the stock
+    public void clearCart(Cart cart){
+        stockLock.readLock().lock();
+        try {
+            synchronized(cart){
+                cart.beginBatch();
+                try {
+                    for(CartLine line : cart.getLines())
+                        inventory.returnItem(line.getBook(), line.getQuantity());
+
+                    cart.clear();
+                } finally {
+                    cart.commitBatch();
+                }
+            }
+        } finally {
+            stockLock.readLock().unlock();
+        }
+    }//end clearCart
+
+    // Buys everything in the cart, returns null if it is empty
+    public Receipt checkout(Cart cart){
+        long start = System.nanoTime();
+        stockLock.readLock().lock();
+        try {
+            synchronized(cart){
+                if(cart.isEmpty())
+                    return null;
+
+                Receipt receipt = new Receipt(Money.ofCents(cart.getTotalCents()), cart.getCopies());
+
+                // Make the order first, one too long to record sells nothing
+                OrderLedger.Line[] lines = new OrderLedger.Line[cart.getSize()];
+                int i = 0;
+                for(CartLine line : cart.getLines()){
+                    Book b = line.getBook();
+                    lines[i++] = new OrderLedger.Line(b.getId(), b.getName(), line.getQuantity(), b.getPriceCents());
+                }
+                OrderLedger.Order order = new OrderLedger.Order(receipt.getSubtotal().getCents(),
+                        receipt.getSalesTax().getCents(), lines);
+
+                // Sell the reserved copies and save the new on-hand quantities
+                cart.beginBatch();
+                try {
+                    for(CartLine line : cart.getLines()){
+                        inventory.commit(line.getBook(), line.getQuantity());
+                        persistenceWriter.submit(line.getBook().getId());
+                    }
+
+                    cart.clear();
+                } finally {
+                    cart.commitBatch();
+                }
+
+                // Record the sale, the ledger writes it in the background
+                ledger.submit(order);
+
+                CHECKOUT_NANOS.recordSince(start);
+                CHECKOUT_COPIES.record(receipt.getCopies());
+                return receipt;
+            }
+        } finally {
+            stockLock.readLock().unlock();
+        }
+    }//end checkout
+
+    // Sells copies of several books as one order if every book has enough copies
+    // available, otherwise sells nothing and returns null. Counts of the same book
+    // on several lines add up. Meant for bulk imports, so the new quantities are
+    // not saved here; saveQuantities saves them once the whole batch is sold.
+    // Throws IllegalArgumentException, selling nothing, for an unknown book, a
+    // count that isn't positive or an order too big to total.
+    public Receipt sell(int[] ids, int[] counts, int lines){
+
+        if(lines < 0 || lines > ids.length || lines > counts.length)
+            throw new IllegalArgumentException(lines + " lines given " + ids.length + " ids and " + counts.length + " counts");
+
+        stockLock.readLock().lock();
+        try {
+            StockEngine stock = inventory.getStock();
+
+            // Check the lines and make the order first, one too long to record sells nothing
+            Inventory.RowSource rows = inventory.getSource();
+            OrderLedger.Line[] orderLines = new OrderLedger.Line[lines];
+            long subtotal = 0;
+            long copies = 0;
+            for(int i = 0; i < lines; i++){
+                if(ids[i] < 0 || ids[i] >= stock.size())
+                    throw new IllegalArgumentException("No book " + ids[i]);
+                if(counts[i] <= 0)
+                    throw new IllegalArgumentException("Count must be positive: " + counts[i]);
+
+                long price = rows.getPriceCents(ids[i]);
+                orderLines[i] = new OrderLedger.Line(ids[i], rows.getName(ids[i]), counts[i], price);
+                try {
+                    subtotal = Math.addExact(subtotal, Math.multiplyExact(price, counts[i]));
+                } catch(ArithmeticException ex){
+                    throw new IllegalArgumentException("Subtotal too large for one order");
+                }
+                copies += counts[i];
+            }
+            if(copies > Integer.MAX_VALUE)
+                throw new IllegalArgumentException(copies + " copies are too many for one order");
+
+            Receipt receipt = new Receipt(Money.ofCents(subtotal), (int) copies);
+            OrderLedger.Order order = new OrderLedger.Order(receipt.getSubtotal().getCents(),
+                    receipt.getSalesTax().getCents(), orderLines);
+
+            // Reserve every line, putting back whatever is reserved but not sold
+            int reserved = 0, sold = 0;
+            try {
+                while(reserved < lines && stock.reserve(ids[reserved], counts[reserved]))
+                    reserved++;
+                if(reserved < lines)
+                    return null;
+
+                // Then sell them all
+                for(; sold < lines; sold++)
+                    stock.commit(ids[sold], counts[sold]);
+            } finally {
+                for(int i = sold; i < reserved; i++)
+                    stock.release(ids[i], counts[i]);
+            }
+
+            ledger.submit(order);
+            return receipt;
+        } finally {
+            stockLock.readLock().unlock();
+        }
+    }//end sell
+
+    // Saves the on-hand quantities of the given books, once each
+    public void saveQuantities(BitSet ids){
+        stockLock.readLock().lock();
+        try {
+            for(int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1))
+                persistenceWriter.submit(id);
+        } finally {
+            stockLock.readLock().unlock();
+        }
+    }//end saveQuantities
+
+    // Parses the database file again and compares it with the catalog. The diff
+    // is taken without stopping the store, and the rows it would leave are saved
+    // as the catalog snapshot, with the books removed so far, so the store reopens
+    // with the same ids and without the removed books. Only a
+    // catalog from a single file can be reloaded.
+    public CatalogDiff diffDatabase() throws IOException{
+
+        if(database.isDirectory())
+            throw new UnsupportedOperationException("A sharded catalog can't be reloaded: " + database);
+
+        DataManager dm = new DataManager(database);
+        CatalogDiff diff = CatalogDiff.compute(inventory, dm.loadStore());
+        if(!diff.isEmpty()){
+            try {
+                dm.writeSnapshot(diff.getRows());
+            } catch(IOException | ArithmeticException ex){
+                System.out.println("Catalog snapshot not written: " + ex);
+            }
+        }
+        return diff;
+    }//end diffDatabase
+
+    // Applies a diff of the database file to the catalog. Cart changes wait while
+    // it is applied; carts keep what they hold, even of removed books. The saved
+    // quantities start over from the new catalog as the old ones no longer match
+    // its ids, which is done in the background so nothing waits on the files.
+    // Called on the Swing thread when a window shows the catalog.
+    public void apply(CatalogDiff diff){
+
+        if(diff.isEmpty())
+            return;
+
+        long start = System.nanoTime();
+        RebasedSink rebased;
+        stockLock.writeLock().lock();
+        try {
+            inventory.apply(diff);
+
+            // New changes queue for a sink rebased on the new ids once the old
+            // writer has saved what was sold before the reload
+            rebased = new RebasedSink(persistenceWriter, sink);
+            sink = rebased;
+            persistenceWriter = newWriter(rebased);
+        } finally {
+            stockLock.writeLock().unlock();
+        }
+
+        Thread rebase = new Thread(rebased::openQuietly, "Bookstore catalog rebase");
+        rebase.setDaemon(true);
+        rebase.start();
+
+        CATALOG_APPLY_NANOS.recordSince(start);
+        CATALOG_ROWS_APPLIED.add(diff.getChanged().length + diff.getAdded().size() + diff.getRemoved().length);
+        System.out.println("Reloaded " + database + ": " + diff);
+    }//end apply
+
+    // Reloads the database file, applying only what changed. Returns the diff applied.
+    public CatalogDiff reload() throws IOException{
+        CatalogDiff diff = diffDatabase();
+        apply(diff);
+        return diff;
+    }//end reload
+
+    // Flushes and stops the writer and closes the quantity columns
+    @Override
+    public synchronized void close(){
+
+        // Stop publishing this store's gauges so they don't keep it loaded
+        Metrics.removeGauge("inventory.value.cents", inventoryValue);
+        Metrics.removeGauge("inventory.copies", inventoryCopies);
+        Metrics.removeGauge("store.sessions", sessionCount);
+
+        persistenceWriter.close();
+        closeSink();
+        if(analytics != null)
+            analytics.close();
+        ledger.close();
+
+    }//end close
+
+    // Helper - Marks a session used now and returns its cart, creating the session
+    // if asked to. Done inside the map so an expiry can't end it meanwhile.
+    private Cart use(String session, boolean create){
+        Session s = sessions.compute(session, (k, existing) -> {
+            if(existing == null)
+                return create ? new Session() : null;
+            existing.lastUsed = System.nanoTime();
+            return existing;
+        });
+        return s == null ? null : s.cart;
+    }//end use
+
+    // Helper - Starts a writer saving the on-hand quantities to a sink in the background
+    private PersistenceWriter newWriter(PersistenceWriter.Sink sink){
+        return new PersistenceWriter(sink, inventory::getOnHand, PersistenceWriter.Durability.fromProperty(),
+                Long.getLong("bookstore.syncInterval", 1000L));
+    }//end newWriter
+
+    // Helper - Closes the sink if it holds files open
+    private void closeSink(){
+        if(sink instanceof Closeable){
+            try {
+                ((Closeable) sink).close();
+            } catch(IOException ex){
+                System.out.println(ex);
+            }
+        }
+    }//end closeSink
+
+    // Where the quantities go after a reload. It is opened once the writer before
+    // the reload has saved its last changes and closed its sink, starting over
+    // from the reloaded catalog. If that fails the writes fail too, so the writer
+    // keeps its changes and opening is tried again with its next batch.
+    private class RebasedSink implements PersistenceWriter.Sink, Closeable{
+
+        // The writer and sink in use before the reload, null once closed
+        private PersistenceWriter previousWriter;
+        private PersistenceWriter.Sink previousSink;
+
+        // The sink rebased on the new ids, null until it opens
+        private PersistenceWriter.Sink rebased;
+
+        private boolean closed;
+
+        RebasedSink(PersistenceWriter previousWriter, PersistenceWriter.Sink previousSink){
+            this.previousWriter = previousWriter;
+            this.previousSink = previousSink;
+        }//end RebasedSink
+
+        @Override
+        public synchronized void write(int[] ids, int[] quantities, int count) throws IOException{
+            open().write(ids, quantities, count);
+        }//end write
+
+        @Override
+        public synchronized void sync() throws IOException{
+            open().sync();
+        }//end sync
+
+        // Opens the rebased sink one last time if it never opened, then closes it
+        @Override
+        public synchronized void close() throws IOException{
+            try {
+                open();
+            } finally {
+                closed = true;
+                closePrevious();
+                if(rebased instanceof Closeable)
+                    ((Closeable) rebased).close();
+            }
+        }//end close
+
+        // Opens the rebased sink, printing why if it can't be opened yet
+        synchronized void openQuietly(){
+            try {
+                open();
+            } catch(IOException | RuntimeException ex){
+                System.out.println("Saved quantities not rebased, retrying with the next change: " + ex);
+            }
+        }//end openQuietly
+
+        // Helper - Returns the rebased sink, opening it the first time
+        private PersistenceWriter.Sink open() throws IOException{
+            if(rebased == null){
+                if(closed)
+                    throw new IOException("Closed before the saved quantities were rebased");
+                closePrevious();
+                rebased = new DataManager(database).rebaseSink(inventory);
+            }
+            return rebased;
+        }//end open
+
+        // Helper - Saves the previous writer's last changes and closes its sink
+        private void closePrevious() throws IOException{
+            if(previousWriter == null)
+                return;
+            previousWriter.close();
+            previousWriter = null;
+            if(previousSink instanceof Closeable)
+                ((Closeable) previousSink).close();
+            previousSink = null;
+        }//end closePrevious
+
+    }//end inner class RebasedSink
+
+}//end class StoreService
@@ -0,0 +1,253 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// Every distinct title of a catalog, each stored once. A title is given an int id
+// the first time it is seen and its UTF-8 bytes go into one arena off the Java
+// heap; rows hold the id, so a title repeated across editions and shards costs
+// four bytes a row. Titles are decoded into Strings only when they are shown.
+// The builder finds repeats with an open addressing table of ids hashed on the
+// title bytes, so interning never boxes a key or makes a String.
+public class TitleDictionary {
+
+    // The number of titles
+    private final int count;
+
+    // Start of each title in the arena, one more than the number of titles
+    private final IntBuffer offsets;
+
+    // The UTF-8 bytes of every title, back to back
+    private final ByteBuffer arena;
+
+    private TitleDictionary(int count, IntBuffer offsets, ByteBuffer arena){
+        this.count = count;
+        this.offsets = offsets;
+        this.arena = arena;
+    }//end TitleDictionary
+
+    // The number of distinct titles
+    public int size(){
+        return count;
+    }//end size
+
+    // Decodes a title
+    public String get(int id){
+
+        int start = offsets.get(id);
+        byte[] title = new byte[offsets.get(id + 1) - start];
+
+        // Copy out through a private view so readers on other threads don't interfere
+        ByteBuffer view = arena.duplicate();
+        view.position(start);
+        view.get(title);
+
+        return new String(title, StandardCharsets.UTF_8);
+    }//end get
+
+    // Bytes held off the heap
+    public long getOffHeapBytes(){
+        return arena.capacity() + 4L * offsets.capacity();
+    }//end getOffHeapBytes
+
+    // Copies the titles of builders off the heap one after another without
+    // looking for repeats between them, the titles of each builder after the
+    // first are numbered from the number of titles before it
+    public static TitleDictionary concat(List<Builder> parts){
+
+        int count = 0;
+        int bytes = 0;
+        for(Builder b : parts){
+            count = Math.addExact(count, b.count);
+            bytes = Math.addExact(bytes, b.bytes);
+        }
+
+        IntBuffer offsets = CatalogStore.allocateInts(count + 1);
+        ByteBuffer arena = ByteBuffer.allocateDirect(bytes);
+
+        // Shift each builder's offsets past the titles before it
+        int base = 0;
+        for(Builder b : parts){
+            for(int id = 0; id < b.count; id++)
+                offsets.put(base + b.offsets[id]);
+            arena.put(b.arena, 0, b.bytes);
+            base += b.bytes;
+        }
+        offsets.put(base);
+
+        offsets.flip();
+        arena.flip();
+        return new TitleDictionary(count, offsets, arena);
+    }//end concat
+
+    // Collects distinct titles on the heap
+    public static class Builder{
+
+        // Empty table slots hold zero, used slots the title's hash in the high
+        // half and its id plus one in the low half, so a probe reads one array
+        private long[] table = new long[1024];
+
+        private int count;
+        private int bytes;
+
+        // Start of each title in the arena, with the end of the arena after the last
+        private int[] offsets = new int[513];
+        private int[] hashes = new int[512];
+        private byte[] arena = new byte[16 * 1024];
+
+        // Returns the id of the title in the UTF-8 bytes [start, start + length)
+        // of title, adding it if it is new
+        public int intern(byte[] title, int start, int length){
+            return intern(hash(title, start, length), title, start, length);
+        }//end intern
+
+        // Helper - Interns title bytes whose hash is known
+        private int intern(int hash, byte[] title, int start, int length){
+            int mask = table.length - 1;
+            for(int slot = hash & mask; ; slot = (slot + 1) & mask){
+                long entry = table[slot];
+                if(entry == 0)
+                    return add(slot, hash, title, start, length);
+                int id = (int) entry - 1;
+                if((int) (entry >>> 32) == hash && same(id, title, start, length))
+                    return id;
+            }
+        }//end intern
+
+        // Returns the id of the title in the UTF-8 bytes [start, start + length)
+        // of title, or -1 if it hasn't been added
+        public int find(byte[] title, int start, int length){
+            int hash = hash(title, start, length);
+            int mask = table.length - 1;
+            for(int slot = hash & mask; ; slot = (slot + 1) & mask){
+                long entry = table[slot];
+                if(entry == 0)
+                    return -1;
+                int id = (int) entry - 1;
+                if((int) (entry >>> 32) == hash && same(id, title, start, length))
+                    return id;
+            }
+        }//end find
+
+        // Decodes a title added so far
+        public String get(int id){
+            return new String(arena, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.UTF_8);
+        }//end get
+
+        // The number of distinct titles so far
+        public int size(){
+            return count;
+        }//end size
+
+        // The bytes of the titles so far
+        int getBytes(){
+            return bytes;
+        }//end getBytes
+
+        // Interns every title of another builder, returning the id each got here.
+        // The other builder's hashes are reused rather than worked out again.
+        int[] internAll(Builder other){
+
+            // Make room for all of them up front
+            reserve(count + other.count, bytes + other.bytes);
+
+            int[] ids = new int[other.count];
+            for(int id = 0; id < other.count; id++)
+                ids[id] = intern(other.hashes[id], other.arena, other.offsets[id], other.offsets[id + 1] - other.offsets[id]);
+            return ids;
+        }//end internAll
+
+        // Writes the title offsets, one more than the number of titles, then the titles
+        void write(DataOutput out) throws IOException{
+            for(int id = 0; id <= count; id++)
+                out.writeInt(offsets[id]);
+            out.write(arena, 0, bytes);
+        }//end write
+
+        // Copies the titles off the heap
+        public TitleDictionary build(){
+            return concat(Collections.singletonList(this));
+        }//end build
+
+        // Helper - Adds a new title at an empty slot and returns its id
+        private int add(int slot, int hash, byte[] title, int start, int length){
+
+            // Grow the columns
+            if(count == hashes.length){
+                offsets = Arrays.copyOf(offsets, count * 2 + 1);
+                hashes = Arrays.copyOf(hashes, count * 2);
+            }
+            if(bytes + length > arena.length)
+                arena = Arrays.copyOf(arena, Math.max(arena.length * 2, bytes + length));
+
+            int id = count++;
+            hashes[id] = hash;
+            System.arraycopy(title, start, arena, bytes, length);
+            bytes += length;
+            offsets[count] = bytes;
+            table[slot] = entry(hash, id);
+
+            // Keep the table at most half full
+            if(count * 2 > table.length)
+                rehash(table.length * 2);
+            return id;
+        }//end add
+
+        // Helper - Grows the columns and table to hold a number of titles and bytes
+        private void reserve(int titles, int totalBytes){
+            if(titles > hashes.length){
+                offsets = Arrays.copyOf(offsets, titles + 1);
+                hashes = Arrays.copyOf(hashes, titles);
+            }
+            if(totalBytes > arena.length)
+                arena = Arrays.copyOf(arena, totalBytes);
+            if(titles * 2 > table.length)
+                rehash(Integer.highestOneBit(titles) * 4);
+        }//end reserve
+
+        // Helper - Resizes the table and places every id again
+        private void rehash(int size){
+            table = new long[size];
+            int mask = table.length - 1;
+            for(int id = 0; id < count; id++){
+                int slot = hashes[id] & mask;
+                while(table[slot] != 0)
+                    slot = (slot + 1) & mask;
+                table[slot] = entry(hashes[id], id);
+            }
+        }//end rehash
+
+        // Helper - A table entry for a title
+        private static long entry(int hash, int id){
+            return ((long) hash << 32) | (id + 1);
+        }//end entry
+
+        // Helper - Whether a title's bytes are the given bytes
+        private boolean same(int id, byte[] title, int start, int length){
+            int from = offsets[id];
+            if(offsets[id + 1] - from != length)
+                return false;
+            for(int i = 0; i < length; i++)
+                if(arena[from + i] != title[start + i])
+                    return false;
+            return true;
+        }//end same
+
+        // Helper - Hashes title bytes, mixed so nearby titles spread over the table
+        private static int hash(byte[] title, int start, int length){
+            int h = 0;
+            for(int i = start; i < start + length; i++)
+                h = 31 * h + title[i];
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }//end hash
+
+    }//end inner class Builder
+
+}//end class TitleDictionary
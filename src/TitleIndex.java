@@ -0,0 +1,344 @@
+/**
+ * Author: Skye Antinozzi
+ * Created for the Introduction to Java and OOP at Anoka-Ramsey Community College.
+ * Just a simple book store Swing application.
+ */
+
+import java.util.*;
+import java.util.concurrent.*;
+
+// A type-ahead index over the titles of a catalog. Every book id is kept in one
+// int array sorted by normalized title, so the titles that start with some text
+// are always a contiguous range of it. A search is two binary searches, and
+// typing another letter only searches inside the range of the previous search.
+// Titles are read back from the row source, so the index itself costs four
+// bytes a book and stock counts are never copied into it.
+public class TitleIndex {
+
+    // Rows sorted in one piece below this
+    private static final int LEAF_SIZE = 8192;
+
+    // Runs this short are insertion sorted
+    private static final int INSERTION_SIZE = 16;
+
+    // The titles
+    private final Inventory.RowSource rows;
+
+    // Every id, ordered by normalized title and then by id
+    private final int[] sorted;
+
+    private TitleIndex(Inventory.RowSource rows, int[] sorted){
+        this.rows = rows;
+        this.sorted = sorted;
+    }//end TitleIndex
+
+    // Indexes the titles of every row, sorting on the fork-join pool
+    public static TitleIndex build(Inventory.RowSource rows){
+        Keys keys = new Keys(rows);
+        ForkJoinPool.commonPool().invoke(new SortTask(keys, 0, keys.ids.length));
+        return new TitleIndex(rows, keys.ids).without(rows.getRemoved());
+    }//end build
+
+    // Indexes the titles of the books an inventory still lists
+    public static TitleIndex build(Inventory inventory){
+        return build(inventory.getSource()).without(inventory.getRemoved());
+    }//end build
+
+    // Helper - This index without some books, the rest stay in title order
+    private TitleIndex without(BitSet removed){
+
+        if(removed.isEmpty())
+            return this;
+
+        int[] listed = new int[sorted.length];
+        int n = 0;
+        for(int id : sorted)
+            if(!removed.get(id))
+                listed[n++] = id;
+        return new TitleIndex(rows, Arrays.copyOf(listed, n));
+    }//end without
+
+    // The number of indexed titles
+    public int size(){
+        return sorted.length;
+    }//end size
+
+    // The id of the book at a position in title order
+    public int getId(int position){
+        return sorted[position];
+    }//end getId
+
+    // Finds every title that starts with the text, ignoring case and leading spaces
+    public Matches find(String text){
+        return narrow(new Matches("", 0, sorted.length), text);
+    }//end find
+
+    // Finds the titles that start with the text among earlier matches. When the
+    // text only adds to the earlier text this searches inside the earlier range,
+    // otherwise it starts over from the whole index.
+    public Matches narrow(Matches previous, String text){
+
+        String prefix = normalizeQuery(text);
+
+        // Start over unless the new text extends the old
+        if(previous == null || !prefix.startsWith(previous.prefix))
+            previous = new Matches("", 0, sorted.length);
+
+        if(prefix.equals(previous.prefix))
+            return previous;
+
+        int from = bound(prefix, previous.from, previous.to, false);
+        int to = bound(prefix, from, previous.to, true);
+
+        return new Matches(prefix, from, to);
+    }//end narrow
+
+    // Normalizes a search, only trailing spaces are kept so words can be finished
+    static String normalizeQuery(String text){
+
+        int start = 0;
+        while(start < text.length() && text.charAt(start) <= ' ')
+            start++;
+
+        return text.substring(start).toLowerCase(Locale.ROOT);
+    }//end normalizeQuery
+
+    // Helper - The first position in [from, to) whose title, cut to the length of the
+    // prefix, is at least the prefix, or past the prefix when after is true
+    private int bound(String prefix, int from, int to, boolean after){
+
+        int lo = from;
+        int hi = to;
+        while(lo < hi){
+            int mid = (lo + hi) >>> 1;
+            int cmp = comparePrefix(Inventory.normalize(rows.getName(sorted[mid])), prefix);
+            if(cmp < 0 || (after && cmp == 0))
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+
+        return lo;
+    }//end bound
+
+    // Helper - Compares a title cut to the length of the prefix against the prefix
+    private static int comparePrefix(String title, String prefix){
+        int n = Math.min(title.length(), prefix.length());
+        for(int i = 0; i < n; i++){
+            int c = title.charAt(i) - prefix.charAt(i);
+            if(c != 0)
+                return c;
+        }
+        return title.length() >= prefix.length() ? 0 : -1;
+    }//end comparePrefix
+
+    // The titles that start with a prefix, positions [from, to) of the index
+    public static class Matches{
+
+        // The normalized text searched for
+        private final String prefix;
+
+        // The matching positions of the index
+        private final int from, to;
+
+        Matches(String prefix, int from, int to){
+            this.prefix = prefix;
+            this.from = from;
+            this.to = to;
+        }//end Matches
+
+        public String getPrefix(){
+            return prefix;
+        }//end getPrefix
+
+        // The position of the first match in the index
+        public int getFrom(){
+            return from;
+        }//end getFrom
+
+        // The number of matching titles
+        public int size(){
+            return to - from;
+        }//end size
+
+    }//end inner class Matches
+
+    // The ids being sorted along with packed sort keys, the first twelve characters
+    // of each normalized title as three longs of four 16 bit characters padded with
+    // zeros. The keys move with their ids so comparing them reads memory in order,
+    // and titles are only decoded when the keys of two rows are the same.
+    private static class Keys{
+
+        private final Inventory.RowSource rows;
+
+        // Ids, keys and room to merge them, by position
+        private final int[] ids, tempIds;
+        private final long[] first, second, third, tempFirst, tempSecond, tempThird;
+
+        Keys(Inventory.RowSource rows){
+            this.rows = rows;
+
+            int size = rows.size();
+            ids = new int[size];
+            tempIds = new int[size];
+            first = new long[size];
+            second = new long[size];
+            third = new long[size];
+            tempFirst = new long[size];
+            tempSecond = new long[size];
+            tempThird = new long[size];
+        }//end Keys
+
+        // Fills in the ids and keys of [from, to) in catalog order
+        void fill(int from, int to){
+            for(int i = from; i < to; i++){
+                String title = title(i);
+                ids[i] = i;
+                first[i] = pack(title, 0);
+                second[i] = pack(title, 4);
+                third[i] = pack(title, 8);
+            }
+        }//end fill
+
+        // Sorts [from, to) on this thread
+        void sort(int from, int to){
+
+            // Insertion sort short runs
+            if(to - from <= INSERTION_SIZE){
+                for(int i = from + 1; i < to; i++){
+                    int id = ids[i];
+                    long a = first[i], b = second[i], c = third[i];
+                    int j = i - 1;
+                    while(j >= from && compare(first[j], second[j], third[j], ids[j], null, a, b, c, id, null) > 0){
+                        ids[j + 1] = ids[j];
+                        first[j + 1] = first[j];
+                        second[j + 1] = second[j];
+                        third[j + 1] = third[j];
+                        j--;
+                    }
+                    ids[j + 1] = id;
+                    first[j + 1] = a;
+                    second[j + 1] = b;
+                    third[j + 1] = c;
+                }
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            sort(from, mid);
+            sort(mid, to);
+            merge(from, mid, to);
+        }//end sort
+
+        // Merges the sorted ranges [from, mid) and [mid, to)
+        void merge(int from, int mid, int to){
+
+            // Already in order
+            if(compare(first[mid - 1], second[mid - 1], third[mid - 1], ids[mid - 1], null, first[mid], second[mid], third[mid], ids[mid], null) <= 0)
+                return;
+
+            System.arraycopy(ids, from, tempIds, from, to - from);
+            System.arraycopy(first, from, tempFirst, from, to - from);
+            System.arraycopy(second, from, tempSecond, from, to - from);
+            System.arraycopy(third, from, tempThird, from, to - from);
+
+            // The decoded title at the head of each side, kept until that side moves on
+            String[] left = new String[1], right = new String[1];
+
+            int i = from, j = mid, k = from;
+            while(i < mid && j < to){
+                if(compare(tempFirst[i], tempSecond[i], tempThird[i], tempIds[i], left, tempFirst[j], tempSecond[j], tempThird[j], tempIds[j], right) <= 0){
+                    move(i++, k++);
+                    left[0] = null;
+                }
+                else{
+                    move(j++, k++);
+                    right[0] = null;
+                }
+            }
+            while(i < mid)
+                move(i++, k++);
+            while(j < to)
+                move(j++, k++);
+        }//end merge
+
+        // Helper - Copies a merged row back from the temporary arrays
+        private void move(int from, int to){
+            ids[to] = tempIds[from];
+            first[to] = tempFirst[from];
+            second[to] = tempSecond[from];
+            third[to] = tempThird[from];
+        }//end move
+
+        // Helper - Orders two rows by title and then by id so the sort is stable.
+        // The titles are decoded into the one element caches when the keys tie.
+        private int compare(long firstA, long secondA, long thirdA, int a, String[] titleA, long firstB, long secondB, long thirdB, int b, String[] titleB){
+
+            int c = Long.compareUnsigned(firstA, firstB);
+            if(c == 0)
+                c = Long.compareUnsigned(secondA, secondB);
+            if(c == 0)
+                c = Long.compareUnsigned(thirdA, thirdB);
+
+            if(c == 0)
+                c = cached(a, titleA).compareTo(cached(b, titleB));
+
+            return c != 0 ? c : Integer.compare(a, b);
+        }//end compare
+
+        // Helper - The normalized title of a row, decoded once per cache
+        private String cached(int id, String[] cache){
+            if(cache == null)
+                return title(id);
+            if(cache[0] == null)
+                cache[0] = title(id);
+            return cache[0];
+        }//end cached
+
+        // Helper - The normalized title of a row
+        private String title(int id){
+            return Inventory.normalize(rows.getName(id));
+        }//end title
+
+        // Helper - Four characters of a title from start as a long
+        private static long pack(String title, int start){
+            long key = 0;
+            for(int i = start; i < start + 4; i++)
+                key = (key << 16) | (i < title.length() ? title.charAt(i) : 0);
+            return key;
+        }//end pack
+
+    }//end inner class Keys
+
+    // Merge sorts a range, splitting it in half on the fork-join pool until each
+    // half is small enough to key and sort on its own
+    private static class SortTask extends RecursiveAction{
+
+        private final Keys keys;
+        private final int from, to;
+
+        SortTask(Keys keys, int from, int to){
+            this.keys = keys;
+            this.from = from;
+            this.to = to;
+        }//end SortTask
+
+        @Override
+        protected void compute(){
+
+            // Key and sort a small range directly
+            if(to - from <= LEAF_SIZE){
+                keys.fill(from, to);
+                keys.sort(from, to);
+                return;
+            }
+
+            // Otherwise sort the halves in parallel and merge them
+            int mid = (from + to) >>> 1;
+            invokeAll(new SortTask(keys, from, mid), new SortTask(keys, mid, to));
+            keys.merge(from, mid, to);
+        }//end compute
+
+    }//end inner class SortTask
+
+}//end class TitleIndex